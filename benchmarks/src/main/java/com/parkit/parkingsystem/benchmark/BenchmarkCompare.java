@@ -0,0 +1,119 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compares two JMH result files written with -rf csv, typically the previous release against the current build.
+// Rows are matched on benchmark, mode, threads and parameters; a score that got worse by more than the threshold
+// (lower throughput, higher time or allocation) is reported as a regression and makes the exit code 1.
+//
+// Usage: BenchmarkCompare <baseline.csv> <current.csv> [thresholdPercent, default 10]
+public class BenchmarkCompare {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkCompare <baseline.csv> <current.csv> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> current = read(args[1]);
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result before = baseline.get(entry.getKey());
+            Result after = entry.getValue();
+            if (before == null) {
+                System.out.println(String.format("NEW        %s: %.3f %s", entry.getKey(), after.score, after.unit));
+                continue;
+            }
+            double change = before.score == 0 ? 0 : (after.score - before.score) * 100 / before.score;
+            double worse = after.higherIsBetter() ? -change : change;
+            String status = worse > threshold ? "REGRESSION" : (worse < -threshold ? "IMPROVED  " : "same      ");
+            if (worse > threshold) {
+                regressions++;
+            }
+            System.out.println(String.format("%s %s: %.3f -> %.3f %s (%+.1f%%)",
+                    status, entry.getKey(), before.score, after.score, after.unit, change));
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.println("MISSING    " + key);
+            }
+        }
+        System.out.println(regressions + " regression(s) beyond " + threshold + "%");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    private static Map<String, Result> read(String file) throws Exception {
+        List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        Map<String, Result> results = new LinkedHashMap<>();
+        if (lines.isEmpty()) {
+            return results;
+        }
+        List<String> header = split(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int mode = header.indexOf("Mode");
+        int threads = header.indexOf("Threads");
+        int score = header.indexOf("Score");
+        int unit = header.indexOf("Unit");
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            List<String> cells = split(line);
+            StringBuilder key = new StringBuilder(cells.get(benchmark))
+                    .append(' ').append(cells.get(mode))
+                    .append(" t=").append(cells.get(threads));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && i < cells.size() && !cells.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(cells.get(i));
+                }
+            }
+            // Scores may be written with the decimal comma of the JVM's locale
+            results.put(key.toString(), new Result(Double.parseDouble(cells.get(score).replace(',', '.')), cells.get(unit)));
+        }
+        return results;
+    }
+
+    // Splits one CSV line, honouring double quoted cells
+    private static List<String> split(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    private static final class Result {
+        private final double score;
+        private final String unit;
+
+        Result(double score, String unit) {
+            this.score = score;
+            this.unit = unit;
+        }
+
+        // Throughput units are ops per time; times and gc.alloc figures are better when lower
+        boolean higherIsBetter() {
+            return unit.startsWith("ops/");
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+// ParkingSpotDAO and TicketDAO calls against the embedded database. Each benchmark thread uses
+// its own vehicles, so the benchmarks can also be run with -t for contention.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {EmbeddedDataBaseConfig.LOG_CONFIG, EmbeddedDataBaseConfig.HEAP})
+public class DaoBenchmark {
+
+    private static final int SPOTS_PER_TYPE = 1000;
+
+    @State(Scope.Benchmark)
+    public static class Lot {
+        EmbeddedDataBaseConfig dataBaseConfig;
+        ParkingSpotDAO parkingSpotDAO;
+        TicketDAO ticketDAO;
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            dataBaseConfig = new EmbeddedDataBaseConfig("dao");
+            dataBaseConfig.createSchema(SPOTS_PER_TYPE, SPOTS_PER_TYPE);
+            parkingSpotDAO = new ParkingSpotDAO();
+            parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+            parkingSpotDAO.loadFreeSpotIndex();
+            ticketDAO = new TicketDAO();
+            ticketDAO.dataBaseConfig = dataBaseConfig;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Gate {
+        String parkedVehicle;
+        String movingVehicle;
+        // Own DAO so that clearing its session mirror forces a database read without touching other threads
+        TicketDAO coldTicketDAO;
+
+        @Setup(Level.Trial)
+        public void setUp(Lot lot) throws Exception {
+            int id = lot.threads.incrementAndGet();
+            parkedVehicle = "PARK" + id;
+            movingVehicle = "MOVE" + id;
+            coldTicketDAO = new TicketDAO();
+            coldTicketDAO.dataBaseConfig = lot.dataBaseConfig;
+            // One vehicle parked for the whole trial, read by the getTicket benchmarks
+            lot.ticketDAO.saveTicket(newTicket(parkedVehicle, lot.parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)));
+        }
+    }
+
+    private static Ticket newTicket(String vehicleRegNumber, int parkingNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        return ticket;
+    }
+
+    @Benchmark
+    public int claimAndReleaseSpot(Lot lot) {
+        int number = lot.parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+        lot.parkingSpotDAO.updateParking(new ParkingSpot(number, ParkingType.CAR, true));
+        return number;
+    }
+
+    @Benchmark
+    public Ticket getTicketFromMirror(Lot lot, Gate gate) {
+        return lot.ticketDAO.getTicket(gate.parkedVehicle);
+    }
+
+    @Benchmark
+    public Ticket getTicketFromDataBase(Gate gate) {
+        gate.coldTicketDAO.getActiveSessions().clear();
+        return gate.coldTicketDAO.getTicket(gate.parkedVehicle);
+    }
+
+    @Benchmark
+    public Integer getNbTicket(Lot lot, Gate gate) throws Exception {
+        return lot.ticketDAO.getNbTicket(gate.parkedVehicle);
+    }
+
+    // saveTicket, getTicket and updateTicket for one stay, the ticket path of an entry and an exit
+    @Benchmark
+    public boolean saveAndCloseTicket(Lot lot, Gate gate) {
+        lot.ticketDAO.saveTicket(newTicket(gate.movingVehicle, 1));
+        Ticket ticket = lot.ticketDAO.getTicket(gate.movingVehicle);
+        ticket.setPrice(1.5);
+        ticket.setOutTime(new Date());
+        return lot.ticketDAO.updateTicket(ticket);
+    }
+}
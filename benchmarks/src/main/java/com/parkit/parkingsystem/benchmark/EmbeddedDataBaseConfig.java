@@ -0,0 +1,69 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+
+// In-memory H2 database in MySQL mode with the schema of resources/Data.sql and its migrations
+public class EmbeddedDataBaseConfig extends DataBaseConfig {
+
+    // Fork arguments shared by every benchmark: quiet logging, same heap for every run
+    static final String LOG_CONFIG = "-Dlog4j.configurationFile=benchmark-log4j2.xml";
+    static final String HEAP = "-Xmx1g";
+
+    private final String name;
+
+    public EmbeddedDataBaseConfig(String name) {
+        this.name = name;
+    }
+
+    @Override
+    protected String getUrl() {
+        // The pool passes MySQL driver settings along, H2 has to ignore them
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;IGNORE_UNKNOWN_SETTINGS=TRUE";
+    }
+
+    @Override
+    protected String getPassword() {
+        return "";
+    }
+
+    // Drops and recreates every table, with carSpots CAR spots numbered from 1 followed by bikeSpots BIKE spots
+    public void createSchema(int carSpots, int bikeSpots) throws Exception {
+        Connection con = null;
+        try {
+            con = getConnection();
+            Statement statement = con.createStatement();
+            statement.execute("drop table if exists rollup_backfill");
+            statement.execute("drop table if exists ticket_rollup_day");
+            statement.execute("drop table if exists ticket_rollup_hour");
+            statement.execute("drop table if exists active_session");
+            statement.execute("drop table if exists vehicle_visit");
+            statement.execute("drop table if exists ticket");
+            statement.execute("drop table if exists parking");
+            statement.execute("create table parking(PARKING_NUMBER int PRIMARY KEY, AVAILABLE bool NOT NULL, TYPE varchar(10) NOT NULL,"
+                    + " LEVEL int NOT NULL default 0)");
+            statement.execute("create table ticket(ID int PRIMARY KEY AUTO_INCREMENT, PARKING_NUMBER int NOT NULL,"
+                    + " VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME,"
+                    + " FOREIGN KEY (PARKING_NUMBER) REFERENCES parking(PARKING_NUMBER))");
+            statement.execute("create table vehicle_visit(VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY, VISITS int NOT NULL)");
+            statement.execute("create table active_session(VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY, TICKET_ID int NOT NULL,"
+                    + " PARKING_NUMBER int NOT NULL, TYPE varchar(10) NOT NULL, IN_TIME DATETIME NOT NULL)");
+            statement.execute("create table ticket_rollup_hour(HOUR_START DATETIME NOT NULL, TYPE varchar(10) NOT NULL,"
+                    + " TICKETS int NOT NULL, REVENUE_CENTS bigint NOT NULL, PRIMARY KEY (HOUR_START, TYPE))");
+            statement.execute("create table ticket_rollup_day(DAY_START DATE NOT NULL, TYPE varchar(10) NOT NULL,"
+                    + " TICKETS int NOT NULL, REVENUE_CENTS bigint NOT NULL, PRIMARY KEY (DAY_START, TYPE))");
+            statement.execute("create table rollup_backfill(ID int PRIMARY KEY, ROLLUP_SINCE DATETIME NOT NULL, LAST_TICKET_ID int NOT NULL)");
+            statement.execute("insert into rollup_backfill(ID, ROLLUP_SINCE, LAST_TICKET_ID) values(1, now(), 0)");
+            for (int number = 1; number <= carSpots + bikeSpots; number++) {
+                statement.addBatch("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(" + number + ",true,'"
+                        + (number <= carSpots ? "CAR" : "BIKE") + "')");
+            }
+            statement.executeBatch();
+            statement.close();
+        } finally {
+            closeConnection(con);
+        }
+    }
+}
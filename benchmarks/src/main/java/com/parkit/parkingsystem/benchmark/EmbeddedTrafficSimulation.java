@@ -0,0 +1,25 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.dao.Storage;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.simulation.SimulationSettings;
+import com.parkit.parkingsystem.simulation.TrafficSimulation;
+
+// TrafficSimulation on the real DAOs over a fresh embedded database with the lot of the simulation settings,
+// for sizing without a MySQL server. Settings come from the parkit.simulation.* system properties.
+public class EmbeddedTrafficSimulation {
+
+    public static void main(String[] args) throws Exception {
+        SimulationSettings settings = SimulationSettings.fromSystemProperties();
+        EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("traffic-simulation");
+        dataBaseConfig.createSchema(settings.getCarSpots(), settings.getBikeSpots());
+        Storage storage = Storage.jdbc(dataBaseConfig);
+        try {
+            ParkingService parkingService = new ParkingService(null, storage.getParkingSpotStore(),
+                    storage.getTicketStore(), storage.getParkingTransactionDAO());
+            System.out.println(new TrafficSimulation(parkingService, settings).run());
+        } finally {
+            storage.close();
+        }
+    }
+}
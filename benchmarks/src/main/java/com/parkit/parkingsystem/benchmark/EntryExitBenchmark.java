@@ -0,0 +1,106 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.Storage;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.service.ParkingService;
+
+// One vehicle entering and leaving through ParkingService: on the embedded database per step or as
+// one transaction each, or on the in-memory and journal storage backends
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {EmbeddedDataBaseConfig.LOG_CONFIG, EmbeddedDataBaseConfig.HEAP})
+public class EntryExitBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Lot {
+        @Param({"perStep", "transaction", "memory", "journal"})
+        String path;
+
+        EmbeddedDataBaseConfig dataBaseConfig;
+        Storage storage;
+        Path journalDirectory;
+        ParkingService parkingService;
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            if ("memory".equals(path)) {
+                storage = Storage.inMemory(1000, 1000);
+                parkingService = new ParkingService(storage.getParkingSpotStore(), storage.getTicketStore());
+                return;
+            }
+            if ("journal".equals(path)) {
+                journalDirectory = Files.createTempDirectory("entry-exit-journal");
+                storage = Storage.journal(journalDirectory.resolve("parkit.journal"), 1000, 1000);
+                parkingService = new ParkingService(storage.getParkingSpotStore(), storage.getTicketStore());
+                return;
+            }
+            dataBaseConfig = new EmbeddedDataBaseConfig("entry-exit-" + path);
+            dataBaseConfig.createSchema(1000, 1000);
+            ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+            parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+            parkingSpotDAO.loadFreeSpotIndex();
+            TicketDAO ticketDAO = new TicketDAO();
+            ticketDAO.dataBaseConfig = dataBaseConfig;
+            ParkingTransactionDAO parkingTransactionDAO = "transaction".equals(path)
+                    ? new ParkingTransactionDAO(parkingSpotDAO, ticketDAO) : null;
+            parkingService = new ParkingService(null, parkingSpotDAO, ticketDAO, parkingTransactionDAO);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            if (storage != null) {
+                storage.close();
+            }
+            if (journalDirectory != null) {
+                try (Stream<Path> files = Files.list(journalDirectory)) {
+                    files.forEach(file -> file.toFile().delete());
+                }
+                Files.delete(journalDirectory);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Vehicle {
+        String vehicleRegNumber;
+
+        @Setup(Level.Trial)
+        public void setUp(Lot lot) {
+            vehicleRegNumber = "CAR" + lot.threads.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    public double enterAndExit(Lot lot, Vehicle vehicle) throws Exception {
+        lot.parkingService.enter(vehicle.vehicleRegNumber, ParkingType.CAR);
+        ExitResult exit = lot.parkingService.exit(vehicle.vehicleRegNumber);
+        return exit.getPrice();
+    }
+}
@@ -0,0 +1,61 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {EmbeddedDataBaseConfig.LOG_CONFIG, EmbeddedDataBaseConfig.HEAP})
+public class FareCalculatorBenchmark {
+
+    @Param({"CAR", "BIKE"})
+    private ParkingType parkingType;
+
+    @Param({"false", "true"})
+    private boolean discount;
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private Ticket ticket;
+    private long durationInMinutes;
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        ticket.setInTime(new Date(now - 95 * 60 * 1000));
+        ticket.setOutTime(new Date(now));
+        durationInMinutes = 95;
+    }
+
+    @Benchmark
+    public double calculateFare() {
+        fareCalculatorService.calculateFare(ticket, discount);
+        return ticket.getPrice();
+    }
+
+    @Benchmark
+    public long calculateFareCents() {
+        return FareCalculatorService.calculateFareCents(parkingType, durationInMinutes, discount);
+    }
+}
@@ -0,0 +1,20 @@
+/* Recurring visitor counts, one row per vehicle, kept up to date on every saved ticket */
+use prod;
+
+create table vehicle_visit(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ VISITS int NOT NULL);
+
+insert into vehicle_visit(VEHICLE_REG_NUMBER, VISITS)
+ select VEHICLE_REG_NUMBER, count(*) from ticket group by VEHICLE_REG_NUMBER;
+commit;
+
+use test;
+
+create table vehicle_visit(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ VISITS int NOT NULL);
+
+insert into vehicle_visit(VEHICLE_REG_NUMBER, VISITS)
+ select VEHICLE_REG_NUMBER, count(*) from ticket group by VEHICLE_REG_NUMBER;
+commit;
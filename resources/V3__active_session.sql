@@ -0,0 +1,32 @@
+/* Open parking sessions, one row per vehicle currently parked, so exit looks the ticket up by plate */
+use prod;
+
+create table active_session(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ TICKET_ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ IN_TIME DATETIME NOT NULL);
+
+insert into active_session(VEHICLE_REG_NUMBER, TICKET_ID, PARKING_NUMBER, TYPE, IN_TIME)
+ select t.VEHICLE_REG_NUMBER, t.ID, t.PARKING_NUMBER, p.TYPE, t.IN_TIME
+ from ticket t
+ join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER
+ join (select VEHICLE_REG_NUMBER, max(ID) ID from ticket where OUT_TIME is null group by VEHICLE_REG_NUMBER) o on o.ID = t.ID;
+commit;
+
+use test;
+
+create table active_session(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ TICKET_ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ IN_TIME DATETIME NOT NULL);
+
+insert into active_session(VEHICLE_REG_NUMBER, TICKET_ID, PARKING_NUMBER, TYPE, IN_TIME)
+ select t.VEHICLE_REG_NUMBER, t.ID, t.PARKING_NUMBER, p.TYPE, t.IN_TIME
+ from ticket t
+ join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER
+ join (select VEHICLE_REG_NUMBER, max(ID) ID from ticket where OUT_TIME is null group by VEHICLE_REG_NUMBER) o on o.ID = t.ID;
+commit;
@@ -0,0 +1,49 @@
+/* Tickets closed and revenue per hour and per day and parking type, added to as each ticket closes.
+   Tickets closed before ROLLUP_SINCE are added by RollupBackfillJob, which records how far it got in LAST_TICKET_ID */
+use prod;
+
+create table ticket_rollup_hour(
+ HOUR_START DATETIME NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ TICKETS int NOT NULL,
+ REVENUE_CENTS bigint NOT NULL,
+ PRIMARY KEY (HOUR_START, TYPE));
+
+create table ticket_rollup_day(
+ DAY_START DATE NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ TICKETS int NOT NULL,
+ REVENUE_CENTS bigint NOT NULL,
+ PRIMARY KEY (DAY_START, TYPE));
+
+create table rollup_backfill(
+ ID int PRIMARY KEY,
+ ROLLUP_SINCE DATETIME NOT NULL,
+ LAST_TICKET_ID int NOT NULL);
+
+insert into rollup_backfill(ID, ROLLUP_SINCE, LAST_TICKET_ID) values(1, now(), 0);
+commit;
+
+use test;
+
+create table ticket_rollup_hour(
+ HOUR_START DATETIME NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ TICKETS int NOT NULL,
+ REVENUE_CENTS bigint NOT NULL,
+ PRIMARY KEY (HOUR_START, TYPE));
+
+create table ticket_rollup_day(
+ DAY_START DATE NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ TICKETS int NOT NULL,
+ REVENUE_CENTS bigint NOT NULL,
+ PRIMARY KEY (DAY_START, TYPE));
+
+create table rollup_backfill(
+ ID int PRIMARY KEY,
+ ROLLUP_SINCE DATETIME NOT NULL,
+ LAST_TICKET_ID int NOT NULL);
+
+insert into rollup_backfill(ID, ROLLUP_SINCE, LAST_TICKET_ID) values(1, now(), 0);
+commit;
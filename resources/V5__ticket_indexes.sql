@@ -0,0 +1,11 @@
+/* Secondary indexes for looking tickets up by vehicle and by exit time. BulkImportJob drops them while it loads tickets
+   and builds them again at the end, so keep their names in step with DBConstants */
+use prod;
+
+create index TICKET_VEHICLE on ticket(VEHICLE_REG_NUMBER);
+create index TICKET_OUT_TIME on ticket(OUT_TIME);
+
+use test;
+
+create index TICKET_VEHICLE on ticket(VEHICLE_REG_NUMBER);
+create index TICKET_OUT_TIME on ticket(OUT_TIME);
@@ -0,0 +1,9 @@
+/* Level of the facility each spot is on, 0 for the ground level. Each facility has a database of its own;
+   those other than prod are built from the prod part of Data.sql and every migration, see "Facilities" in the README */
+use prod;
+
+alter table parking add column LEVEL int NOT NULL default 0;
+
+use test;
+
+alter table parking add column LEVEL int NOT NULL default 0;
@@ -0,0 +1,464 @@
+package com.parkit.parkingsystem.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.AlreadyParkedException;
+import com.parkit.parkingsystem.service.Facility;
+import com.parkit.parkingsystem.service.FacilityRegistry;
+import com.parkit.parkingsystem.service.LotFullException;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// HTTP front end for gate controllers, on the JDK's built-in server:
+//   POST /entry?plate=AB123CD&type=CAR   201, or 409 when no spot of the type is free or the vehicle is already in
+//   POST /exit?plate=AB123CD             200 with the fare, or 404 when the vehicle is not parked
+//   GET  /quote?plate=AB123CD            200 with the fare the vehicle would pay leaving now
+//   GET  /occupancy                      200 with free and total spots per type
+//   POST /reserve?plate=AB123CD&type=CAR&from=2024-05-02T14:00&to=2024-05-02T18:00
+//                                        201 with the reservation, or 409 when no spot is left for the window
+//   POST /cancel?id=12                   200, or 404 when there is no such reservation
+//   GET  /availability?type=CAR&from=...&to=...  200 with the spots that can still be booked for the window
+// Times are ISO-8601, either instants ending in Z or local date-times of the server's time zone.
+// Where the process serves several facilities, each is reached under /facilities/<id>/, e.g.
+// POST /facilities/north/entry, and an unknown ID gets 404; the paths above then only work with a single one.
+// Answers are JSON. The server thread only parses the request line and hands the request to a worker: a virtual
+// thread of its own on Java 21 and later, one of a fixed pool of threads before. At most queueCapacity requests are
+// accepted and not yet answered; past that a gate gets 503 at once and should retry, rather than wait in a backlog.
+public class GateServer {
+
+    private static final Logger logger = LogManager.getLogger("GateServer");
+
+    public static final String PORT_PROPERTY = "parkit.http.port";
+    public static final String WORKERS_PROPERTY = "parkit.http.workers";
+    public static final String QUEUE_CAPACITY_PROPERTY = "parkit.http.queueCapacity";
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_WORKERS = 64;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final int BACKLOG = 1024;
+    private static final String FACILITIES_PATH = "/facilities/";
+
+    static {
+        // Headers and body go out in two writes; with Nagle's algorithm on, the body then waits for the gate's
+        // delayed ACK and every answer takes 40 ms. Read once, when the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final FacilityRegistry facilities;
+    private final Map<String, Route> routes = new HashMap<>();
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final Semaphore admitted;
+
+    // Port 0 picks a free one, see getPort; workers only sizes the pool used where virtual threads are missing
+    public GateServer(ParkingService parkingService, int port, int workers, int queueCapacity) throws IOException {
+        this(FacilityRegistry.of(parkingService), port, workers, queueCapacity);
+    }
+
+    public GateServer(FacilityRegistry facilities, int port, int workers, int queueCapacity) throws IOException {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.facilities = facilities;
+        this.workers = newWorkers(workers);
+        this.admitted = new Semaphore(queueCapacity);
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        routes.put("entry", new Route("POST", this::entry));
+        routes.put("exit", new Route("POST", this::exit));
+        routes.put("quote", new Route("GET", this::quote));
+        routes.put("occupancy", new Route("GET", this::occupancy));
+        routes.put("reserve", new Route("POST", this::reserve));
+        routes.put("cancel", new Route("POST", this::cancel));
+        routes.put("availability", new Route("GET", this::availability));
+        for (Map.Entry<String, Route> route : routes.entrySet()) {
+            server.createContext("/" + route.getKey(), exchange -> {
+                Facility single = facilities.getSingle();
+                if (single == null) {
+                    respond(exchange, 400, error("Several facilities are served, use /facilities/<id>/" + route.getKey()));
+                    return;
+                }
+                admit(exchange, single.getParkingService(), route.getValue());
+            });
+        }
+        server.createContext(FACILITIES_PATH, this::routeToFacility);
+    }
+
+    public static GateServer fromSystemProperties(FacilityRegistry facilities) throws IOException {
+        return new GateServer(facilities, Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT),
+                Integer.getInteger(WORKERS_PROPERTY, DEFAULT_WORKERS),
+                Integer.getInteger(QUEUE_CAPACITY_PROPERTY, DEFAULT_QUEUE_CAPACITY));
+    }
+
+    // A virtual thread per request where the JVM has them; looked up at run time since the code targets Java 8
+    private static ExecutorService newWorkers(int workers) {
+        try {
+            ExecutorService virtualThreads = (ExecutorService) java.util.concurrent.Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            logger.info("Gate requests run on virtual threads");
+            return virtualThreads;
+        } catch (ReflectiveOperationException e) {
+            if (workers <= 0) {
+                throw new IllegalArgumentException("At least one worker is needed: " + workers);
+            }
+            logger.info("Gate requests run on " + workers + " worker threads");
+            AtomicInteger count = new AtomicInteger();
+            // Unbounded, since the admission semaphore already caps what is queued
+            return new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, "gate-worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Gate API listening on port " + getPort());
+    }
+
+    // Waits up to a second for requests being answered
+    public void stop() {
+        server.stop(1);
+        workers.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, ParkingService parkingService, Map<String, String> parameters) throws Exception;
+    }
+
+    private static final class Route {
+        final String method;
+        final Handler handler;
+
+        Route(String method, Handler handler) {
+            this.method = method;
+            this.handler = handler;
+        }
+    }
+
+    // /facilities/<id>/<route>, resolved on the server thread since it is only a map lookup
+    private void routeToFacility(HttpExchange exchange) {
+        String[] path = exchange.getRequestURI().getPath().substring(FACILITIES_PATH.length()).split("/");
+        Route route = path.length == 2 ? routes.get(path[1]) : null;
+        if (route == null) {
+            respond(exchange, 404, error("Unknown path " + exchange.getRequestURI().getPath()));
+            return;
+        }
+        Facility facility;
+        try {
+            facility = facilities.get(path[0]);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 404, error(e.getMessage()));
+            return;
+        }
+        admit(exchange, facility.getParkingService(), route);
+    }
+
+    private void admit(HttpExchange exchange, ParkingService parkingService, Route route) {
+        if (!route.method.equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", route.method);
+            respond(exchange, 405, error("Use " + route.method));
+            return;
+        }
+        if (!admitted.tryAcquire()) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, error("Too many requests waiting"));
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    handle(exchange, parkingService, route.handler);
+                } finally {
+                    admitted.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            admitted.release();
+            respond(exchange, 503, error("Shutting down"));
+        }
+    }
+
+    private void handle(HttpExchange exchange, ParkingService parkingService, Handler handler) {
+        try {
+            // The body is not used, but has to be read for the connection to be kept alive
+            try (InputStream body = exchange.getRequestBody()) {
+                byte[] buffer = new byte[512];
+                while (body.read(buffer) >= 0) {
+                    // discard
+                }
+            }
+            handler.handle(exchange, parkingService, parameters(exchange.getRequestURI().getRawQuery()));
+        } catch (LotFullException e) {
+            respond(exchange, 409, error(e.getMessage()));
+        } catch (BadRequestException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Unable to answer " + exchange.getRequestMethod() + " " + exchange.getRequestURI(), e);
+            respond(exchange, 500, error("Internal error"));
+        }
+    }
+
+    private void entry(HttpExchange exchange, ParkingService parkingService, Map<String, String> parameters) throws Exception {
+        String vehicleRegNumber = required(parameters, "plate");
+        ParkingType parkingType = parkingType(parameters);
+        EntryResult entry;
+        try {
+            entry = parkingService.enter(vehicleRegNumber, parkingType);
+        } catch (AlreadyParkedException e) {
+            // Store failures are left to the 500 answer, so gates know to retry them
+            respond(exchange, 409, error(e.getMessage()));
+            return;
+        }
+        Ticket ticket = entry.getTicket();
+        respond(exchange, 201, "{" + ticketFields(ticket) + ",\"level\":"
+                + parkingService.getLevel(ticket.getParkingSpot().getId()) + ",\"recurringUser\":" + entry.isRecurringUser() + "}");
+    }
+
+    private void exit(HttpExchange exchange, ParkingService parkingService, Map<String, String> parameters) throws Exception {
+        ExitResult exit;
+        try {
+            exit = parkingService.exit(required(parameters, "plate"));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 404, error(e.getMessage()));
+            return;
+        }
+        if (!exit.isUpdated()) {
+            respond(exchange, 500, error("The ticket could not be closed"));
+            return;
+        }
+        respond(exchange, 200, "{" + ticketFields(exit.getTicket()) + ",\"discounted\":" + exit.isDiscounted() + "}");
+    }
+
+    private void quote(HttpExchange exchange, ParkingService parkingService, Map<String, String> parameters) throws Exception {
+        Ticket ticket;
+        try {
+            ticket = parkingService.quote(required(parameters, "plate"));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 404, error(e.getMessage()));
+            return;
+        }
+        respond(exchange, 200, "{" + ticketFields(ticket) + "}");
+    }
+
+    private void occupancy(HttpExchange exchange, ParkingService parkingService, Map<String, String> parameters) throws Exception {
+        StringBuilder json = new StringBuilder("{");
+        for (ParkingType parkingType : ParkingType.values()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(parkingType).append("\":{\"free\":").append(parkingService.getFreeCount(parkingType))
+                    .append(",\"spots\":").append(parkingService.getSpotCount(parkingType)).append('}');
+        }
+        respond(exchange, 200, json.append('}').toString());
+    }
+
+    private void reserve(HttpExchange exchange, ParkingService parkingService, Map<String, String> parameters) throws Exception {
+        String vehicleRegNumber = required(parameters, "plate");
+        ParkingType parkingType = parkingType(parameters);
+        Date from = time(parameters, "from");
+        Date to = time(parameters, "to");
+        Reservation reservation;
+        try {
+            reservation = parkingService.reserve(vehicleRegNumber, parkingType, from, to);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (IllegalStateException e) {
+            respond(exchange, 404, error(e.getMessage()));
+            return;
+        }
+        respond(exchange, 201, "{\"reservationId\":" + reservation.getId()
+                + ",\"plate\":" + string(reservation.getVehicleRegNumber())
+                + ",\"type\":\"" + reservation.getParkingType() + '"'
+                + ",\"from\":" + time(reservation.getStart()) + ",\"to\":" + time(reservation.getEnd()) + "}");
+    }
+
+    private void cancel(HttpExchange exchange, ParkingService parkingService, Map<String, String> parameters) throws Exception {
+        int reservationId;
+        try {
+            reservationId = Integer.parseInt(required(parameters, "id"));
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid reservation id " + parameters.get("id"));
+        }
+        boolean cancelled;
+        try {
+            cancelled = parkingService.cancelReservation(reservationId);
+        } catch (IllegalStateException e) {
+            cancelled = false;
+        }
+        if (!cancelled) {
+            respond(exchange, 404, error("No reservation " + reservationId));
+            return;
+        }
+        respond(exchange, 200, "{\"reservationId\":" + reservationId + ",\"cancelled\":true}");
+    }
+
+    private void availability(HttpExchange exchange, ParkingService parkingService, Map<String, String> parameters) throws Exception {
+        ParkingType parkingType = parkingType(parameters);
+        Date from = time(parameters, "from");
+        Date to = time(parameters, "to");
+        int available;
+        try {
+            available = parkingService.getReservableCount(parkingType, from, to);
+        } catch (IllegalStateException e) {
+            respond(exchange, 404, error(e.getMessage()));
+            return;
+        }
+        respond(exchange, 200, "{\"type\":\"" + parkingType + "\",\"from\":" + time(from) + ",\"to\":" + time(to)
+                + ",\"available\":" + available + "}");
+    }
+
+    private static ParkingType parkingType(Map<String, String> parameters) throws BadRequestException {
+        try {
+            return ParkingType.valueOf(required(parameters, "type").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown parking type " + parameters.get("type"));
+        }
+    }
+
+    private static Date time(Map<String, String> parameters, String name) throws BadRequestException {
+        String value = required(parameters, name);
+        try {
+            if (value.endsWith("Z")) {
+                return Date.from(Instant.parse(value));
+            }
+            return Date.from(LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid time " + value + " for parameter " + name);
+        }
+    }
+
+    private static String ticketFields(Ticket ticket) {
+        StringBuilder json = new StringBuilder();
+        json.append("\"ticketId\":").append(ticket.getId())
+                .append(",\"plate\":").append(string(ticket.getVehicleRegNumber()))
+                .append(",\"parkingNumber\":").append(ticket.getParkingSpot().getId())
+                .append(",\"type\":\"").append(ticket.getParkingSpot().getParkingType()).append('"')
+                .append(",\"inTime\":").append(time(ticket.getInTime()));
+        if (ticket.getOutTime() != null) {
+            json.append(",\"outTime\":").append(time(ticket.getOutTime()))
+                    .append(",\"price\":").append(ticket.getPrice());
+        }
+        return json.toString();
+    }
+
+    private static String time(Date date) {
+        return date == null ? "null" : "\"" + Instant.ofEpochMilli(date.getTime()) + "\"";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + string(message) + "}";
+    }
+
+    private static String string(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    private static String required(Map<String, String> parameters, String name) throws BadRequestException {
+        String value = parameters.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new BadRequestException("Parameter " + name + " is required");
+        }
+        return value.trim();
+    }
+
+    private static Map<String, String> parameters(String query) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // The gate hung up; nothing left to tell it
+            logger.warn("Unable to answer " + exchange.getRequestURI() + ": " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static final class BadRequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    // Serves the facilities of parkit.facilities, or the lot of the parkit.storage backend, until the JVM is stopped
+    public static void main(String[] args) throws Exception {
+        FacilityRegistry facilities = FacilityRegistry.fromSystemProperties();
+        Metrics.startReportingFromSystemProperties();
+        GateServer server = fromSystemProperties(facilities);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            Metrics.stopReporting();
+            facilities.close();
+        }, "gate-server-shutdown"));
+        server.start();
+    }
+}
@@ -0,0 +1,167 @@
+package com.parkit.parkingsystem.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.Storage;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.service.Facility;
+import com.parkit.parkingsystem.service.FacilityRegistry;
+
+// Requests per second the gate API answers as more gates call it at once. Each gate is a thread entering and
+// leaving with its own vehicle in a loop over HTTP; every step of gates runs for the same time, after a warm-up.
+//   -Dparkit.http.benchmark.gates=1,2,4,8,16,32,64,128 -Dparkit.http.benchmark.seconds=10
+// The lot is in memory unless -Dparkit.storage=jdbc, so by default the numbers are those of the HTTP layer.
+// With -Dparkit.facilities set, the gates are spread over those facilities in turn, each one set up from its
+// parkit.facility.<id>.* properties, to see how throughput grows with facilities that share no database.
+public class GateServerBenchmark {
+
+    public static final String GATES_PROPERTY = "parkit.http.benchmark.gates";
+    public static final String SECONDS_PROPERTY = "parkit.http.benchmark.seconds";
+
+    private static final int WARM_UP_SECONDS = 2;
+
+    private final String baseUrl;
+    private final String[] facilityPaths;
+    private volatile boolean running;
+
+    GateServerBenchmark(int port, String[] facilityPaths) {
+        this.baseUrl = "http://localhost:" + port;
+        this.facilityPaths = facilityPaths;
+    }
+
+    private Result run(int gates, int seconds, boolean measured) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram("gateApi.benchmark");
+        LongAdder rejected = new LongAdder();
+        running = true;
+        Thread[] threads = new Thread[gates];
+        for (int i = 0; i < gates; i++) {
+            // VEHICLE_REG_NUMBER holds 10 characters
+            String plate = String.format("BENCH%05d", i);
+            String facilityPath = facilityPaths[i % facilityPaths.length];
+            threads[i] = new Thread(() -> runGate(facilityPath, plate, latency, rejected), "benchmark-gate-" + (i + 1));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        return measured ? new Result(gates, elapsedNanos, latency.snapshot(), rejected.sum()) : null;
+    }
+
+    private void runGate(String facilityPath, String plate, LatencyHistogram latency, LongAdder rejected) {
+        boolean parked = false;
+        while (running || parked) {
+            String path = facilityPath + (parked ? "/exit?plate=" + plate : "/entry?type=CAR&plate=" + plate);
+            long start = System.nanoTime();
+            int status;
+            try {
+                status = post(path);
+            } catch (IOException e) {
+                latency.recordSince(start, false);
+                continue;
+            }
+            if (status == 503) {
+                latency.recordSince(start);
+                rejected.increment();
+                continue;
+            }
+            latency.recordSince(start, status < 300);
+            if (status < 300) {
+                parked = !parked;
+            } else if (parked && status == 404) {
+                parked = false;
+            }
+        }
+    }
+
+    private int post(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        int status = connection.getResponseCode();
+        // Read to the end so the connection goes back to the keep-alive cache
+        try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (body != null) {
+                byte[] buffer = new byte[512];
+                while (body.read(buffer) >= 0) {
+                    // discard
+                }
+            }
+        }
+        return status;
+    }
+
+    private static final class Result {
+        private final int gates;
+        private final long elapsedNanos;
+        private final LatencyHistogram.Snapshot latency;
+        private final long rejected;
+
+        Result(int gates, long elapsedNanos, LatencyHistogram.Snapshot latency, long rejected) {
+            this.gates = gates;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public String toString() {
+            long answered = latency.getCount() - latency.getErrors() - rejected;
+            return String.format("%5d %12.0f %10.2f %10.2f %10d %8d", gates, answered * 1e9 / elapsedNanos,
+                    latency.getPercentileNanos(50) / 1e6, latency.getPercentileNanos(99) / 1e6,
+                    rejected, latency.getErrors());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] steps = System.getProperty(GATES_PROPERTY, "1,2,4,8,16,32,64,128").split(",");
+        int seconds = Integer.getInteger(SECONDS_PROPERTY, 10);
+        int maxGates = 0;
+        for (String step : steps) {
+            maxGates = Math.max(maxGates, Integer.parseInt(step.trim()));
+        }
+        // HttpURLConnection keeps 5 idle connections per server by default, and opens a new one per request past that
+        System.setProperty("http.maxConnections", String.valueOf(maxGates));
+        FacilityRegistry facilities;
+        String[] facilityPaths;
+        if (System.getProperty(FacilityRegistry.FACILITIES_PROPERTY, "").trim().isEmpty()) {
+            Storage storage = Storage.JDBC.equalsIgnoreCase(System.getProperty(Storage.BACKEND_PROPERTY))
+                    ? Storage.jdbc(new DataBaseConfig()) : Storage.inMemory(maxGates, 0);
+            facilities = new FacilityRegistry(Collections.singletonList(
+                    new Facility(FacilityRegistry.DEFAULT_FACILITY, storage)));
+            facilityPaths = new String[] {""};
+        } else {
+            facilities = FacilityRegistry.fromSystemProperties();
+            facilityPaths = new String[facilities.getFacilities().size()];
+            int i = 0;
+            for (Facility facility : facilities.getFacilities()) {
+                facilityPaths[i++] = "/facilities/" + facility.getId();
+            }
+        }
+        GateServer server = new GateServer(facilities, 0, Integer.getInteger(GateServer.WORKERS_PROPERTY,
+                GateServer.DEFAULT_WORKERS), Integer.getInteger(GateServer.QUEUE_CAPACITY_PROPERTY,
+                GateServer.DEFAULT_QUEUE_CAPACITY));
+        server.start();
+        try {
+            GateServerBenchmark benchmark = new GateServerBenchmark(server.getPort(), facilityPaths);
+            benchmark.run(maxGates, WARM_UP_SECONDS, false);
+            System.out.println("gates   requests/s   p50 (ms)   p99 (ms)  rejected   errors");
+            for (String step : steps) {
+                System.out.println(benchmark.run(Integer.parseInt(step.trim()), seconds, true));
+            }
+        } finally {
+            server.stop();
+            facilities.close();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.parkit.parkingsystem.archive;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+// Closed tickets moved out of the ticket table, in compressed segment files of one day of exits each
+// (see TicketSegment), named tickets-<day>-<lowest ticket ID>.seg. Segments are first written as .pending
+// files and only published once the tickets are deleted from the table, so a reader sees each ticket
+// in exactly one place.
+public class TicketArchive {
+
+    public static final String DIRECTORY_PROPERTY = "parkit.archive.dir";
+    private static final String DEFAULT_DIRECTORY = "archive";
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String PENDING_SUFFIX = ".pending";
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final Path directory;
+
+    public TicketArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    public static TicketArchive fromSystemProperties() {
+        return new TicketArchive(Paths.get(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY)));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Writes the tickets as pending segments, one per day of exit, and returns them
+    public List<Path> writePending(List<Ticket> tickets) throws IOException {
+        Files.createDirectories(directory);
+        Map<LocalDate, List<Ticket>> days = new TreeMap<>();
+        for (Ticket ticket : tickets) {
+            LocalDate day = Instant.ofEpochMilli(ticket.getOutTime().getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+            days.computeIfAbsent(day, d -> new ArrayList<>()).add(ticket);
+        }
+        List<Path> pending = new ArrayList<>();
+        for (Map.Entry<LocalDate, List<Ticket>> day : days.entrySet()) {
+            int lowestId = day.getValue().stream().mapToInt(Ticket::getId).min().getAsInt();
+            Path file = directory.resolve("tickets-" + DAY.format(day.getKey()) + "-" + lowestId + PENDING_SUFFIX);
+            TicketSegment.write(file, day.getValue());
+            pending.add(file);
+        }
+        return pending;
+    }
+
+    // Makes pending segments visible to readers
+    public void publish(List<Path> pending) throws IOException {
+        for (Path file : pending) {
+            Files.move(file, segmentOf(file), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    public void discard(List<Path> pending) throws IOException {
+        for (Path file : pending) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Segments left pending by an interrupted archive run, to be published or discarded
+    public List<Path> getPendingSegments() throws IOException {
+        return list(PENDING_SUFFIX);
+    }
+
+    public List<Path> getSegments() throws IOException {
+        return list(SEGMENT_SUFFIX);
+    }
+
+    // Lowest ticket ID of a segment or pending segment, from its name
+    public static int lowestTicketId(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(name.lastIndexOf('-') + 1, name.lastIndexOf('.')));
+    }
+
+    // Archived tickets of the vehicle, oldest exit first
+    public List<Ticket> findByVehicle(String vehicleRegNumber) throws IOException {
+        List<Ticket> tickets = new ArrayList<>();
+        scan(vehicleRegNumber, Long.MIN_VALUE, Long.MAX_VALUE, tickets::add);
+        tickets.sort(Comparator.comparing(Ticket::getOutTime));
+        return tickets;
+    }
+
+    public int countByVehicle(String vehicleRegNumber) throws IOException {
+        int[] count = new int[1];
+        scan(vehicleRegNumber, Long.MIN_VALUE, Long.MAX_VALUE, ticket -> count[0]++);
+        return count[0];
+    }
+
+    // Archived tickets closed in [from, to), oldest exit first; segments outside the range are not inflated
+    public List<Ticket> findClosedBetween(Date from, Date to) throws IOException {
+        List<Ticket> tickets = new ArrayList<>();
+        scan(null, from.getTime(), to.getTime(), tickets::add);
+        tickets.sort(Comparator.comparing(Ticket::getOutTime));
+        return tickets;
+    }
+
+    // Passes every archived ticket closed in [from, to), of the vehicle unless it is null, segment by segment
+    public void scan(String vehicleRegNumber, long from, long to, Consumer<Ticket> consumer) throws IOException {
+        for (Path segment : getSegments()) {
+            TicketSegment.read(segment, vehicleRegNumber, from, to, consumer);
+        }
+    }
+
+    private List<Path> list(String suffix) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "tickets-*" + suffix)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        // Day first, then lowest ticket ID
+        files.sort(Comparator.comparing((Path file) -> file.getFileName().toString().substring(8, 16))
+                .thenComparingInt(TicketArchive::lowestTicketId));
+        return files;
+    }
+
+    private static Path segmentOf(Path pending) {
+        String name = pending.getFileName().toString();
+        return pending.resolveSibling(name.substring(0, name.length() - PENDING_SUFFIX.length()) + SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,268 @@
+package com.parkit.parkingsystem.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+// One segment file of closed tickets, sorted by exit time. An uncompressed header
+//   MAGIC, VERSION, ticket count, first exit time, last exit time
+// lets a time range skip the file without inflating it. The rest is one zlib stream of columns:
+//   parking type names; vehicle dictionary; per ticket: vehicle index, ID delta, parking number, type index,
+//   exit time delta, stay length, price in cents
+// all as variable length integers, signed ones zigzag encoded. The dictionary comes first so a search for a
+// vehicle can stop reading a segment that never saw it.
+final class TicketSegment {
+
+    private static final int MAGIC = 0x504B5331;
+    private static final int VERSION = 1;
+
+    private TicketSegment() {
+    }
+
+    static final class Header {
+        final int count;
+        final long firstOutTime;
+        final long lastOutTime;
+
+        Header(int count, long firstOutTime, long lastOutTime) {
+            this.count = count;
+            this.firstOutTime = firstOutTime;
+            this.lastOutTime = lastOutTime;
+        }
+    }
+
+    // Writes and syncs the tickets, which must all be closed and have a parking spot
+    static void write(Path file, List<Ticket> tickets) throws IOException {
+        List<Ticket> sorted = new ArrayList<>(tickets);
+        sorted.sort(Comparator.comparing(Ticket::getOutTime));
+        Map<String, Integer> vehicles = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        for (Ticket ticket : sorted) {
+            if (vehicles.putIfAbsent(ticket.getVehicleRegNumber(), dictionary.size()) == null) {
+                dictionary.add(ticket.getVehicleRegNumber());
+            }
+        }
+        long firstOutTime = sorted.isEmpty() ? 0 : sorted.get(0).getOutTime().getTime();
+        long lastOutTime = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1).getOutTime().getTime();
+
+        try (FileOutputStream out = new FileOutputStream(file.toFile())) {
+            DataOutputStream header = new DataOutputStream(new BufferedOutputStream(out));
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeInt(sorted.size());
+            header.writeLong(firstOutTime);
+            header.writeLong(lastOutTime);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            DeflaterOutputStream compressed = new DeflaterOutputStream(header, deflater, 64 * 1024);
+            DataOutputStream body = new DataOutputStream(new BufferedOutputStream(compressed, 64 * 1024));
+            try {
+                ParkingType[] types = ParkingType.values();
+                writeVarLong(body, types.length);
+                for (ParkingType type : types) {
+                    writeString(body, type.name());
+                }
+                writeVarLong(body, dictionary.size());
+                for (String vehicle : dictionary) {
+                    writeString(body, vehicle);
+                }
+                for (Ticket ticket : sorted) {
+                    writeVarLong(body, vehicles.get(ticket.getVehicleRegNumber()));
+                }
+                int previousId = 0;
+                for (Ticket ticket : sorted) {
+                    writeVarLong(body, zigzag(ticket.getId() - (long) previousId));
+                    previousId = ticket.getId();
+                }
+                for (Ticket ticket : sorted) {
+                    writeVarLong(body, ticket.getParkingSpot().getId());
+                }
+                for (Ticket ticket : sorted) {
+                    writeVarLong(body, ticket.getParkingSpot().getParkingType().ordinal());
+                }
+                long previousOutTime = firstOutTime;
+                for (Ticket ticket : sorted) {
+                    writeVarLong(body, ticket.getOutTime().getTime() - previousOutTime);
+                    previousOutTime = ticket.getOutTime().getTime();
+                }
+                for (Ticket ticket : sorted) {
+                    writeVarLong(body, zigzag(ticket.getOutTime().getTime() - ticket.getInTime().getTime()));
+                }
+                for (Ticket ticket : sorted) {
+                    writeVarLong(body, zigzag(Math.round(ticket.getPrice() * 100)));
+                }
+                body.flush();
+                compressed.finish();
+                header.flush();
+                out.getFD().sync();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    static Header readHeader(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64))) {
+            return readHeader(in, file);
+        }
+    }
+
+    private static Header readHeader(DataInputStream in, Path file) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException(file + " is not a ticket segment");
+        }
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException(file + " has unsupported version " + version);
+        }
+        return new Header(in.readInt(), in.readLong(), in.readLong());
+    }
+
+    // Passes the tickets of the segment closed in [from, to) and, when vehicleRegNumber is not null, of that vehicle
+    static void read(Path file, String vehicleRegNumber, long from, long to, Consumer<Ticket> consumer) throws IOException {
+        try (InputStream raw = Files.newInputStream(file)) {
+            DataInputStream headerIn = new DataInputStream(new BufferedInputStream(raw, 64 * 1024));
+            Header header = readHeader(headerIn, file);
+            if (header.count == 0 || header.lastOutTime < from || header.firstOutTime >= to) {
+                return;
+            }
+            Inflater inflater = new Inflater();
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(headerIn, inflater), 64 * 1024));
+                ParkingType[] types = new ParkingType[(int) readVarLong(in)];
+                for (int i = 0; i < types.length; i++) {
+                    String name = readString(in);
+                    try {
+                        types[i] = ParkingType.valueOf(name);
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException(file + " has unknown parking type " + name, e);
+                    }
+                }
+                String[] dictionary = new String[(int) readVarLong(in)];
+                int wanted = -1;
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = readString(in);
+                    if (dictionary[i].equals(vehicleRegNumber)) {
+                        wanted = i;
+                    }
+                }
+                if (vehicleRegNumber != null && wanted < 0) {
+                    return;
+                }
+                int count = header.count;
+                int[] vehicles = new int[count];
+                for (int i = 0; i < count; i++) {
+                    vehicles[i] = (int) readVarLong(in);
+                }
+                int[] ids = new int[count];
+                int id = 0;
+                for (int i = 0; i < count; i++) {
+                    id += (int) unzigzag(readVarLong(in));
+                    ids[i] = id;
+                }
+                int[] numbers = new int[count];
+                for (int i = 0; i < count; i++) {
+                    numbers[i] = (int) readVarLong(in);
+                }
+                int[] typeIndexes = new int[count];
+                for (int i = 0; i < count; i++) {
+                    typeIndexes[i] = (int) readVarLong(in);
+                }
+                long[] outTimes = new long[count];
+                long outTime = header.firstOutTime;
+                for (int i = 0; i < count; i++) {
+                    outTime += readVarLong(in);
+                    outTimes[i] = outTime;
+                }
+                long[] stays = new long[count];
+                for (int i = 0; i < count; i++) {
+                    stays[i] = unzigzag(readVarLong(in));
+                }
+                long[] cents = new long[count];
+                for (int i = 0; i < count; i++) {
+                    cents[i] = unzigzag(readVarLong(in));
+                }
+                for (int i = 0; i < count; i++) {
+                    if ((wanted >= 0 && vehicles[i] != wanted) || outTimes[i] < from || outTimes[i] >= to) {
+                        continue;
+                    }
+                    Ticket ticket = new Ticket();
+                    ticket.setId(ids[i]);
+                    ticket.setParkingSpot(new ParkingSpot(numbers[i], types[typeIndexes[i]], true));
+                    ticket.setVehicleRegNumber(dictionary[vehicles[i]]);
+                    ticket.setInTime(new Date(outTimes[i] - stays[i]));
+                    ticket.setOutTime(new Date(outTimes[i]));
+                    ticket.setPrice(cents[i] / 100.0);
+                    consumer.accept(ticket);
+                }
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated ticket segment");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer in ticket segment");
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
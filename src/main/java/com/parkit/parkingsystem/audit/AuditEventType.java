@@ -0,0 +1,12 @@
+package com.parkit.parkingsystem.audit;
+
+public enum AuditEventType {
+    // Ticket opened on a spot
+    ENTRY,
+    // Ticket closed
+    EXIT,
+    // Price set on a ticket, in cents
+    FARE,
+    // Spot taken or freed
+    SPOT
+}
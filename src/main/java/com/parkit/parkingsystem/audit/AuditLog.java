@@ -0,0 +1,269 @@
+package com.parkit.parkingsystem.audit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+// Ticket lifecycle events, written one line each by a background thread:
+//   <epoch millis> <facility> <ENTRY|EXIT|FARE|SPOT> <ticket ID> <vehicle> <parking type> <spot> <value>
+// where facility is the ID of the lot, as facilities share one log, value is the price in cents for FARE, 1 (freed) or 0 (taken) for SPOT, and 0 otherwise; unknown fields are "-".
+// Callers copy the event into a preallocated slot of a ring buffer and return, allocating nothing; when the writer
+// falls a whole ring behind they wait for room rather than lose events.
+public class AuditLog {
+
+    private static final Logger logger = LogManager.getLogger("AuditLog");
+
+    public static final String ENABLED_PROPERTY = "parkit.audit.enabled";
+    public static final String FILE_PROPERTY = "parkit.audit.file";
+    public static final String BUFFER_SIZE_PROPERTY = "parkit.audit.bufferSize";
+
+    // Next to the log4j RollingFile
+    private static final String DEFAULT_FILE = "log/audit.log";
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private static volatile AuditLog shared;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    // Sequence last written to each slot; a slot is readable once it holds the sequence being read
+    private final AtomicLongArray published;
+    private volatile long consumed;
+    private volatile boolean stopping;
+    private final Writer writer;
+    private final Thread consumer;
+
+    // Only touched by the consumer thread
+    private char[] line = new char[128];
+    private boolean unflushed;
+
+    public AuditLog(Writer writer, int bufferSize) {
+        int capacity = Integer.highestOneBit(Math.max(bufferSize, 2) - 1) << 1;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.writer = writer;
+        this.consumer = new Thread(this::drain, "ticket-audit");
+        consumer.setDaemon(true);
+        if (writer != null) {
+            consumer.start();
+        }
+    }
+
+    // The application's audit log, configured from the parkit.audit.* system properties and closed at shutdown
+    public static AuditLog shared() {
+        AuditLog auditLog = shared;
+        if (auditLog == null) {
+            synchronized (AuditLog.class) {
+                auditLog = shared;
+                if (auditLog == null) {
+                    auditLog = fromSystemProperties();
+                    Runtime.getRuntime().addShutdownHook(new Thread(auditLog::close, "ticket-audit-shutdown"));
+                    shared = auditLog;
+                }
+            }
+        }
+        return auditLog;
+    }
+
+    private static AuditLog fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"))) {
+            return new AuditLog(null, 1);
+        }
+        Path file = Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8), 64 * 1024);
+            return new AuditLog(writer, Integer.getInteger(BUFFER_SIZE_PROPERTY, DEFAULT_BUFFER_SIZE));
+        } catch (IOException e) {
+            logger.error("Unable to open audit file " + file + ", audit events are discarded", e);
+            return new AuditLog(null, 1);
+        }
+    }
+
+    public void entry(String facilityId, Ticket ticket) {
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        publish(facilityId, AuditEventType.ENTRY, ticket.getId(), ticket.getVehicleRegNumber(),
+                parkingSpot == null ? null : parkingSpot.getParkingType(), parkingSpot == null ? 0 : parkingSpot.getId(), 0);
+    }
+
+    public void exit(String facilityId, Ticket ticket) {
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        publish(facilityId, AuditEventType.EXIT, ticket.getId(), ticket.getVehicleRegNumber(),
+                parkingSpot == null ? null : parkingSpot.getParkingType(), parkingSpot == null ? 0 : parkingSpot.getId(), 0);
+    }
+
+    public void fare(String facilityId, Ticket ticket) {
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        publish(facilityId, AuditEventType.FARE, ticket.getId(), ticket.getVehicleRegNumber(),
+                parkingSpot == null ? null : parkingSpot.getParkingType(), parkingSpot == null ? 0 : parkingSpot.getId(),
+                Math.round(ticket.getPrice() * 100));
+    }
+
+    public void spot(String facilityId, ParkingSpot parkingSpot) {
+        publish(facilityId, AuditEventType.SPOT, 0, null, parkingSpot.getParkingType(), parkingSpot.getId(), parkingSpot.isAvailable() ? 1 : 0);
+    }
+
+    private void publish(String facilityId, AuditEventType type, int ticketId, String vehicleRegNumber, ParkingType parkingType,
+                         int parkingNumber, long value) {
+        if (writer == null || stopping) {
+            return;
+        }
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed >= slots.length) {
+            if (!consumer.isAlive()) {
+                // Closed meanwhile
+                return;
+            }
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        int index = (int) (sequence & mask);
+        Slot slot = slots[index];
+        slot.time = System.currentTimeMillis();
+        slot.facilityId = facilityId;
+        slot.type = type;
+        slot.ticketId = ticketId;
+        slot.vehicleRegNumber = vehicleRegNumber;
+        slot.parkingType = parkingType;
+        slot.parkingNumber = parkingNumber;
+        slot.value = value;
+        published.set(index, sequence);
+    }
+
+    private void drain() {
+        long next = 0;
+        while (true) {
+            int index = (int) (next & mask);
+            if (published.get(index) == next) {
+                write(slots[index]);
+                slots[index].vehicleRegNumber = null;
+                next++;
+                consumed = next;
+                continue;
+            }
+            flush();
+            if (stopping && next == claimed.get()) {
+                return;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private void write(Slot slot) {
+        String facilityId = slot.facilityId;
+        String vehicleRegNumber = slot.vehicleRegNumber;
+        int needed = 96 + (facilityId == null ? 0 : facilityId.length())
+                + (vehicleRegNumber == null ? 0 : vehicleRegNumber.length());
+        if (line.length < needed) {
+            line = new char[needed];
+        }
+        int length = appendLong(slot.time, 0);
+        line[length++] = ' ';
+        length = appendString(facilityId == null ? "-" : facilityId, length);
+        line[length++] = ' ';
+        length = appendString(slot.type.name(), length);
+        line[length++] = ' ';
+        length = slot.ticketId == 0 ? appendString("-", length) : appendLong(slot.ticketId, length);
+        line[length++] = ' ';
+        length = appendString(vehicleRegNumber == null ? "-" : vehicleRegNumber, length);
+        line[length++] = ' ';
+        length = appendString(slot.parkingType == null ? "-" : slot.parkingType.name(), length);
+        line[length++] = ' ';
+        length = appendLong(slot.parkingNumber, length);
+        line[length++] = ' ';
+        length = appendLong(slot.value, length);
+        line[length++] = '\n';
+        try {
+            writer.write(line, 0, length);
+            unflushed = true;
+        } catch (IOException e) {
+            logger.error("Error writing audit event", e);
+        }
+    }
+
+    private int appendString(String value, int offset) {
+        value.getChars(0, value.length(), line, offset);
+        return offset + value.length();
+    }
+
+    private int appendLong(long value, int offset) {
+        if (value < 0) {
+            line[offset++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            line[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+
+    private void flush() {
+        if (unflushed) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                logger.error("Error flushing audit events", e);
+            }
+            unflushed = false;
+        }
+    }
+
+    // Writes out every event published so far and stops the writer thread
+    public void close() {
+        stopping = true;
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("Error closing audit log", e);
+        }
+    }
+
+    private static final class Slot {
+        private long time;
+        private String facilityId;
+        private AuditEventType type;
+        private int ticketId;
+        private String vehicleRegNumber;
+        private ParkingType parkingType;
+        private int parkingNumber;
+        private long value;
+    }
+}
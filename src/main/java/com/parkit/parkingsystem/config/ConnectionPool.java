@@ -0,0 +1,365 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConnectionPool {
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+    // Connections used more recently than this are handed out without a ping
+    private static final long VALIDATE_AFTER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectionReturned = lock.newCondition();
+    // Most recently returned connection first, so the oldest idle ones sit at the tail
+    private final ArrayDeque<PooledConnection> idleConnections = new ArrayDeque<>();
+    private int totalCount;
+    private int activeCount;
+    private int waitingCount;
+    private boolean closed;
+
+    public ConnectionPool(ConnectionFactory connectionFactory, int maxSize, long maxWaitMillis, long idleTimeoutMillis, int validationTimeoutSeconds) {
+        this(connectionFactory, maxSize, maxWaitMillis, idleTimeoutMillis, validationTimeoutSeconds, 0);
+    }
+
+    public ConnectionPool(ConnectionFactory connectionFactory, int maxSize, long maxWaitMillis, long idleTimeoutMillis, int validationTimeoutSeconds, int statementCacheSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("Pool size must be positive");
+        this.connectionFactory = connectionFactory;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public Connection getConnection() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        while (true) {
+            PooledConnection candidate;
+            List<PooledConnection> expired;
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                expired = removeExpiredIdleConnections();
+                candidate = idleConnections.pollFirst();
+                if (candidate == null && totalCount >= maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new SQLTimeoutException("Timed out after " + maxWaitMillis + " ms waiting for a database connection");
+                    }
+                    waitingCount++;
+                    try {
+                        connectionReturned.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    } finally {
+                        waitingCount--;
+                    }
+                    continue;
+                }
+                if (candidate == null) {
+                    totalCount++;
+                }
+                activeCount++;
+            } finally {
+                lock.unlock();
+            }
+            closePhysicalConnections(expired);
+
+            if (candidate == null) {
+                try {
+                    candidate = new PooledConnection(connectionFactory.create());
+                    logger.info("Create DB connection");
+                } catch (SQLException | RuntimeException e) {
+                    discard(null);
+                    throw e;
+                }
+            } else if (!isAlive(candidate)) {
+                logger.warn("Discarding broken DB connection");
+                discard(candidate);
+                continue;
+            }
+            return candidate.borrow();
+        }
+    }
+
+    private boolean isAlive(PooledConnection pooledConnection) {
+        if (System.nanoTime() - pooledConnection.lastReturnedNanos < VALIDATE_AFTER_IDLE_NANOS) {
+            return true;
+        }
+        try {
+            return pooledConnection.physicalConnection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Must be called with the lock held
+    private List<PooledConnection> removeExpiredIdleConnections() {
+        List<PooledConnection> expired = null;
+        long expiryThreshold = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        PooledConnection oldest;
+        while ((oldest = idleConnections.peekLast()) != null && oldest.lastReturnedNanos - expiryThreshold < 0) {
+            idleConnections.pollLast();
+            totalCount--;
+            if (expired == null) {
+                expired = new ArrayList<>();
+            }
+            expired.add(oldest);
+        }
+        return expired;
+    }
+
+    void release(PooledConnection pooledConnection) {
+        boolean reusable = pooledConnection.resetState();
+        lock.lock();
+        try {
+            activeCount--;
+            if (reusable && !closed) {
+                pooledConnection.lastReturnedNanos = System.nanoTime();
+                idleConnections.addFirst(pooledConnection);
+                connectionReturned.signal();
+                return;
+            }
+            totalCount--;
+            connectionReturned.signal();
+        } finally {
+            lock.unlock();
+        }
+        pooledConnection.closePhysicalConnection();
+    }
+
+    private void discard(PooledConnection pooledConnection) {
+        lock.lock();
+        try {
+            totalCount--;
+            activeCount--;
+            connectionReturned.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (pooledConnection != null) {
+            pooledConnection.closePhysicalConnection();
+        }
+    }
+
+    private static void closePhysicalConnections(List<PooledConnection> pooledConnections) {
+        if (pooledConnections != null) {
+            for (PooledConnection pooledConnection : pooledConnections) {
+                pooledConnection.closePhysicalConnection();
+            }
+        }
+    }
+
+    public void close() {
+        List<PooledConnection> idle;
+        lock.lock();
+        try {
+            closed = true;
+            idle = new ArrayList<>(idleConnections);
+            totalCount -= idleConnections.size();
+            idleConnections.clear();
+            connectionReturned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        closePhysicalConnections(idle);
+    }
+
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return activeCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idleConnections.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaitingCount() {
+        lock.lock();
+        try {
+            return waitingCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getTotalCount() {
+        lock.lock();
+        try {
+            return totalCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    final class PooledConnection {
+        final Connection physicalConnection;
+        volatile long lastReturnedNanos;
+        final StatementCache statementCache;
+        private final List<Statement> openStatements = new ArrayList<>();
+
+        PooledConnection(Connection physicalConnection) {
+            this.physicalConnection = physicalConnection;
+            this.lastReturnedNanos = System.nanoTime();
+            this.statementCache = statementCacheSize > 0
+                    ? new StatementCache(physicalConnection, statementCacheSize, statementCacheHits, statementCacheMisses)
+                    : null;
+        }
+
+        Connection borrow() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandler(this));
+        }
+
+        void track(Object result) {
+            if (result instanceof Statement) {
+                openStatements.add((Statement) result);
+            }
+        }
+
+        // Leaves the physical connection as a fresh one would be; returns false if it cannot be reused
+        boolean resetState() {
+            boolean reusable = statementCache == null || statementCache.returnAll();
+            for (Iterator<Statement> it = openStatements.iterator(); it.hasNext(); ) {
+                try {
+                    it.next().close();
+                } catch (SQLException e) {
+                    reusable = false;
+                }
+                it.remove();
+            }
+            try {
+                if (physicalConnection.isClosed()) {
+                    return false;
+                }
+                if (!physicalConnection.getAutoCommit()) {
+                    physicalConnection.rollback();
+                    physicalConnection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Error while resetting pooled connection", e);
+                reusable = false;
+            }
+            return reusable;
+        }
+
+        void closePhysicalConnection() {
+            if (statementCache != null) {
+                statementCache.closeAll();
+            }
+            try {
+                physicalConnection.close();
+                logger.info("Closing DB connection");
+            } catch (SQLException e) {
+                logger.error("Error while closing connection", e);
+            }
+        }
+    }
+
+    // Hands the physical connection back to the pool on close() instead of closing it
+    private final class ConnectionHandler implements InvocationHandler {
+        private final PooledConnection pooledConnection;
+        private boolean logicallyClosed;
+
+        ConnectionHandler(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!logicallyClosed) {
+                        logicallyClosed = true;
+                        release(pooledConnection);
+                    }
+                    return null;
+                case "isClosed":
+                    return logicallyClosed || pooledConnection.physicalConnection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooledConnection.physicalConnection;
+                default:
+                    break;
+            }
+            if (logicallyClosed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (pooledConnection.statementCache != null && "prepareStatement".equals(name)) {
+                if (args.length == 1) {
+                    return pooledConnection.statementCache.prepareStatement((String) args[0]);
+                }
+                if (args.length == 2 && args[1] instanceof Integer) {
+                    return pooledConnection.statementCache.prepareStatement((String) args[0], (Integer) args[1]);
+                }
+            }
+            try {
+                Object result = method.invoke(pooledConnection.physicalConnection, args);
+                pooledConnection.track(result);
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -4,23 +4,110 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+    public static final String POOL_MAX_SIZE_PROPERTY = "parkit.db.pool.maxSize";
+    public static final String POOL_MAX_WAIT_PROPERTY = "parkit.db.pool.maxWaitMillis";
+    public static final String POOL_IDLE_TIMEOUT_PROPERTY = "parkit.db.pool.idleTimeoutMillis";
+    public static final String POOL_VALIDATION_TIMEOUT_PROPERTY = "parkit.db.pool.validationTimeoutSeconds";
+    public static final String STATEMENT_CACHE_SIZE_PROPERTY = "parkit.db.pool.statementCacheSize";
+    public static final String URL_PROPERTY = "parkit.db.url";
+    public static final String USER_PROPERTY = "parkit.db.user";
+    public static final String PASSWORD_PROPERTY = "parkit.db.password";
+    public static final String LOG_SAMPLE_RATE_PROPERTY = "parkit.db.logSampleRate";
+
+    private static final int DEFAULT_POOL_MAX_SIZE = 10;
+    private static final long DEFAULT_POOL_MAX_WAIT_MILLIS = 5000;
+    private static final long DEFAULT_POOL_IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    private static final int DEFAULT_POOL_VALIDATION_TIMEOUT_SECONDS = 2;
+    // Comfortably holds every query in DBConstants
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    // Connection, statement and result set releases happen several times per DAO call; at DEBUG level
+    // one in LOG_SAMPLE_RATE of them is logged, which is enough to see they happen
+    private static final int LOG_SAMPLE_RATE = Math.max(1, Integer.getInteger(LOG_SAMPLE_RATE_PROPERTY, 100));
+
+    public static final String DEFAULT_URL = "jdbc:mysql://localhost:3307/prod";
+
+    // One pool per database, shared by every DAO pointing at it
+    private static final ConcurrentMap<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    // Null for the database of the parkit.db.* properties
+    private final String facilityId;
+
+    public DataBaseConfig() {
+        this(null);
+    }
+
+    // Database of one facility, from its parkit.facility.<id>.db.* properties (see FacilityProperties)
+    public DataBaseConfig(String facilityId) {
+        this.facilityId = facilityId;
+    }
+
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3307/prod","root","%TiAtP94%TiAtP");
+        return getConnectionPool().getConnection();
+    }
+
+    public ConnectionPool getConnectionPool() throws ClassNotFoundException {
+        String url = getUrl();
+        ConnectionPool pool = pools.get(url);
+        if (pool == null) {
+            if (url.startsWith("jdbc:mysql:")) {
+                Class.forName("com.mysql.cj.jdbc.Driver");
+            }
+            pool = pools.computeIfAbsent(url, this::createConnectionPool);
+        }
+        return pool;
+    }
+
+    private ConnectionPool createConnectionPool(String url) {
+        Properties properties = new Properties();
+        properties.setProperty("user", getUser());
+        properties.setProperty("password", getPassword());
+        // Statements are cached per pooled connection, so let MySQL keep them prepared server side
+        properties.setProperty("useServerPrepStmts", "true");
+        // Lets JDBC batches of inserts travel as one multi-row statement
+        properties.setProperty("rewriteBatchedStatements", "true");
+        logger.info("Create DB connection pool for " + url);
+        return new ConnectionPool(
+                () -> DriverManager.getConnection(url, properties),
+                Integer.getInteger(POOL_MAX_SIZE_PROPERTY, DEFAULT_POOL_MAX_SIZE),
+                Long.getLong(POOL_MAX_WAIT_PROPERTY, DEFAULT_POOL_MAX_WAIT_MILLIS),
+                Long.getLong(POOL_IDLE_TIMEOUT_PROPERTY, DEFAULT_POOL_IDLE_TIMEOUT_MILLIS),
+                Integer.getInteger(POOL_VALIDATION_TIMEOUT_PROPERTY, DEFAULT_POOL_VALIDATION_TIMEOUT_SECONDS),
+                Integer.getInteger(STATEMENT_CACHE_SIZE_PROPERTY, DEFAULT_STATEMENT_CACHE_SIZE));
+    }
+
+    protected String getUrl() {
+        return FacilityProperties.get(facilityId, URL_PROPERTY, DEFAULT_URL);
+    }
+
+    protected String getUser() {
+        return FacilityProperties.get(facilityId, USER_PROPERTY, "root");
+    }
+
+    protected String getPassword() {
+        return FacilityProperties.get(facilityId, PASSWORD_PROPERTY, "%TiAtP94%TiAtP");
+    }
+
+    private static boolean sampled() {
+        return logger.isDebugEnabled() && ThreadLocalRandom.current().nextInt(LOG_SAMPLE_RATE) == 0;
     }
 
     public void closeConnection(Connection con){
         if(con!=null){
             try {
                 con.close();
-                logger.info("Closing DB connection");
+                if (sampled()) {
+                    logger.debug("Releasing DB connection");
+                }
             } catch (SQLException e) {
                 logger.error("Error while closing connection",e);
             }
@@ -31,7 +118,9 @@ public class DataBaseConfig {
         if(ps!=null){
             try {
                 ps.close();
-                logger.info("Closing Prepared Statement");
+                if (sampled()) {
+                    logger.debug("Closing Prepared Statement");
+                }
             } catch (SQLException e) {
                 logger.error("Error while closing prepared statement",e);
             }
@@ -42,7 +131,9 @@ public class DataBaseConfig {
         if(rs!=null){
             try {
                 rs.close();
-                logger.info("Closing Result Set");
+                if (sampled()) {
+                    logger.debug("Closing Result Set");
+                }
             } catch (SQLException e) {
                 logger.error("Error while closing result set",e);
             }
@@ -0,0 +1,33 @@
+package com.parkit.parkingsystem.config;
+
+// System properties of one facility: parkit.facility.<id>.db.url overrides parkit.db.url for facility <id>,
+// and likewise for every parkit.* property read through here. A null facility reads the parkit.* ones.
+public class FacilityProperties {
+
+    private static final String PREFIX = "parkit.";
+    private static final String FACILITY_PREFIX = "parkit.facility.";
+
+    private FacilityProperties() {
+    }
+
+    // The facility's own name of a parkit.* property
+    public static String name(String facilityId, String property) {
+        if (facilityId == null) {
+            return property;
+        }
+        if (!property.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("Not a parkit property: " + property);
+        }
+        return FACILITY_PREFIX + facilityId + "." + property.substring(PREFIX.length());
+    }
+
+    public static String get(String facilityId, String property, String defaultValue) {
+        String value = facilityId == null ? null : System.getProperty(name(facilityId, property));
+        return value != null ? value : System.getProperty(property, defaultValue);
+    }
+
+    public static int getInt(String facilityId, String property, int defaultValue) {
+        String value = get(facilityId, property, null);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
@@ -0,0 +1,184 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// LRU cache of prepared statements keyed by SQL text (and whether generated keys are returned), owned by a single pooled connection.
+// Only used by the thread currently holding that connection, so it needs no locking.
+class StatementCache {
+
+    private static final Logger logger = LogManager.getLogger("StatementCache");
+
+    private final Connection physicalConnection;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<String, CachedStatement> statements;
+    private final List<CachedStatement> borrowed = new ArrayList<>();
+
+    StatementCache(Connection physicalConnection, int maxSize, LongAdder hits, LongAdder misses) {
+        this.physicalConnection = physicalConnection;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement prepareStatement(String sql) throws SQLException {
+        return prepareStatement(sql, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? sql + "\u0000keys" : sql;
+        return prepareStatement(key, sql, autoGeneratedKeys);
+    }
+
+    private PreparedStatement prepareStatement(String key, String sql, int autoGeneratedKeys) throws SQLException {
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            hits.increment();
+        } else {
+            misses.increment();
+            PreparedStatement physical = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS
+                    ? physicalConnection.prepareStatement(sql, autoGeneratedKeys)
+                    : physicalConnection.prepareStatement(sql);
+            if (cached != null) {
+                // Same SQL already open on this connection: hand out an uncached one
+                cached = new CachedStatement(physical);
+                cached.evicted = true;
+            } else {
+                cached = new CachedStatement(physical);
+                statements.put(key, cached);
+            }
+        }
+        return cached.borrow();
+    }
+
+    // Returns every statement still checked out; false if one of them could not be reset
+    boolean returnAll() {
+        boolean clean = true;
+        for (CachedStatement cached : new ArrayList<>(borrowed)) {
+            clean &= cached.giveBack();
+        }
+        return clean;
+    }
+
+    void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            cached.evict();
+        }
+        statements.clear();
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    private final class CachedStatement implements InvocationHandler {
+        private final PreparedStatement physicalStatement;
+        private boolean inUse;
+        private boolean evicted;
+        private ResultSet openResultSet;
+        private PreparedStatement currentProxy;
+
+        CachedStatement(PreparedStatement physicalStatement) {
+            this.physicalStatement = physicalStatement;
+        }
+
+        PreparedStatement borrow() {
+            inUse = true;
+            borrowed.add(this);
+            currentProxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+            return currentProxy;
+        }
+
+        boolean giveBack() {
+            if (!inUse) {
+                return true;
+            }
+            inUse = false;
+            currentProxy = null;
+            borrowed.remove(this);
+            try {
+                if (openResultSet != null) {
+                    openResultSet.close();
+                    openResultSet = null;
+                }
+                if (evicted) {
+                    physicalStatement.close();
+                } else {
+                    physicalStatement.clearParameters();
+                }
+                return true;
+            } catch (SQLException e) {
+                logger.error("Error while returning cached statement", e);
+                return false;
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                try {
+                    physicalStatement.close();
+                } catch (SQLException e) {
+                    logger.error("Error while closing evicted statement", e);
+                }
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (proxy == currentProxy) {
+                        giveBack();
+                    }
+                    return null;
+                case "isClosed":
+                    return proxy != currentProxy || physicalStatement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (proxy != currentProxy) {
+                throw new SQLException("Statement has already been closed");
+            }
+            try {
+                Object result = method.invoke(physicalStatement, args);
+                if (result instanceof ResultSet) {
+                    openResultSet = (ResultSet) result;
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -2,11 +2,69 @@ package com.parkit.parkingsystem.constants;
 
 public class DBConstants {
 
-    public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, AVAILABLE, TYPE, LEVEL from parking";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String GET_OCCUPANCY = "select TYPE, count(*), sum(case when AVAILABLE then 1 else 0 end) from parking group by TYPE";
+    public static final String CLAIM_PARKING_SPOT = "update parking set AVAILABLE = false where PARKING_NUMBER = ? and AVAILABLE = true";
+    public static final String SAVE_PARKING_SPOT = "insert into parking(PARKING_NUMBER, AVAILABLE, TYPE, LEVEL) values(?,?,?,?)";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
     public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
-    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME  limit 1";
-    public static final String GET_NUMBER_TICKET = "SELECT count(*) from ticket where VEHICLE_REG_NUMBER = ?";
+
+    public static final String INCREMENT_VISITS = "insert into vehicle_visit(VEHICLE_REG_NUMBER, VISITS) values(?, 1) on duplicate key update VISITS = VISITS + 1";
+    public static final String GET_VISITS = "select VISITS from vehicle_visit where VEHICLE_REG_NUMBER = ?";
+    public static final String ADD_VISITS = "insert into vehicle_visit(VEHICLE_REG_NUMBER, VISITS) values(?, ?) on duplicate key update VISITS = VISITS + values(VISITS)";
+
+    public static final String SAVE_SESSION = "insert into active_session(VEHICLE_REG_NUMBER, TICKET_ID, PARKING_NUMBER, TYPE, IN_TIME) values(?,?,?,?,?)";
+    public static final String GET_SESSION = "select TICKET_ID, PARKING_NUMBER, TYPE, IN_TIME from active_session where VEHICLE_REG_NUMBER = ?";
+    public static final String GET_EXIT_SESSION = "select s.TICKET_ID, s.PARKING_NUMBER, s.TYPE, s.IN_TIME, v.VISITS from active_session s left join vehicle_visit v on v.VEHICLE_REG_NUMBER = s.VEHICLE_REG_NUMBER where s.VEHICLE_REG_NUMBER = ?";
+    public static final String DELETE_SESSION = "delete from active_session where VEHICLE_REG_NUMBER = ? and TICKET_ID = ?";
+
+    // Closed tickets after a given ID in ID order, read straight off the primary key so rows stream from the first one,
+    // with the visit rank of each ticket for its vehicle. The rank counts back from the vehicle's total visits, so tickets
+    // moved to the archive still count as earlier visits; the later tickets are counted on the TICKET_VEHICLE index,
+    // which holds the ID too
+    public static final String GET_CLOSED_TICKETS_FOR_BILLING = "select t.ID, t.IN_TIME, t.OUT_TIME, t.PRICE, p.TYPE,"
+            + " coalesce(v.VISITS, (select count(*) from ticket a where a.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER))"
+            + " - (select count(*) from ticket l where l.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and l.ID > t.ID)"
+            + " from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER"
+            + " left join vehicle_visit v on v.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER"
+            + " where t.ID > ? and t.OUT_TIME is not null order by t.ID";
+    public static final String UPDATE_TICKET_PRICE = "update ticket set PRICE=? where ID=?";
+
+    public static final String ROLL_UP_HOUR = "insert into ticket_rollup_hour(HOUR_START, TYPE, TICKETS, REVENUE_CENTS) values(?,?,?,?)"
+            + " on duplicate key update TICKETS = TICKETS + values(TICKETS), REVENUE_CENTS = REVENUE_CENTS + values(REVENUE_CENTS)";
+    public static final String ROLL_UP_DAY = "insert into ticket_rollup_day(DAY_START, TYPE, TICKETS, REVENUE_CENTS) values(?,?,?,?)"
+            + " on duplicate key update TICKETS = TICKETS + values(TICKETS), REVENUE_CENTS = REVENUE_CENTS + values(REVENUE_CENTS)";
+    public static final String GET_HOURLY_ROLLUPS = "select HOUR_START, TYPE, TICKETS, REVENUE_CENTS from ticket_rollup_hour"
+            + " where HOUR_START >= ? and HOUR_START < ? order by HOUR_START, TYPE";
+    public static final String GET_DAILY_ROLLUPS = "select DAY_START, TYPE, TICKETS, REVENUE_CENTS from ticket_rollup_day"
+            + " where DAY_START >= ? and DAY_START < ? order by DAY_START, TYPE";
+    public static final String GET_ROLLUP_BACKFILL = "select ROLLUP_SINCE, LAST_TICKET_ID from rollup_backfill where ID = 1";
+    // Matches no row when another backfill moved the checkpoint meanwhile
+    public static final String UPDATE_ROLLUP_BACKFILL = "update rollup_backfill set LAST_TICKET_ID = ? where ID = 1 and LAST_TICKET_ID = ?";
+    // Closed tickets not rolled up as they closed, after a given ID in ID order
+    public static final String GET_TICKETS_FOR_ROLLUP_BACKFILL = "select t.ID, t.OUT_TIME, t.PRICE, p.TYPE from ticket t"
+            + " join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.OUT_TIME is not null and t.OUT_TIME < ? and t.ID > ? order by t.ID";
+
+    // Closed tickets older than a cutoff, after a given ID in ID order. Tickets the rollup backfill has not reached yet stay
+    public static final String GET_TICKETS_TO_ARCHIVE = "select t.ID, t.PARKING_NUMBER, p.TYPE, t.VEHICLE_REG_NUMBER, t.PRICE, t.IN_TIME, t.OUT_TIME"
+            + " from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER join rollup_backfill b on b.ID = 1"
+            + " where t.OUT_TIME is not null and t.OUT_TIME < ? and (t.OUT_TIME >= b.ROLLUP_SINCE or t.ID <= b.LAST_TICKET_ID)"
+            + " and t.ID > ? order by t.ID limit ?";
+    public static final String DELETE_ARCHIVED_TICKET = "delete from ticket where ID = ? and OUT_TIME is not null";
+    public static final String TICKET_EXISTS = "select count(*) from ticket where ID = ?";
+
+    // Secondary indexes of the ticket table (V5__ticket_indexes.sql), dropped and built again around a bulk import
+    public static final String GET_TICKET_INDEXES = "select distinct INDEX_NAME from information_schema.statistics"
+            + " where TABLE_SCHEMA = database() and TABLE_NAME = 'ticket'";
+    public static final String TICKET_VEHICLE_INDEX = "TICKET_VEHICLE";
+    public static final String TICKET_OUT_TIME_INDEX = "TICKET_OUT_TIME";
+    public static final String CREATE_TICKET_VEHICLE_INDEX = "create index TICKET_VEHICLE on ticket(VEHICLE_REG_NUMBER)";
+    public static final String CREATE_TICKET_OUT_TIME_INDEX = "create index TICKET_OUT_TIME on ticket(OUT_TIME)";
+    // Followed by the index name
+    public static final String DROP_TICKET_INDEX = "alter table ticket drop index ";
+    // Per connection; a bulk import checks the parking numbers itself
+    public static final String DISABLE_FOREIGN_KEY_CHECKS = "set foreign_key_checks = 0";
+    public static final String ENABLE_FOREIGN_KEY_CHECKS = "set foreign_key_checks = 1";
 }
@@ -3,4 +3,12 @@ package com.parkit.parkingsystem.constants;
 public class Fare {
     public static final double BIKE_RATE_PER_HOUR = 1.0;
     public static final double CAR_RATE_PER_HOUR = 1.5;
+
+    // Same rates in integer cents, used by the fare engine
+    public static final long BIKE_RATE_CENTS_PER_HOUR = 100;
+    public static final long CAR_RATE_CENTS_PER_HOUR = 150;
+
+    public static final int RECURRING_USER_DISCOUNT_PERCENT = 5;
+    // Stays up to this many minutes are free
+    public static final long FREE_MINUTES = 30;
 }
@@ -0,0 +1,37 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+// In-process copy of the active_session table: the open ticket of every parked vehicle, by plate.
+// Only sessions this process has saved or read are held; a miss falls back to the table.
+// Sessions are kept off the heap, see ActiveSessionTable.
+public class ActiveSessionMirror {
+
+    private final ActiveSessionTable sessions = new ActiveSessionTable();
+
+    public void put(Ticket ticket) {
+        sessions.put(ticket);
+    }
+
+    // Returns a fresh open ticket, or null when this process does not know the vehicle
+    public Ticket get(String vehicleRegNumber) {
+        return sessions.get(vehicleRegNumber);
+    }
+
+    public boolean contains(String vehicleRegNumber) {
+        return sessions.contains(vehicleRegNumber);
+    }
+
+    // Removes the session only if it still belongs to this ticket
+    public void remove(String vehicleRegNumber, int ticketId) {
+        sessions.remove(vehicleRegNumber, ticketId);
+    }
+
+    public void clear() {
+        sessions.clear();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,395 @@
+package com.parkit.parkingsystem.dao;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+// Open sessions by plate, off the heap. A plate of up to 10 letters, digits and dashes is packed into a long,
+// 6 bits a character, and each session is a 32 byte record of a direct buffer:
+//   0 plate | 8 in time millis | 16 ticket ID | 20 parking number | 24 parking type | 25 unused
+// Records are found by linear probing on the plate and the table doubles past 3/4 full, so a parked vehicle
+// costs 43 to 85 bytes and no object. Lookups are optimistic reads that retry under the lock only if a write
+// got in the way. The few plates that do not pack are kept in an ordinary map beside the table.
+public class ActiveSessionTable {
+
+    // Ticket ID returned for a plate without a session
+    public static final int NO_TICKET = -1;
+    public static final int MAX_PACKED_PLATE_LENGTH = 10;
+
+    static final int RECORD_SIZE = 32;
+    private static final int PLATE = 0;
+    private static final int IN_TIME = 8;
+    private static final int TICKET_ID = 16;
+    private static final int PARKING_NUMBER = 20;
+    private static final int PARKING_TYPE = 24;
+
+    private static final int MIN_SLOTS = 16;
+    // A GiB of records, the most a direct buffer indexed by int takes in powers of two
+    private static final int MAX_SLOTS = 1 << 25;
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final StampedLock lock = new StampedLock();
+    private final ConcurrentMap<String, Session> unpacked = new ConcurrentHashMap<>();
+    // Replaced as a whole when the table grows, so a reader always sees records and slot count that match
+    private volatile ByteBuffer table;
+    private int size;
+
+    public ActiveSessionTable() {
+        this(MIN_SLOTS);
+    }
+
+    public ActiveSessionTable(int expectedSessions) {
+        table = allocate(slotsFor(expectedSessions));
+    }
+
+    // The plate as a positive long, or 0 when it is empty, longer than 10 characters or has other characters
+    public static long pack(String plate) {
+        int length = plate.length();
+        if (length == 0 || length > MAX_PACKED_PLATE_LENGTH) {
+            return 0;
+        }
+        long packed = 0;
+        for (int i = 0; i < MAX_PACKED_PLATE_LENGTH; i++) {
+            int code = i < length ? code(plate.charAt(i)) : 0;
+            if (code < 0) {
+                return 0;
+            }
+            packed = packed << 6 | code;
+        }
+        return packed;
+    }
+
+    public static String unpack(long packed) {
+        StringBuilder plate = new StringBuilder(MAX_PACKED_PLATE_LENGTH);
+        for (int shift = 6 * (MAX_PACKED_PLATE_LENGTH - 1); shift >= 0; shift -= 6) {
+            int code = (int) (packed >>> shift) & 0x3f;
+            if (code == 0) {
+                break;
+            }
+            plate.append(character(code));
+        }
+        return plate.toString();
+    }
+
+    private static int code(char c) {
+        if (c >= '0' && c <= '9') {
+            return 1 + c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return 11 + c - 'A';
+        }
+        if (c >= 'a' && c <= 'z') {
+            return 37 + c - 'a';
+        }
+        return c == '-' ? 63 : -1;
+    }
+
+    private static char character(int code) {
+        if (code <= 10) {
+            return (char) ('0' + code - 1);
+        }
+        if (code <= 36) {
+            return (char) ('A' + code - 11);
+        }
+        return code <= 62 ? (char) ('a' + code - 37) : '-';
+    }
+
+    public void put(Ticket ticket) {
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        put(ticket.getVehicleRegNumber(), ticket.getId(), parkingSpot.getId(), parkingSpot.getParkingType(),
+                ticket.getInTime().getTime());
+    }
+
+    // Replaces any session of the plate
+    public void put(String plate, int ticketId, int parkingNumber, ParkingType parkingType, long inTimeMillis) {
+        long packed = pack(plate);
+        if (packed == 0) {
+            unpacked.put(plate, new Session(ticketId, parkingNumber, parkingType, inTimeMillis));
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            ByteBuffer records = table;
+            int slot = find(records, packed);
+            if (records.getLong(slot + PLATE) == 0) {
+                if (size + 1 > slots(records) / 4 * 3) {
+                    records = grow(records);
+                    slot = find(records, packed);
+                }
+                size++;
+            }
+            write(records, slot, packed, ticketId, parkingNumber, parkingType, inTimeMillis);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Returns a fresh open ticket, or null when the plate has no session
+    public Ticket get(String plate) {
+        long packed = pack(plate);
+        int ticketId;
+        int parkingNumber;
+        int parkingType;
+        long inTimeMillis;
+        if (packed == 0) {
+            Session session = unpacked.get(plate);
+            if (session == null) {
+                return null;
+            }
+            ticketId = session.ticketId;
+            parkingNumber = session.parkingNumber;
+            parkingType = session.parkingType.ordinal();
+            inTimeMillis = session.inTimeMillis;
+        } else {
+            long stamp = lock.tryOptimisticRead();
+            ByteBuffer records = table;
+            int slot = find(records, packed);
+            ticketId = records.getInt(slot + TICKET_ID);
+            parkingNumber = records.getInt(slot + PARKING_NUMBER);
+            parkingType = records.get(slot + PARKING_TYPE);
+            inTimeMillis = records.getLong(slot + IN_TIME);
+            boolean found = records.getLong(slot + PLATE) == packed;
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    records = table;
+                    slot = find(records, packed);
+                    ticketId = records.getInt(slot + TICKET_ID);
+                    parkingNumber = records.getInt(slot + PARKING_NUMBER);
+                    parkingType = records.get(slot + PARKING_TYPE);
+                    inTimeMillis = records.getLong(slot + IN_TIME);
+                    found = records.getLong(slot + PLATE) == packed;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            if (!found) {
+                return null;
+            }
+        }
+        Ticket ticket = new Ticket();
+        ticket.setId(ticketId);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, PARKING_TYPES[parkingType], false));
+        ticket.setVehicleRegNumber(plate);
+        ticket.setInTime(new Date(inTimeMillis));
+        return ticket;
+    }
+
+    // NO_TICKET when the plate has no session
+    public int getTicketId(String plate) {
+        long packed = pack(plate);
+        if (packed == 0) {
+            Session session = unpacked.get(plate);
+            return session == null ? NO_TICKET : session.ticketId;
+        }
+        long stamp = lock.tryOptimisticRead();
+        int ticketId = ticketIdAt(table, packed);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                ticketId = ticketIdAt(table, packed);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return ticketId;
+    }
+
+    public boolean contains(String plate) {
+        return getTicketId(plate) != NO_TICKET;
+    }
+
+    // Removes the session only if it still belongs to this ticket
+    public boolean remove(String plate, int ticketId) {
+        long packed = pack(plate);
+        if (packed == 0) {
+            Session session = unpacked.get(plate);
+            return session != null && session.ticketId == ticketId && unpacked.remove(plate, session);
+        }
+        long stamp = lock.writeLock();
+        try {
+            ByteBuffer records = table;
+            int slot = find(records, packed);
+            if (records.getLong(slot + PLATE) == 0 || records.getInt(slot + TICKET_ID) != ticketId) {
+                return false;
+            }
+            delete(records, slot);
+            size--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Open tickets at the time of the call
+    public List<Ticket> getTickets() {
+        List<Ticket> tickets = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            ByteBuffer records = table;
+            for (int slot = 0; slot < records.capacity(); slot += RECORD_SIZE) {
+                long packed = records.getLong(slot + PLATE);
+                if (packed != 0) {
+                    Ticket ticket = new Ticket();
+                    ticket.setId(records.getInt(slot + TICKET_ID));
+                    ticket.setParkingSpot(new ParkingSpot(records.getInt(slot + PARKING_NUMBER),
+                            PARKING_TYPES[records.get(slot + PARKING_TYPE)], false));
+                    ticket.setVehicleRegNumber(unpack(packed));
+                    ticket.setInTime(new Date(records.getLong(slot + IN_TIME)));
+                    tickets.add(ticket);
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        for (Map.Entry<String, Session> entry : unpacked.entrySet()) {
+            Session session = entry.getValue();
+            Ticket ticket = new Ticket();
+            ticket.setId(session.ticketId);
+            ticket.setParkingSpot(new ParkingSpot(session.parkingNumber, session.parkingType, false));
+            ticket.setVehicleRegNumber(entry.getKey());
+            ticket.setInTime(new Date(session.inTimeMillis));
+            tickets.add(ticket);
+        }
+        return tickets;
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size + unpacked.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = allocate(MIN_SLOTS);
+            size = 0;
+            unpacked.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Off-heap bytes held by the table, leaving out the plates that do not pack
+    public long getOffHeapBytes() {
+        return table.capacity();
+    }
+
+    private static int slotsFor(int sessions) {
+        int slots = MIN_SLOTS;
+        while (slots < MAX_SLOTS && slots / 4 * 3 < sessions) {
+            slots <<= 1;
+        }
+        return slots;
+    }
+
+    private static ByteBuffer allocate(int slots) {
+        return ByteBuffer.allocateDirect(slots * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    private static int slots(ByteBuffer records) {
+        return records.capacity() / RECORD_SIZE;
+    }
+
+    private static int home(ByteBuffer records, long packed) {
+        long hash = packed * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32) & slots(records) - 1;
+    }
+
+    // Offset of the plate's record, or of the free record where it would go. Gives up after a full turn, which a
+    // table never more than 3/4 full only takes when an optimistic reader sees it mid-write and will retry anyway
+    private static int find(ByteBuffer records, long packed) {
+        int mask = slots(records) - 1;
+        int slot = home(records, packed);
+        for (int probes = 0; probes <= mask; probes++) {
+            long stored = records.getLong(slot * RECORD_SIZE + PLATE);
+            if (stored == packed || stored == 0) {
+                return slot * RECORD_SIZE;
+            }
+            slot = slot + 1 & mask;
+        }
+        return slot * RECORD_SIZE;
+    }
+
+    private static int ticketIdAt(ByteBuffer records, long packed) {
+        int slot = find(records, packed);
+        return records.getLong(slot + PLATE) == packed ? records.getInt(slot + TICKET_ID) : NO_TICKET;
+    }
+
+    private static void write(ByteBuffer records, int offset, long packed, int ticketId, int parkingNumber,
+                              ParkingType parkingType, long inTimeMillis) {
+        records.putLong(offset + PLATE, packed);
+        records.putLong(offset + IN_TIME, inTimeMillis);
+        records.putInt(offset + TICKET_ID, ticketId);
+        records.putInt(offset + PARKING_NUMBER, parkingNumber);
+        records.put(offset + PARKING_TYPE, (byte) parkingType.ordinal());
+    }
+
+    private ByteBuffer grow(ByteBuffer records) {
+        int slots = slots(records);
+        if (slots >= MAX_SLOTS) {
+            throw new IllegalStateException("Active session table is full at " + size + " sessions");
+        }
+        ByteBuffer grown = allocate(slots << 1);
+        for (int offset = 0; offset < records.capacity(); offset += RECORD_SIZE) {
+            long packed = records.getLong(offset + PLATE);
+            if (packed != 0) {
+                int target = find(grown, packed);
+                for (int i = 0; i < RECORD_SIZE; i += 8) {
+                    grown.putLong(target + i, records.getLong(offset + i));
+                }
+            }
+        }
+        table = grown;
+        return grown;
+    }
+
+    // Empties the record, moving back the records after it that probing would no longer reach
+    private static void delete(ByteBuffer records, int offset) {
+        int mask = slots(records) - 1;
+        int hole = offset / RECORD_SIZE;
+        int slot = hole + 1 & mask;
+        long packed;
+        while ((packed = records.getLong(slot * RECORD_SIZE + PLATE)) != 0) {
+            int home = home(records, packed);
+            if ((slot - home & mask) >= (slot - hole & mask)) {
+                for (int i = 0; i < RECORD_SIZE; i += 8) {
+                    records.putLong(hole * RECORD_SIZE + i, records.getLong(slot * RECORD_SIZE + i));
+                }
+                hole = slot;
+            }
+            slot = slot + 1 & mask;
+        }
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            records.putLong(hole * RECORD_SIZE + i, 0);
+        }
+    }
+
+    private static final class Session {
+        private final int ticketId;
+        private final int parkingNumber;
+        private final ParkingType parkingType;
+        private final long inTimeMillis;
+
+        Session(int ticketId, int parkingNumber, ParkingType parkingType, long inTimeMillis) {
+            this.ticketId = ticketId;
+            this.parkingNumber = parkingNumber;
+            this.parkingType = parkingType;
+            this.inTimeMillis = inTimeMillis;
+        }
+    }
+}
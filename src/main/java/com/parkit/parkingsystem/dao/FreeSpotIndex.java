@@ -0,0 +1,129 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Free parking numbers of one ParkingType as a two level bitmap: one bit per spot,
+// plus one summary bit per 64 spot word telling whether that word may have a free spot.
+// Finding the lowest free number reads one summary word per 4096 spots.
+// All operations are lock free: claims are a compare-and-set on the spot's word, so
+// concurrent gates never get the same number and never wait on each other.
+// The number of free spots is counted on each change of a bit, so reading it costs a LongAdder sum.
+public class FreeSpotIndex {
+
+    private final int capacity;
+    private final AtomicLongArray words;
+    private final AtomicLongArray summary;
+    private final LongAdder free = new LongAdder();
+
+    public FreeSpotIndex(int capacity) {
+        this.capacity = capacity;
+        int wordCount = (capacity >> 6) + 1;
+        words = new AtomicLongArray(wordCount);
+        summary = new AtomicLongArray((wordCount >> 6) + 1);
+    }
+
+    // Returns the lowest free parking number, or 0 when every spot is taken
+    public int lowestFree() {
+        for (int s = 0; s < summary.length(); s++) {
+            long summaryWord = summary.get(s);
+            while (summaryWord != 0) {
+                long summaryBit = Long.lowestOneBit(summaryWord);
+                int wordIndex = (s << 6) + Long.numberOfTrailingZeros(summaryBit);
+                long word = words.get(wordIndex);
+                if (word != 0) {
+                    return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                }
+                summaryWord &= ~summaryBit;
+            }
+        }
+        return 0;
+    }
+
+    // Atomically takes the lowest free parking number; returns 0 when every spot is taken
+    public int claimLowestFree() {
+        for (int s = 0; s < summary.length(); s++) {
+            long summaryWord;
+            while ((summaryWord = summary.get(s)) != 0) {
+                int wordIndex = (s << 6) + Long.numberOfTrailingZeros(summaryWord);
+                long word = words.get(wordIndex);
+                if (word == 0) {
+                    clearSummaryBit(wordIndex);
+                    continue;
+                }
+                long bit = Long.lowestOneBit(word);
+                if (words.compareAndSet(wordIndex, word, word & ~bit)) {
+                    free.decrement();
+                    if (word == bit) {
+                        clearSummaryBit(wordIndex);
+                    }
+                    return (wordIndex << 6) + Long.numberOfTrailingZeros(bit);
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Returns false when the number is beyond this index's capacity
+    public boolean markFree(int number) {
+        checkNumber(number);
+        if (number > capacity) {
+            return false;
+        }
+        int wordIndex = number >> 6;
+        long bit = 1L << number;
+        long previous = words.getAndAccumulate(wordIndex, bit, (word, mask) -> word | mask);
+        if ((previous & bit) == 0) {
+            free.increment();
+        }
+        // Set after the spot bit so a claimer never sees the summary cleared while the word is non empty
+        summary.getAndAccumulate(wordIndex >> 6, 1L << wordIndex, (word, mask) -> word | mask);
+        return true;
+    }
+
+    // Returns true if the spot was free and is now taken by the caller
+    public boolean markTaken(int number) {
+        checkNumber(number);
+        if (number > capacity) {
+            return false;
+        }
+        int wordIndex = number >> 6;
+        long bit = 1L << number;
+        long previous = words.getAndAccumulate(wordIndex, ~bit, (word, mask) -> word & mask);
+        if (previous == bit) {
+            clearSummaryBit(wordIndex);
+        }
+        if ((previous & bit) != 0) {
+            free.decrement();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isFree(int number) {
+        return number > 0 && number <= capacity && (words.get(number >> 6) & (1L << number)) != 0;
+    }
+
+    public int freeCount() {
+        return (int) free.sum();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void clearSummaryBit(int wordIndex) {
+        long summaryBit = 1L << wordIndex;
+        summary.getAndAccumulate(wordIndex >> 6, ~summaryBit, (word, mask) -> word & mask);
+        // A spot freed while we were clearing must stay visible
+        if (words.get(wordIndex) != 0) {
+            summary.getAndAccumulate(wordIndex >> 6, summaryBit, (word, mask) -> word | mask);
+        }
+    }
+
+    private static void checkNumber(int number) {
+        if (number <= 0) {
+            throw new IllegalArgumentException("Parking number must be positive: " + number);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+// Parking spots kept only in memory, numbered like resources/Data.sql: CAR spots first, then BIKE spots.
+// Claims are lock free through one FreeSpotIndex per type.
+public class InMemoryParkingSpotStore implements ParkingSpotStore {
+
+    private final ParkingType[] types;
+    private final Map<ParkingType, Integer> spotCounts = new EnumMap<>(ParkingType.class);
+    private final Map<ParkingType, FreeSpotIndex> freeSpotIndexes = new EnumMap<>(ParkingType.class);
+
+    public InMemoryParkingSpotStore(int carSpots, int bikeSpots) {
+        if (carSpots < 0 || bikeSpots < 0) {
+            throw new IllegalArgumentException("Spot counts must not be negative");
+        }
+        int capacity = carSpots + bikeSpots;
+        types = new ParkingType[capacity + 1];
+        for (ParkingType parkingType : ParkingType.values()) {
+            freeSpotIndexes.put(parkingType, new FreeSpotIndex(capacity));
+        }
+        spotCounts.put(ParkingType.CAR, carSpots);
+        spotCounts.put(ParkingType.BIKE, bikeSpots);
+        for (int number = 1; number <= capacity; number++) {
+            types[number] = number <= carSpots ? ParkingType.CAR : ParkingType.BIKE;
+            freeSpotIndexes.get(types[number]).markFree(number);
+        }
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return freeSpotIndexes.get(parkingType).lowestFree();
+    }
+
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType) {
+        return freeSpotIndexes.get(parkingType).claimLowestFree();
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        int number = parkingSpot.getId();
+        if (number <= 0 || number >= types.length) {
+            return false;
+        }
+        FreeSpotIndex index = freeSpotIndexes.get(types[number]);
+        if (parkingSpot.isAvailable()) {
+            index.markFree(number);
+        } else {
+            index.markTaken(number);
+        }
+        return true;
+    }
+
+    @Override
+    public int getFreeCount(ParkingType parkingType) {
+        return freeSpotIndexes.get(parkingType).freeCount();
+    }
+
+    @Override
+    public int getSpotCount(ParkingType parkingType) {
+        return spotCounts.getOrDefault(parkingType, 0);
+    }
+}
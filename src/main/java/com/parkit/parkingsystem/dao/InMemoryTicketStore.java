@@ -0,0 +1,76 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+// Tickets kept only in memory, with the same rules as the JDBC store: one open ticket per vehicle,
+// closing a ticket ends its session, and callers always get copies, never the stored tickets.
+public class InMemoryTicketStore implements TicketStore {
+
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final ConcurrentMap<Integer, Ticket> tickets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Ticket> openTickets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> visits = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        Ticket stored = copy(ticket);
+        stored.setId(lastId.incrementAndGet());
+        if (stored.getOutTime() == null && openTickets.putIfAbsent(stored.getVehicleRegNumber(), stored) != null) {
+            return false;
+        }
+        tickets.put(stored.getId(), stored);
+        visits.merge(stored.getVehicleRegNumber(), 1, Integer::sum);
+        ticket.setId(stored.getId());
+        return true;
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        Ticket open = openTickets.get(vehicleRegNumber);
+        return open == null ? null : copy(open);
+    }
+
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        Ticket open = tickets.get(ticket.getId());
+        if (open == null || !openTickets.remove(open.getVehicleRegNumber(), open)) {
+            return false;
+        }
+        Ticket closed = copy(open);
+        closed.setPrice(ticket.getPrice());
+        closed.setOutTime(ticket.getOutTime());
+        tickets.put(closed.getId(), closed);
+        return true;
+    }
+
+    @Override
+    public Integer getNbTicket(String vehicleRegNumber) {
+        return visits.getOrDefault(vehicleRegNumber, 0);
+    }
+
+    public int getTicketCount() {
+        return tickets.size();
+    }
+
+    public int getOpenTicketCount() {
+        return openTickets.size();
+    }
+
+    private static Ticket copy(Ticket ticket) {
+        Ticket copy = new Ticket();
+        copy.setId(ticket.getId());
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        copy.setParkingSpot(new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable()));
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPrice(ticket.getPrice());
+        copy.setInTime(ticket.getInTime() == null ? null : new Date(ticket.getInTime().getTime()));
+        copy.setOutTime(ticket.getOutTime() == null ? null : new Date(ticket.getOutTime().getTime()));
+        return copy;
+    }
+}
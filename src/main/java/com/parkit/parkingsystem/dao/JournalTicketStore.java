@@ -0,0 +1,401 @@
+package com.parkit.parkingsystem.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+// Tickets kept in a local append-only journal of fixed size records, memory mapped, instead of MySQL.
+// Only open tickets, off the heap in an ActiveSessionTable, and visit counts are held in memory; they are
+// rebuilt from the journal on startup, stopping at the first record whose checksum does not match (a write
+// torn by a crash).
+// Appends go to the mapped file, so they survive a crash of the process; flush() forces them to disk.
+// When the journal is full, or periodically, it is compacted: closed tickets move to the history file
+// next to it and the journal is rewritten with the open tickets and visit counts only.
+public class JournalTicketStore implements TicketStore {
+
+    private static final Logger logger = LogManager.getLogger("JournalTicketStore");
+
+    static final int RECORD_SIZE = 64;
+    private static final int MAGIC = 0x504B4A31;
+    private static final int VERSION = 1;
+
+    private static final byte ENTRY = 1;
+    private static final byte EXIT = 2;
+    // Ticket saved already closed
+    private static final byte CLOSED = 3;
+    // Visit count of a vehicle, written by compaction
+    private static final byte VISITS = 4;
+
+    // Record layout; the header (record 0) holds MAGIC, VERSION and the last ticket ID at the same offsets as a record
+    private static final int TYPE = 0;
+    private static final int PARKING_TYPE = 1;
+    private static final int PLATE_LENGTH = 2;
+    private static final int ID = 4;
+    private static final int PARKING_NUMBER = 8;
+    private static final int IN_TIME = 12;
+    private static final int OUT_TIME = 20;
+    private static final int PRICE = 28;
+    private static final int PLATE = 36;
+    private static final int CHECKSUM = 60;
+    static final int MAX_PLATE_BYTES = CHECKSUM - PLATE;
+
+    private final Path path;
+    private final Path historyPath;
+    private final int initialRecords;
+
+    private final ActiveSessionTable openTickets = new ActiveSessionTable();
+    private final ConcurrentMap<String, Integer> visits = new ConcurrentHashMap<>();
+
+    // Everything below is guarded by this
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int capacity;
+    private int nextRecord;
+    private int lastId;
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+    private final CRC32 crc = new CRC32();
+    private ScheduledExecutorService compactor;
+
+    public JournalTicketStore(Path path, int initialRecords) throws IOException {
+        if (initialRecords < 2) {
+            throw new IllegalArgumentException("A journal needs room for at least 2 records");
+        }
+        this.path = path;
+        this.historyPath = path.resolveSibling(path.getFileName() + ".history");
+        this.initialRecords = initialRecords;
+        open();
+    }
+
+    private synchronized void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        capacity = (int) Math.max(initialRecords, size / RECORD_SIZE);
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        if (size == 0) {
+            writeHeader(mapped, 0);
+            nextRecord = 1;
+            return;
+        }
+        if (mapped.getInt(ID) != MAGIC || mapped.getInt(PARKING_NUMBER) != VERSION) {
+            throw new IOException(path + " is not a ticket journal");
+        }
+        lastId = mapped.getInt(IN_TIME);
+        recover();
+    }
+
+    private void recover() {
+        int applied = 0;
+        for (nextRecord = 1; nextRecord < capacity; nextRecord++) {
+            read(mapped, nextRecord);
+            if (record[TYPE] == 0) {
+                break;
+            }
+            if (!checksumMatches()) {
+                logger.warn("Ticket journal " + path + " ends with a damaged record at " + nextRecord + ", discarding it");
+                // So that records behind the damaged one can never be replayed once it is overwritten
+                for (int offset = nextRecord * RECORD_SIZE; offset < capacity * RECORD_SIZE; offset++) {
+                    mapped.put(offset, (byte) 0);
+                }
+                break;
+            }
+            apply();
+            applied++;
+        }
+        logger.info("Recovered " + applied + " journal records: " + openTickets.size() + " open tickets, "
+                + visits.size() + " vehicles");
+    }
+
+    // Updates the in-memory indexes from the record in the scratch buffer
+    private void apply() {
+        String plate = new String(record, PLATE, record[PLATE_LENGTH], StandardCharsets.UTF_8);
+        int id = recordBuffer.getInt(ID);
+        lastId = Math.max(lastId, id);
+        switch (record[TYPE]) {
+            case ENTRY: {
+                openTickets.put(plate, id, recordBuffer.getInt(PARKING_NUMBER),
+                        ParkingType.values()[record[PARKING_TYPE]], recordBuffer.getLong(IN_TIME));
+                visits.merge(plate, 1, Integer::sum);
+                break;
+            }
+            case EXIT: {
+                openTickets.remove(plate, id);
+                break;
+            }
+            case CLOSED: {
+                visits.merge(plate, 1, Integer::sum);
+                break;
+            }
+            case VISITS: {
+                visits.put(plate, recordBuffer.getInt(PARKING_NUMBER));
+                break;
+            }
+            default: logger.warn("Ignoring journal record of unknown type " + record[TYPE]);
+        }
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        String plate = ticket.getVehicleRegNumber();
+        byte[] plateBytes = plate.getBytes(StandardCharsets.UTF_8);
+        if (plateBytes.length > MAX_PLATE_BYTES) {
+            logger.error("Vehicle registration number too long for the journal: " + plate);
+            return false;
+        }
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        boolean closed = ticket.getOutTime() != null;
+        synchronized (this) {
+            if (!closed && openTickets.contains(plate)) {
+                return false;
+            }
+            int id = lastId + 1;
+            try {
+                append(closed ? CLOSED : ENTRY, id, parkingSpot.getId(), parkingSpot.getParkingType(), ticket.getInTime().getTime(),
+                        closed ? ticket.getOutTime().getTime() : 0, ticket.getPrice(), plateBytes);
+            } catch (Exception ex) {
+                logger.error("Error saving ticket", ex);
+                return false;
+            }
+            lastId = id;
+            if (!closed) {
+                openTickets.put(plate, id, parkingSpot.getId(), parkingSpot.getParkingType(), ticket.getInTime().getTime());
+            }
+            visits.merge(plate, 1, Integer::sum);
+            ticket.setId(id);
+            return true;
+        }
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        return openTickets.get(vehicleRegNumber);
+    }
+
+    @Override
+    public synchronized boolean updateTicket(Ticket ticket) {
+        String plate = ticket.getVehicleRegNumber();
+        Ticket open = openTickets.get(plate);
+        if (open == null || open.getId() != ticket.getId()) {
+            return false;
+        }
+        try {
+            append(EXIT, open.getId(), open.getParkingSpot().getId(), open.getParkingSpot().getParkingType(),
+                    open.getInTime().getTime(),
+                    ticket.getOutTime().getTime(), ticket.getPrice(), plate.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception ex) {
+            logger.error("Error saving ticket info", ex);
+            return false;
+        }
+        openTickets.remove(plate, open.getId());
+        return true;
+    }
+
+    @Override
+    public Integer getNbTicket(String vehicleRegNumber) {
+        return visits.getOrDefault(vehicleRegNumber, 0);
+    }
+
+    // Open tickets at the time of the call, e.g. to mark their spots taken after a restart
+    public List<Ticket> getOpenTickets() {
+        return openTickets.getTickets();
+    }
+
+    private void append(byte type, int id, int parkingNumber, ParkingType parkingType, long inTime, long outTime,
+                        double price, byte[] plate) throws IOException {
+        if (nextRecord == capacity) {
+            compactLocked();
+        }
+        encode(type, id, parkingNumber, parkingType, inTime, outTime, price, plate);
+        write(mapped, nextRecord);
+        nextRecord++;
+    }
+
+    private void encode(byte type, int id, int parkingNumber, ParkingType parkingType, long inTime, long outTime,
+                        double price, byte[] plate) {
+        record[TYPE] = type;
+        record[PARKING_TYPE] = (byte) (parkingType == null ? 0 : parkingType.ordinal());
+        record[PLATE_LENGTH] = (byte) plate.length;
+        record[3] = 0;
+        recordBuffer.putInt(ID, id);
+        recordBuffer.putInt(PARKING_NUMBER, parkingNumber);
+        recordBuffer.putLong(IN_TIME, inTime);
+        recordBuffer.putLong(OUT_TIME, outTime);
+        recordBuffer.putDouble(PRICE, price);
+        System.arraycopy(plate, 0, record, PLATE, plate.length);
+        for (int i = PLATE + plate.length; i < CHECKSUM; i++) {
+            record[i] = 0;
+        }
+        crc.reset();
+        crc.update(record, 0, CHECKSUM);
+        recordBuffer.putInt(CHECKSUM, (int) crc.getValue());
+    }
+
+    private boolean checksumMatches() {
+        crc.reset();
+        crc.update(record, 0, CHECKSUM);
+        return recordBuffer.getInt(CHECKSUM) == (int) crc.getValue();
+    }
+
+    private void read(MappedByteBuffer buffer, int index) {
+        buffer.position(index * RECORD_SIZE);
+        buffer.get(record);
+    }
+
+    private void write(MappedByteBuffer buffer, int index) {
+        buffer.position(index * RECORD_SIZE);
+        buffer.put(record);
+    }
+
+    private static void writeHeader(MappedByteBuffer buffer, int lastId) {
+        buffer.putInt(ID, MAGIC);
+        buffer.putInt(PARKING_NUMBER, VERSION);
+        buffer.putInt(IN_TIME, lastId);
+    }
+
+    // Rewrites the journal if less than half of it is still live
+    public synchronized void compactIfWorthIt() throws IOException {
+        if (nextRecord > 2 * liveRecords()) {
+            compactLocked();
+        }
+    }
+
+    public synchronized void compact() throws IOException {
+        compactLocked();
+    }
+
+    private int liveRecords() {
+        return 1 + openTickets.size() + visits.size();
+    }
+
+    private void compactLocked() throws IOException {
+        long start = System.nanoTime();
+        int closedTickets = moveClosedTicketsToHistory();
+        int live = liveRecords();
+        int newCapacity = Math.max(initialRecords, 2 * live);
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(compacted);
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = target.map(FileChannel.MapMode.READ_WRITE, 0, (long) newCapacity * RECORD_SIZE);
+            writeHeader(buffer, lastId);
+            int index = 1;
+            // Entries first: replaying them counts visits, which the VISITS records then overwrite
+            for (Ticket open : openTickets.getTickets()) {
+                ParkingSpot parkingSpot = open.getParkingSpot();
+                encode(ENTRY, open.getId(), parkingSpot.getId(), parkingSpot.getParkingType(), open.getInTime().getTime(),
+                        0, 0, open.getVehicleRegNumber().getBytes(StandardCharsets.UTF_8));
+                write(buffer, index++);
+            }
+            for (Map.Entry<String, Integer> entry : visits.entrySet()) {
+                encode(VISITS, 0, entry.getValue(), null, 0, 0, 0, entry.getKey().getBytes(StandardCharsets.UTF_8));
+                write(buffer, index++);
+            }
+            buffer.force();
+            nextRecord = index;
+        }
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        capacity = newCapacity;
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        logger.info("Compacted ticket journal: " + closedTickets + " closed tickets moved to history, " + live
+                + " live records kept, in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    // Appends every EXIT and CLOSED record, each a complete closed ticket, to the history file.
+    // A crash before the journal is replaced can leave duplicates there; ticket IDs tell them apart.
+    private int moveClosedTicketsToHistory() throws IOException {
+        ByteBuffer closed = ByteBuffer.allocate(Math.max(RECORD_SIZE, Math.min(nextRecord, 4096) * RECORD_SIZE));
+        int count = 0;
+        try (FileChannel history = FileChannel.open(historyPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            for (int index = 1; index < nextRecord; index++) {
+                read(mapped, index);
+                if (record[TYPE] != EXIT && record[TYPE] != CLOSED) {
+                    continue;
+                }
+                if (!closed.hasRemaining()) {
+                    closed.flip();
+                    while (closed.hasRemaining()) {
+                        history.write(closed);
+                    }
+                    closed.clear();
+                }
+                closed.put(record);
+                count++;
+            }
+            closed.flip();
+            while (closed.hasRemaining()) {
+                history.write(closed);
+            }
+            history.force(false);
+        }
+        return count;
+    }
+
+    // Compacts every intervalMillis when less than half of the journal is live
+    public synchronized void startPeriodicCompaction(long intervalMillis) {
+        if (compactor != null || intervalMillis <= 0) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                compactIfWorthIt();
+            } catch (Exception ex) {
+                logger.error("Error compacting ticket journal", ex);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Forces appended records to the disk
+    public synchronized void flush() {
+        mapped.force();
+    }
+
+    public synchronized void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdown();
+            compactor = null;
+        }
+        mapped.force();
+        channel.close();
+    }
+
+    public synchronized int getRecordCount() {
+        return nextRecord - 1;
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    public Path getHistoryPath() {
+        return historyPath;
+    }
+}
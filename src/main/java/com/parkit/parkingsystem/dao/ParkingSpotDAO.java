@@ -3,6 +3,8 @@ package com.parkit.parkingsystem.dao;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,34 +12,115 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotStore {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
+    private static final LatencyHistogram GET_NEXT_AVAILABLE_SLOT = Metrics.histogram("ParkingSpotDAO.getNextAvailableSlot");
+    private static final LatencyHistogram CLAIM_NEXT_AVAILABLE_SLOT = Metrics.histogram("ParkingSpotDAO.claimNextAvailableSlot");
+    private static final LatencyHistogram UPDATE_PARKING = Metrics.histogram("ParkingSpotDAO.updateParking");
+    private static final LatencyHistogram LOAD_FREE_SPOT_INDEX = Metrics.histogram("ParkingSpotDAO.loadFreeSpotIndex");
+
+    // A spot taken in the database but still free in the index means another process
+    // claimed it; the index is corrected and the next free spot is tried
+    static final int MAX_CLAIM_ATTEMPTS = 5;
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    public static final String RECONCILE_INTERVAL_PROPERTY = "parkit.occupancy.reconcileIntervalMillis";
+    public static final long DEFAULT_RECONCILE_INTERVAL_MILLIS = 60000;
+
+    // In-memory mirror of the AVAILABLE column, MySQL stays the durable record
+    private volatile Map<ParkingType, FreeSpotIndex> freeSpotIndexes;
+    // Rows of the parking table per type, set with the indexes
+    private volatile Map<ParkingType, Integer> spotCounts;
+    // LEVEL column by parking number, set with the indexes
+    private volatile int[] levels = new int[0];
+
+    // Set when the last reconciliation found the counts off; they are reloaded if the next one does too
+    private boolean occupancyDrift;
+    private ScheduledExecutorService reconciler;
+
+    @Override
     public int getNextAvailableSlot(ParkingType parkingType){
-        Connection con = null;
+        long start = System.nanoTime();
         int result=-1;
         try {
-            con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
-            ps.setString(1, parkingType.toString());
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                result = rs.getInt(1);;
-            }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
+            result = getFreeSpotIndex(parkingType).lowestFree();
         }catch (Exception ex){
             logger.error("Error fetching next available slot",ex);
+        }
+        GET_NEXT_AVAILABLE_SLOT.recordSince(start, result >= 0);
+        return result;
+    }
+
+    // Takes the spot both in memory and in the database
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType){
+        long start = System.nanoTime();
+        int number = claim(parkingType);
+        CLAIM_NEXT_AVAILABLE_SLOT.recordSince(start, number >= 0);
+        return number;
+    }
+
+    private int claim(ParkingType parkingType){
+        try {
+            FreeSpotIndex index = getFreeSpotIndex(parkingType);
+            for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+                int number = index.claimLowestFree();
+                if (number == 0) {
+                    return 0;
+                }
+                boolean claimed;
+                try {
+                    claimed = claimInDataBase(number);
+                } catch (Exception ex) {
+                    index.markFree(number);
+                    throw ex;
+                }
+                if (claimed) {
+                    return number;
+                }
+                logger.warn("Parking spot " + number + " was already taken in DB, trying the next one");
+            }
+            logger.error("Unable to claim a parking spot after " + MAX_CLAIM_ATTEMPTS + " attempts");
+        }catch (Exception ex){
+            logger.error("Error claiming next available slot",ex);
+        }
+        return -1;
+    }
+
+    private boolean claimInDataBase(int number) throws Exception {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+            ps.setInt(1, number);
+            int updateRowCount = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            return updateRowCount == 1;
         }finally {
             dataBaseConfig.closeConnection(con);
         }
-        return result;
     }
 
+    @Override
     public boolean updateParking(ParkingSpot parkingSpot){
+        long start = System.nanoTime();
+        boolean updated = update(parkingSpot);
+        UPDATE_PARKING.recordSince(start, updated);
+        return updated;
+    }
+
+    private boolean update(ParkingSpot parkingSpot){
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
@@ -46,6 +129,9 @@ public class ParkingSpotDAO {
             ps.setInt(2, parkingSpot.getId());
             int updateRowCount = ps.executeUpdate();
             dataBaseConfig.closePreparedStatement(ps);
+            if (updateRowCount == 1) {
+                updateFreeSpotIndex(parkingSpot);
+            }
             return (updateRowCount == 1);
         }catch (Exception ex){
             logger.error("Error updating parking info",ex);
@@ -55,4 +141,210 @@ public class ParkingSpotDAO {
         }
     }
 
+    // Rebuilds the free spot indexes from the parking table
+    public void loadFreeSpotIndex() throws Exception {
+        long start = System.nanoTime();
+        boolean loaded = false;
+        try {
+            load();
+            loaded = true;
+        } finally {
+            LOAD_FREE_SPOT_INDEX.recordSince(start, loaded);
+        }
+    }
+
+    private void load() throws Exception {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            ResultSet rs = ps.executeQuery();
+            Map<ParkingType, List<Integer>> freeNumbers = new EnumMap<>(ParkingType.class);
+            Map<ParkingType, Integer> counts = new EnumMap<>(ParkingType.class);
+            Map<Integer, Integer> levelsByNumber = new HashMap<>();
+            int maxNumber = 0;
+            for (ParkingType parkingType : ParkingType.values()) {
+                freeNumbers.put(parkingType, new ArrayList<>());
+                counts.put(parkingType, 0);
+            }
+            while(rs.next()){
+                int number = rs.getInt(1);
+                String type = rs.getString(3);
+                maxNumber = Math.max(maxNumber, number);
+                int level = rs.getInt(4);
+                if (level != 0) {
+                    levelsByNumber.put(number, level);
+                }
+                try {
+                    ParkingType parkingType = ParkingType.valueOf(type);
+                    counts.merge(parkingType, 1, Integer::sum);
+                    if (rs.getBoolean(2)) {
+                        freeNumbers.get(parkingType).add(number);
+                    }
+                } catch (IllegalArgumentException ie) {
+                    logger.error("Ignoring parking spot " + number + " with unknown type " + type, ie);
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            Map<ParkingType, FreeSpotIndex> indexes = new EnumMap<>(ParkingType.class);
+            for (Map.Entry<ParkingType, List<Integer>> entry : freeNumbers.entrySet()) {
+                FreeSpotIndex index = new FreeSpotIndex(maxNumber);
+                for (int number : entry.getValue()) {
+                    index.markFree(number);
+                }
+                indexes.put(entry.getKey(), index);
+            }
+            int[] spotLevels = new int[maxNumber + 1];
+            for (Map.Entry<Integer, Integer> level : levelsByNumber.entrySet()) {
+                spotLevels[level.getKey()] = level.getValue();
+            }
+            levels = spotLevels;
+            spotCounts = counts;
+            freeSpotIndexes = indexes;
+        }catch (Exception ex){
+            logger.error("Error loading free parking spots",ex);
+            throw ex;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // -1 when the spots cannot be loaded
+    @Override
+    public int getFreeCount(ParkingType parkingType) {
+        try {
+            return getFreeSpotIndex(parkingType).freeCount();
+        } catch (Exception ex) {
+            logger.error("Error counting free spots", ex);
+            return -1;
+        }
+    }
+
+    @Override
+    public int getSpotCount(ParkingType parkingType) {
+        try {
+            getFreeSpotIndex(parkingType);
+            return spotCounts.getOrDefault(parkingType, 0);
+        } catch (Exception ex) {
+            logger.error("Error counting spots", ex);
+            return -1;
+        }
+    }
+
+    @Override
+    public int getLevel(int parkingNumber) {
+        int[] spotLevels = levels;
+        return parkingNumber > 0 && parkingNumber < spotLevels.length ? spotLevels[parkingNumber] : 0;
+    }
+
+    // Compares the in-memory counts with the parking table and returns whether they match. Counts can be off
+    // for a moment while an entry or exit is between its database write and its index update, so the indexes
+    // are only reloaded when two reconciliations in a row find a difference, e.g. after a change made by
+    // another process or by hand.
+    public synchronized boolean reconcileOccupancy() throws Exception {
+        Map<ParkingType, int[]> counted = new EnumMap<>(ParkingType.class);
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_OCCUPANCY);
+            //TYPE, SPOTS, FREE
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                try {
+                    counted.put(ParkingType.valueOf(rs.getString(1)), new int[] {rs.getInt(2), rs.getInt(3)});
+                } catch (IllegalArgumentException ie) {
+                    // Already reported by loadFreeSpotIndex
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            logger.error("Error reconciling occupancy",ex);
+            throw ex;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        StringBuilder differences = new StringBuilder();
+        for (ParkingType parkingType : ParkingType.values()) {
+            int[] spotsAndFree = counted.getOrDefault(parkingType, new int[2]);
+            int spots = getSpotCount(parkingType);
+            int free = getFreeCount(parkingType);
+            if (spots != spotsAndFree[0] || free != spotsAndFree[1]) {
+                differences.append(' ').append(parkingType).append(": ").append(free).append('/').append(spots)
+                        .append(" free in memory, ").append(spotsAndFree[1]).append('/').append(spotsAndFree[0]).append(" in DB");
+            }
+        }
+        if (differences.length() == 0) {
+            occupancyDrift = false;
+            return true;
+        }
+        if (occupancyDrift) {
+            logger.warn("Occupancy out of step with the parking table, reloading:" + differences);
+            loadFreeSpotIndex();
+            occupancyDrift = false;
+        } else {
+            occupancyDrift = true;
+        }
+        return false;
+    }
+
+    public synchronized void startOccupancyReconciliation(long intervalMillis) {
+        if (reconciler != null || intervalMillis <= 0) {
+            return;
+        }
+        reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occupancy-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcileOccupancy();
+            } catch (Exception ex) {
+                // Logged by reconcileOccupancy, tried again next time
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopOccupancyReconciliation() {
+        if (reconciler != null) {
+            reconciler.shutdown();
+            reconciler = null;
+        }
+    }
+
+    FreeSpotIndex getFreeSpotIndex(ParkingType parkingType) throws Exception {
+        Map<ParkingType, FreeSpotIndex> indexes = freeSpotIndexes;
+        if (indexes == null) {
+            synchronized (this) {
+                if (freeSpotIndexes == null) {
+                    loadFreeSpotIndex();
+                }
+                indexes = freeSpotIndexes;
+            }
+        }
+        return indexes.get(parkingType);
+    }
+
+    void updateFreeSpotIndex(ParkingSpot parkingSpot) {
+        Map<ParkingType, FreeSpotIndex> indexes = freeSpotIndexes;
+        if (indexes == null || parkingSpot.getParkingType() == null) {
+            return;
+        }
+        FreeSpotIndex index = indexes.get(parkingSpot.getParkingType());
+        if (parkingSpot.isAvailable()) {
+            if (!index.markFree(parkingSpot.getId())) {
+                // Spot added to the parking table after the index was built
+                try {
+                    loadFreeSpotIndex();
+                } catch (Exception ex) {
+                    freeSpotIndexes = null;
+                }
+            }
+        } else {
+            index.markTaken(parkingSpot.getId());
+        }
+    }
+
 }
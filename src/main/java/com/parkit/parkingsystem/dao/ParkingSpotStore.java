@@ -0,0 +1,27 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+// Where parking spots and their availability are kept; see Storage for the available backends
+public interface ParkingSpotStore {
+
+    // Lowest free parking number of the type without taking it, 0 when full, -1 on error
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    // Atomically takes the lowest free spot of the type; returns its number, 0 when full or -1 on error
+    int claimNextAvailableSlot(ParkingType parkingType);
+
+    boolean updateParking(ParkingSpot parkingSpot);
+
+    // Free spots of the type, kept up to date in memory so displays can poll it as often as they like
+    int getFreeCount(ParkingType parkingType);
+
+    // Spots of the type, free or not
+    int getSpotCount(ParkingType parkingType);
+
+    // Level of the facility the spot is on; 0 for the ground level and for stores without levels
+    default int getLevel(int parkingNumber) {
+        return 0;
+    }
+}
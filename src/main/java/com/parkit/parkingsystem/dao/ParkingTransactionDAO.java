@@ -0,0 +1,241 @@
+package com.parkit.parkingsystem.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.function.BiConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+// Entry and exit as single units of work: one connection, one transaction, one commit.
+// Reads are answered from the in-memory indexes and caches of the two DAOs when they can be,
+// otherwise by one combined query; a failure rolls back the spot, ticket, session and visit together.
+public class ParkingTransactionDAO {
+
+    private static final Logger logger = LogManager.getLogger("ParkingTransactionDAO");
+
+    private static final LatencyHistogram ENTER = Metrics.histogram("ParkingTransactionDAO.enter");
+    private static final LatencyHistogram EXIT = Metrics.histogram("ParkingTransactionDAO.exit");
+
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+
+    public ParkingTransactionDAO(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+    }
+
+    // Queued tickets are not visible to these transactions, so write-behind mode has to go through TicketDAO
+    public boolean isUsable() {
+        return ticketDAO.getTicketWriteBehind() == null;
+    }
+
+    // Claims the lowest free spot and opens a ticket on it; returns null when the lot is full
+    public EntryResult enter(String vehicleRegNumber, ParkingType parkingType, Date inTime) throws Exception {
+        long start = System.nanoTime();
+        FreeSpotIndex index = parkingSpotDAO.getFreeSpotIndex(parkingType);
+        VisitCountCache visitCountCache = ticketDAO.getVisitCountCache();
+        Integer cachedVisits = visitCountCache.get(vehicleRegNumber);
+        long generation = visitCountCache.loadGeneration(vehicleRegNumber);
+        DataBaseConfig dataBaseConfig = parkingSpotDAO.dataBaseConfig;
+        Connection con = null;
+        int number = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            for (int attempt = 0; number == 0 && attempt < ParkingSpotDAO.MAX_CLAIM_ATTEMPTS; attempt++) {
+                number = index.claimLowestFree();
+                if (number == 0) {
+                    return null;
+                }
+                PreparedStatement claim = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+                claim.setInt(1, number);
+                int claimed = claim.executeUpdate();
+                dataBaseConfig.closePreparedStatement(claim);
+                if (claimed != 1) {
+                    logger.warn("Parking spot " + number + " was already taken in DB, trying the next one");
+                    number = 0;
+                }
+            }
+            if (number == 0) {
+                throw new IllegalStateException("Unable to claim a parking spot after " + ParkingSpotDAO.MAX_CLAIM_ATTEMPTS + " attempts");
+            }
+
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(new ParkingSpot(number, parkingType, false));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(0);
+            ticket.setInTime(inTime);
+            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
+            ps.setInt(1, number);
+            ps.setString(2, vehicleRegNumber);
+            ps.setDouble(3, 0);
+            ps.setTimestamp(4, new Timestamp(inTime.getTime()));
+            ps.setTimestamp(5, null);
+            ps.executeUpdate();
+            ResultSet keys = ps.getGeneratedKeys();
+            if (keys.next()) {
+                ticket.setId(keys.getInt(1));
+            }
+            dataBaseConfig.closeResultSet(keys);
+            dataBaseConfig.closePreparedStatement(ps);
+
+            PreparedStatement session = con.prepareStatement(DBConstants.SAVE_SESSION);
+            //VEHICLE_REG_NUMBER, TICKET_ID, PARKING_NUMBER, TYPE, IN_TIME
+            session.setString(1, vehicleRegNumber);
+            session.setInt(2, ticket.getId());
+            session.setInt(3, number);
+            session.setString(4, parkingType.toString());
+            session.setTimestamp(5, new Timestamp(inTime.getTime()));
+            session.executeUpdate();
+            dataBaseConfig.closePreparedStatement(session);
+
+            PreparedStatement increment = con.prepareStatement(DBConstants.INCREMENT_VISITS);
+            increment.setString(1, vehicleRegNumber);
+            increment.executeUpdate();
+            dataBaseConfig.closePreparedStatement(increment);
+
+            int visits;
+            if (cachedVisits != null) {
+                visits = cachedVisits + 1;
+            } else {
+                PreparedStatement read = con.prepareStatement(DBConstants.GET_VISITS);
+                read.setString(1, vehicleRegNumber);
+                ResultSet rs = read.executeQuery();
+                visits = rs.next() ? rs.getInt(1) : 1;
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(read);
+            }
+            con.commit();
+
+            if (cachedVisits != null) {
+                visitCountCache.increment(vehicleRegNumber);
+            } else {
+                visitCountCache.putLoaded(vehicleRegNumber, visits, generation);
+            }
+            ticketDAO.getActiveSessions().put(ticket);
+            return new EntryResult(ticket, visits > 1);
+        } catch (Exception ex) {
+            rollback(con);
+            if (number > 0) {
+                index.markFree(number);
+            }
+            logger.error("Error processing entry of vehicle " + vehicleRegNumber, ex);
+            ENTER.error();
+            throw ex;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            ENTER.recordSince(start);
+        }
+    }
+
+    // Prices and closes the vehicle's open ticket and frees its spot; returns null when the vehicle is not parked
+    public ExitResult exit(String vehicleRegNumber, Date outTime, BiConsumer<Ticket, Boolean> fareCalculator) throws Exception {
+        long start = System.nanoTime();
+        ActiveSessionMirror activeSessions = ticketDAO.getActiveSessions();
+        VisitCountCache visitCountCache = ticketDAO.getVisitCountCache();
+        Ticket ticket = activeSessions.get(vehicleRegNumber);
+        Integer visits = (ticket == null) ? null : visitCountCache.get(vehicleRegNumber);
+        long generation = visitCountCache.loadGeneration(vehicleRegNumber);
+        boolean loadedVisits = false;
+        DataBaseConfig dataBaseConfig = parkingSpotDAO.dataBaseConfig;
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            if (ticket == null || visits == null) {
+                PreparedStatement read = con.prepareStatement(DBConstants.GET_EXIT_SESSION);
+                //TICKET_ID, PARKING_NUMBER, TYPE, IN_TIME, VISITS
+                read.setString(1, vehicleRegNumber);
+                ResultSet rs = read.executeQuery();
+                ticket = null;
+                if (rs.next()) {
+                    ticket = new Ticket();
+                    ticket.setId(rs.getInt(1));
+                    ticket.setParkingSpot(new ParkingSpot(rs.getInt(2), ParkingType.valueOf(rs.getString(3)), false));
+                    ticket.setVehicleRegNumber(vehicleRegNumber);
+                    ticket.setInTime(rs.getTimestamp(4));
+                    visits = rs.getInt(5);
+                    loadedVisits = true;
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(read);
+                if (ticket == null) {
+                    return null;
+                }
+            }
+            ticket.setOutTime(outTime);
+            boolean discount = visits > 1;
+            fareCalculator.accept(ticket, discount);
+
+            PreparedStatement session = con.prepareStatement(DBConstants.DELETE_SESSION);
+            session.setString(1, vehicleRegNumber);
+            session.setInt(2, ticket.getId());
+            int deleted = session.executeUpdate();
+            dataBaseConfig.closePreparedStatement(session);
+            if (deleted != 1) {
+                // Exited meanwhile through another gate or process
+                con.rollback();
+                activeSessions.remove(vehicleRegNumber, ticket.getId());
+                return null;
+            }
+
+            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
+            ps.setDouble(1, ticket.getPrice());
+            ps.setTimestamp(2, new Timestamp(outTime.getTime()));
+            ps.setInt(3, ticket.getId());
+            ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            TicketRollupDAO.rollUp(dataBaseConfig, con, ticket);
+
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            PreparedStatement parking = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+            parking.setBoolean(1, true);
+            parking.setInt(2, parkingSpot.getId());
+            parking.executeUpdate();
+            dataBaseConfig.closePreparedStatement(parking);
+            con.commit();
+
+            activeSessions.remove(vehicleRegNumber, ticket.getId());
+            if (loadedVisits) {
+                visitCountCache.putLoaded(vehicleRegNumber, visits, generation);
+            }
+            parkingSpot.setAvailable(true);
+            parkingSpotDAO.updateFreeSpotIndex(parkingSpot);
+            return new ExitResult(ticket, discount, true);
+        } catch (Exception ex) {
+            rollback(con);
+            logger.error("Error processing exit of vehicle " + vehicleRegNumber, ex);
+            EXIT.error();
+            throw ex;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            EXIT.recordSince(start);
+        }
+    }
+
+    private static void rollback(Connection con) {
+        if (con != null) {
+            try {
+                con.rollback();
+            } catch (Exception e) {
+                logger.error("Error rolling back", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem.dao;
+
+// Spots booked over time for one ParkingType, as a segment tree over fixed time slots from an origin.
+// Booking adds one to every slot a reservation touches, and the capacity question "how many spots are
+// booked at the busiest moment of this window" is a range maximum; both take O(log slots).
+// Each node keeps the maximum of its range and what was added to the whole range, so nothing is pushed down.
+// Not thread safe; ReservationBook guards each timeline.
+public class ReservationTimeline {
+
+    private final long originMillis;
+    private final long slotMillis;
+    private final int slots;
+    private final int leaves;
+    // Per node: most spots booked in any slot of its range, and bookings covering the whole range
+    private final int[] top;
+    private final int[] added;
+
+    public ReservationTimeline(long originMillis, long slotMillis, int slots) {
+        if (slotMillis <= 0 || slots <= 0) {
+            throw new IllegalArgumentException("A timeline needs slots of a positive length");
+        }
+        this.originMillis = originMillis;
+        this.slotMillis = slotMillis;
+        this.slots = slots;
+        int leaves = 1;
+        while (leaves < slots) {
+            leaves <<= 1;
+        }
+        this.leaves = leaves;
+        top = new int[2 * leaves];
+        added = new int[2 * leaves];
+    }
+
+    public long getOriginMillis() {
+        return originMillis;
+    }
+
+    // First instant past the last slot
+    public long getEndMillis() {
+        return originMillis + slots * slotMillis;
+    }
+
+    // Adds delta to every slot that [startMillis, endMillis) touches, clipped to the timeline
+    public void add(long startMillis, long endMillis, int delta) {
+        int from = firstSlot(startMillis);
+        int to = lastSlot(endMillis);
+        if (from <= to) {
+            add(1, 0, leaves - 1, from, to, delta);
+        }
+    }
+
+    // Most spots booked at once at any time of [startMillis, endMillis), clipped to the timeline
+    public int max(long startMillis, long endMillis) {
+        int from = firstSlot(startMillis);
+        int to = lastSlot(endMillis);
+        return from <= to ? max(1, 0, leaves - 1, from, to) : 0;
+    }
+
+    private int firstSlot(long millis) {
+        return (int) Math.max(0, Math.floorDiv(millis - originMillis, slotMillis));
+    }
+
+    // Slot of the last millisecond before the end
+    private int lastSlot(long endMillis) {
+        return (int) Math.min(slots - 1, Math.floorDiv(endMillis - 1 - originMillis, slotMillis));
+    }
+
+    private void add(int node, int low, int high, int from, int to, int delta) {
+        if (from <= low && high <= to) {
+            top[node] += delta;
+            added[node] += delta;
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        if (from <= middle) {
+            add(2 * node, low, middle, from, to, delta);
+        }
+        if (to > middle) {
+            add(2 * node + 1, middle + 1, high, from, to, delta);
+        }
+        top[node] = added[node] + Math.max(top[2 * node], top[2 * node + 1]);
+    }
+
+    private int max(int node, int low, int high, int from, int to) {
+        if (from <= low && high <= to) {
+            return top[node];
+        }
+        int middle = (low + high) >>> 1;
+        int max = Integer.MIN_VALUE;
+        if (from <= middle) {
+            max = max(2 * node, low, middle, from, to);
+        }
+        if (to > middle) {
+            max = Math.max(max, max(2 * node + 1, middle + 1, high, from, to));
+        }
+        return added[node] + max;
+    }
+}
@@ -0,0 +1,81 @@
+package com.parkit.parkingsystem.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+// Ticket and revenue changes summed per hour and day before they are written, so a job going through
+// thousands of tickets updates each rollup row once. Hours and days are those of the JVM's time zone.
+public class RollupBuffer {
+
+    private final Map<ParkingType, Map<LocalDateTime, long[]>> hours = new EnumMap<>(ParkingType.class);
+    private final Map<ParkingType, Map<LocalDate, long[]>> days = new EnumMap<>(ParkingType.class);
+    private boolean empty = true;
+
+    static LocalDateTime hourOf(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).truncatedTo(ChronoUnit.HOURS);
+    }
+
+    public void add(long outTimeMillis, ParkingType parkingType, int tickets, long revenueCents) {
+        LocalDateTime hour = hourOf(outTimeMillis);
+        long[] hourTotals = hours.computeIfAbsent(parkingType, type -> new HashMap<>()).computeIfAbsent(hour, h -> new long[2]);
+        hourTotals[0] += tickets;
+        hourTotals[1] += revenueCents;
+        long[] dayTotals = days.computeIfAbsent(parkingType, type -> new HashMap<>()).computeIfAbsent(hour.toLocalDate(), d -> new long[2]);
+        dayTotals[0] += tickets;
+        dayTotals[1] += revenueCents;
+        empty = false;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    // Adds the buffered totals to the rollup tables on the caller's transaction, then empties the buffer
+    public void writeTo(DataBaseConfig dataBaseConfig, Connection con) throws Exception {
+        if (empty) {
+            return;
+        }
+        PreparedStatement hour = con.prepareStatement(DBConstants.ROLL_UP_HOUR);
+        for (Map.Entry<ParkingType, Map<LocalDateTime, long[]>> byType : hours.entrySet()) {
+            for (Map.Entry<LocalDateTime, long[]> bucket : byType.getValue().entrySet()) {
+                //HOUR_START, TYPE, TICKETS, REVENUE_CENTS
+                hour.setTimestamp(1, Timestamp.valueOf(bucket.getKey()));
+                hour.setString(2, byType.getKey().toString());
+                hour.setInt(3, (int) bucket.getValue()[0]);
+                hour.setLong(4, bucket.getValue()[1]);
+                hour.addBatch();
+            }
+        }
+        hour.executeBatch();
+        dataBaseConfig.closePreparedStatement(hour);
+        PreparedStatement day = con.prepareStatement(DBConstants.ROLL_UP_DAY);
+        for (Map.Entry<ParkingType, Map<LocalDate, long[]>> byType : days.entrySet()) {
+            for (Map.Entry<LocalDate, long[]> bucket : byType.getValue().entrySet()) {
+                //DAY_START, TYPE, TICKETS, REVENUE_CENTS
+                day.setDate(1, java.sql.Date.valueOf(bucket.getKey()));
+                day.setString(2, byType.getKey().toString());
+                day.setInt(3, (int) bucket.getValue()[0]);
+                day.setLong(4, bucket.getValue()[1]);
+                day.addBatch();
+            }
+        }
+        day.executeBatch();
+        dataBaseConfig.closePreparedStatement(day);
+        hours.clear();
+        days.clear();
+        empty = true;
+    }
+}
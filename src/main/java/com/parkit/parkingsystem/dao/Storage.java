@@ -0,0 +1,131 @@
+package com.parkit.parkingsystem.dao;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.FacilityProperties;
+import com.parkit.parkingsystem.model.Ticket;
+
+// The spot and ticket stores the application runs on, chosen with the parkit.storage system property:
+// "jdbc" (default) for the MySQL database of DataBaseConfig, "memory" for stores that live only in this process,
+// "journal" for tickets kept in the local file of JournalTicketStore.
+public class Storage {
+
+    public static final String BACKEND_PROPERTY = "parkit.storage";
+    public static final String MEMORY_CAR_SPOTS_PROPERTY = "parkit.storage.memory.carSpots";
+    public static final String MEMORY_BIKE_SPOTS_PROPERTY = "parkit.storage.memory.bikeSpots";
+    public static final String JOURNAL_PATH_PROPERTY = "parkit.storage.journal.path";
+    public static final String JOURNAL_RECORDS_PROPERTY = "parkit.storage.journal.records";
+    public static final String JOURNAL_COMPACT_INTERVAL_PROPERTY = "parkit.storage.journal.compactIntervalMillis";
+
+    public static final String JDBC = "jdbc";
+    public static final String MEMORY = "memory";
+    public static final String JOURNAL = "journal";
+
+    // Same lot as resources/Data.sql
+    private static final int DEFAULT_CAR_SPOTS = 3;
+    private static final int DEFAULT_BIKE_SPOTS = 2;
+    private static final String DEFAULT_JOURNAL_PATH = "parkit.journal";
+    private static final int DEFAULT_JOURNAL_RECORDS = 65536;
+    private static final long DEFAULT_JOURNAL_COMPACT_INTERVAL = 60000;
+
+    private final ParkingSpotStore parkingSpotStore;
+    private final TicketStore ticketStore;
+    private final ParkingTransactionDAO parkingTransactionDAO;
+
+    private Storage(ParkingSpotStore parkingSpotStore, TicketStore ticketStore, ParkingTransactionDAO parkingTransactionDAO) {
+        this.parkingSpotStore = parkingSpotStore;
+        this.ticketStore = ticketStore;
+        this.parkingTransactionDAO = parkingTransactionDAO;
+    }
+
+    public static Storage fromSystemProperties() throws Exception {
+        return forFacility(null);
+    }
+
+    // Stores of one facility from its parkit.facility.<id>.* properties, see FacilityProperties. Each facility
+    // gets stores, indexes and caches of its own; facilities on jdbc need a database each, and on journal a
+    // file each, which defaults to parkit-<id>.journal
+    public static Storage forFacility(String facilityId) throws Exception {
+        String backend = FacilityProperties.get(facilityId, BACKEND_PROPERTY, JDBC);
+        int carSpots = FacilityProperties.getInt(facilityId, MEMORY_CAR_SPOTS_PROPERTY, DEFAULT_CAR_SPOTS);
+        int bikeSpots = FacilityProperties.getInt(facilityId, MEMORY_BIKE_SPOTS_PROPERTY, DEFAULT_BIKE_SPOTS);
+        if (MEMORY.equalsIgnoreCase(backend)) {
+            return inMemory(carSpots, bikeSpots);
+        }
+        if (JOURNAL.equalsIgnoreCase(backend)) {
+            String path = facilityId == null
+                    ? System.getProperty(JOURNAL_PATH_PROPERTY, DEFAULT_JOURNAL_PATH)
+                    : System.getProperty(FacilityProperties.name(facilityId, JOURNAL_PATH_PROPERTY), "parkit-" + facilityId + ".journal");
+            JournalTicketStore ticketStore = new JournalTicketStore(Paths.get(path),
+                    FacilityProperties.getInt(facilityId, JOURNAL_RECORDS_PROPERTY, DEFAULT_JOURNAL_RECORDS));
+            ticketStore.startPeriodicCompaction(Long.getLong(JOURNAL_COMPACT_INTERVAL_PROPERTY, DEFAULT_JOURNAL_COMPACT_INTERVAL));
+            return journal(ticketStore, carSpots, bikeSpots);
+        }
+        if (JDBC.equalsIgnoreCase(backend)) {
+            return jdbc(new DataBaseConfig(facilityId));
+        }
+        throw new IllegalArgumentException("Unknown storage backend " + backend + ", expected " + JDBC + ", "
+                + MEMORY + " or " + JOURNAL);
+    }
+
+    // Loads the free spot index and turns on ticket write-behind when TicketWriteBehind.ENABLED_PROPERTY is set
+    public static Storage jdbc(DataBaseConfig dataBaseConfig) throws Exception {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadFreeSpotIndex();
+        parkingSpotDAO.startOccupancyReconciliation(Long.getLong(ParkingSpotDAO.RECONCILE_INTERVAL_PROPERTY,
+                ParkingSpotDAO.DEFAULT_RECONCILE_INTERVAL_MILLIS));
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        if (Boolean.getBoolean(TicketWriteBehind.ENABLED_PROPERTY)) {
+            ticketDAO.enableWriteBehind(TicketWriteBehind.fromSystemProperties(dataBaseConfig));
+        }
+        return new Storage(parkingSpotDAO, ticketDAO, new ParkingTransactionDAO(parkingSpotDAO, ticketDAO));
+    }
+
+    public static Storage inMemory(int carSpots, int bikeSpots) {
+        return new Storage(new InMemoryParkingSpotStore(carSpots, bikeSpots), new InMemoryTicketStore(), null);
+    }
+
+    // Spots live in memory; the ones under a ticket still open in the journal are taken again
+    public static Storage journal(Path path, int carSpots, int bikeSpots) throws IOException {
+        return journal(new JournalTicketStore(path, DEFAULT_JOURNAL_RECORDS), carSpots, bikeSpots);
+    }
+
+    private static Storage journal(JournalTicketStore ticketStore, int carSpots, int bikeSpots) {
+        InMemoryParkingSpotStore parkingSpotStore = new InMemoryParkingSpotStore(carSpots, bikeSpots);
+        for (Ticket ticket : ticketStore.getOpenTickets()) {
+            parkingSpotStore.updateParking(ticket.getParkingSpot());
+        }
+        return new Storage(parkingSpotStore, ticketStore, null);
+    }
+
+    public ParkingSpotStore getParkingSpotStore() {
+        return parkingSpotStore;
+    }
+
+    public TicketStore getTicketStore() {
+        return ticketStore;
+    }
+
+    // Null for backends where every store call is already atomic
+    public ParkingTransactionDAO getParkingTransactionDAO() {
+        return parkingTransactionDAO;
+    }
+
+    // Writes out anything still buffered
+    public void close() throws InterruptedException, IOException {
+        if (ticketStore instanceof TicketDAO) {
+            ((TicketDAO) ticketStore).disableWriteBehind();
+        }
+        if (parkingSpotStore instanceof ParkingSpotDAO) {
+            ((ParkingSpotDAO) parkingSpotStore).stopOccupancyReconciliation();
+        }
+        if (ticketStore instanceof JournalTicketStore) {
+            ((JournalTicketStore) ticketStore).close();
+        }
+    }
+}
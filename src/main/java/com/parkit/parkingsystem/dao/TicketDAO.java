@@ -3,7 +3,9 @@ package com.parkit.parkingsystem.dao;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,73 +13,254 @@ import org.apache.logging.log4j.Logger;
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 
-public class TicketDAO {
+public class TicketDAO implements TicketStore {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    private static final LatencyHistogram SAVE_TICKET = Metrics.histogram("TicketDAO.saveTicket");
+    private static final LatencyHistogram GET_TICKET = Metrics.histogram("TicketDAO.getTicket");
+    private static final LatencyHistogram UPDATE_TICKET = Metrics.histogram("TicketDAO.updateTicket");
+    private static final LatencyHistogram GET_NB_TICKET = Metrics.histogram("TicketDAO.getNbTicket");
+
+    // Longest a read waits for the write-behind flusher to persist the vehicle's newest ticket
+    private static final long PENDING_WRITE_TIMEOUT_MILLIS = 5000;
+
+    public static final String VISIT_CACHE_SIZE_PROPERTY = "parkit.ticket.visitCacheSize";
+    private static final int DEFAULT_VISIT_CACHE_SIZE = 100000;
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    private volatile TicketWriteBehind ticketWriteBehind;
+
+    // Front of the vehicle_visit table, kept in step with every saved ticket
+    private final VisitCountCache visitCountCache = new VisitCountCache(Integer.getInteger(VISIT_CACHE_SIZE_PROPERTY, DEFAULT_VISIT_CACHE_SIZE));
+
+    // Front of the active_session table, so exit finds the open ticket without touching history
+    private final ActiveSessionMirror activeSessions = new ActiveSessionMirror();
+
+    public void enableWriteBehind(int batchSize, long flushIntervalMillis, int queueDepth) {
+        enableWriteBehind(new TicketWriteBehind(dataBaseConfig, batchSize, flushIntervalMillis, queueDepth));
+    }
+
+    public synchronized void enableWriteBehind(TicketWriteBehind writeBehind) {
+        if (ticketWriteBehind != null) {
+            throw new IllegalStateException("Write-behind is already enabled");
+        }
+        writeBehind.setPersistedListener(ticket -> {
+            visitCountCache.increment(ticket.getVehicleRegNumber());
+            activeSessions.put(ticket);
+        });
+        ticketWriteBehind = writeBehind;
+    }
+
+    // Flushes every queued ticket and goes back to one insert per saveTicket call
+    public synchronized void disableWriteBehind() throws InterruptedException {
+        if (ticketWriteBehind != null) {
+            ticketWriteBehind.close();
+            ticketWriteBehind = null;
+        }
+    }
+
+    public TicketWriteBehind getTicketWriteBehind() {
+        return ticketWriteBehind;
+    }
+
+    // In write-behind mode the ticket is only queued; wait on the future when it must be durable. If the future
+    // fails the ticket was not written, and the caller gives its spot back
+    public CompletableFuture<Boolean> saveTicketAsync(Ticket ticket) {
+        TicketWriteBehind writeBehind = ticketWriteBehind;
+        if (writeBehind != null) {
+            try {
+                checkNotParked(ticket);
+                return writeBehind.submit(ticket);
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                CompletableFuture<Boolean> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }
+        CompletableFuture<Boolean> saved = new CompletableFuture<>();
+        if (insertTicket(ticket)) {
+            saved.complete(true);
+        } else {
+            saved.completeExceptionally(new IllegalStateException("Unable to save ticket for vehicle " + ticket.getVehicleRegNumber()));
+        }
+        return saved;
+    }
+
+    @Override
     public boolean saveTicket(Ticket ticket) {
+        long start = System.nanoTime();
+        boolean saved = save(ticket);
+        SAVE_TICKET.recordSince(start, saved);
+        return saved;
+    }
+
+    private boolean save(Ticket ticket) {
+        TicketWriteBehind writeBehind = ticketWriteBehind;
+        if (writeBehind != null) {
+            try {
+                checkNotParked(ticket);
+                // Waits for the flush, which concurrent callers share, so the ticket has its ID and a failed
+                // write reaches the caller, who gives the spot back
+                return writeBehind.submit(ticket).join();
+            } catch (Exception ex) {
+                if (ex instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                logger.error("Error saving ticket through write-behind",ex);
+                return false;
+            }
+        }
+        return insertTicket(ticket);
+    }
+
+    // A queued ticket only fails at flush time, sending its batch back to be written row by row, so a
+    // vehicle already parked is rejected up front; the synchronous path relies on the table's key
+    private void checkNotParked(Ticket ticket) {
+        if (ticket.getOutTime() == null && activeSessions.contains(ticket.getVehicleRegNumber())) {
+            throw new IllegalStateException("Vehicle " + ticket.getVehicleRegNumber() + " is already parked");
+        }
+    }
+
+    private boolean insertTicket(Ticket ticket) {
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
             //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
             ps.setInt(1,ticket.getParkingSpot().getId());
             ps.setString(2, ticket.getVehicleRegNumber());
             ps.setDouble(3, ticket.getPrice());
             ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
             ps.setTimestamp(5, (ticket.getOutTime() == null)?null: (new Timestamp(ticket.getOutTime().getTime())) );
-            return ps.execute();
+            con.setAutoCommit(false);
+            ps.executeUpdate();
+            ResultSet keys = ps.getGeneratedKeys();
+            if (keys.next()) {
+                ticket.setId(keys.getInt(1));
+            }
+            dataBaseConfig.closeResultSet(keys);
+            dataBaseConfig.closePreparedStatement(ps);
+            if (ticket.getOutTime() == null) {
+                insertSession(con, ticket);
+            }
+            PreparedStatement visits = con.prepareStatement(DBConstants.INCREMENT_VISITS);
+            visits.setString(1, ticket.getVehicleRegNumber());
+            visits.executeUpdate();
+            dataBaseConfig.closePreparedStatement(visits);
+            con.commit();
+            visitCountCache.increment(ticket.getVehicleRegNumber());
+            if (ticket.getOutTime() == null) {
+                activeSessions.put(ticket);
+            }
+            return true;
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
+            logger.error("Error saving ticket",ex);
             return false;
         }finally {
             dataBaseConfig.closeConnection(con);
         }
     }
 
+    private void awaitPendingWrite(String vehicleRegNumber) throws Exception {
+        TicketWriteBehind writeBehind = ticketWriteBehind;
+        if (writeBehind != null) {
+            writeBehind.awaitPending(vehicleRegNumber, PENDING_WRITE_TIMEOUT_MILLIS);
+        }
+    }
+
+    private void insertSession(Connection con, Ticket ticket) throws Exception {
+        PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_SESSION);
+        //VEHICLE_REG_NUMBER, TICKET_ID, PARKING_NUMBER, TYPE, IN_TIME
+        ps.setString(1, ticket.getVehicleRegNumber());
+        ps.setInt(2, ticket.getId());
+        ps.setInt(3, ticket.getParkingSpot().getId());
+        ps.setString(4, ticket.getParkingSpot().getParkingType().toString());
+        ps.setTimestamp(5, new Timestamp(ticket.getInTime().getTime()));
+        ps.executeUpdate();
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+
+    @Override
     public Ticket getTicket(String vehicleRegNumber) {
+        long start = System.nanoTime();
         Connection con = null;
         Ticket ticket = null;
         try {
+            awaitPendingWrite(vehicleRegNumber);
+            ticket = activeSessions.get(vehicleRegNumber);
+            if (ticket != null) {
+                return ticket;
+            }
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
-            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_SESSION);
+            //TICKET_ID, PARKING_NUMBER, TYPE, IN_TIME
             ps.setString(1,vehicleRegNumber);
             ResultSet rs = ps.executeQuery();
             if(rs.next()){
                 ticket = new Ticket();
-                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false);
+                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(2), ParkingType.valueOf(rs.getString(3)),false);
                 ticket.setParkingSpot(parkingSpot);
-                ticket.setId(rs.getInt(2));
+                ticket.setId(rs.getInt(1));
                 ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(rs.getDouble(3));
                 ticket.setInTime(rs.getTimestamp(4));
-                ticket.setOutTime(rs.getTimestamp(5));
+                activeSessions.put(ticket);
             }
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
+            logger.error("Error fetching the open ticket",ex);
+            GET_TICKET.error();
         }finally {
             dataBaseConfig.closeConnection(con);
-            return ticket;
+            GET_TICKET.recordSince(start);
         }
+        return ticket;
     }
 
+    // Closing a ticket also ends its session and adds it to the rollups; all happen in one transaction
+    @Override
     public boolean updateTicket(Ticket ticket) {
+        long start = System.nanoTime();
+        boolean updated = update(ticket);
+        UPDATE_TICKET.recordSince(start, updated);
+        return updated;
+    }
+
+    private boolean update(Ticket ticket) {
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
             ps.setDouble(1, ticket.getPrice());
             ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
             ps.setInt(3,ticket.getId());
             ps.execute();
+            dataBaseConfig.closePreparedStatement(ps);
+            PreparedStatement session = con.prepareStatement(DBConstants.DELETE_SESSION);
+            session.setString(1, ticket.getVehicleRegNumber());
+            session.setInt(2, ticket.getId());
+            int deleted = session.executeUpdate();
+            dataBaseConfig.closePreparedStatement(session);
+            activeSessions.remove(ticket.getVehicleRegNumber(), ticket.getId());
+            if (deleted != 1) {
+                // Session already ended, e.g. by another process sharing the database
+                con.rollback();
+                logger.error("No open session for ticket " + ticket.getId() + " of vehicle " + ticket.getVehicleRegNumber());
+                return false;
+            }
+            TicketRollupDAO.rollUp(dataBaseConfig, con, ticket);
+            con.commit();
             return true;
         }catch (Exception ex){
             logger.error("Error saving ticket info",ex);
@@ -88,18 +271,41 @@ public class TicketDAO {
         }
     }
     
+    @Override
     public Integer getNbTicket(String vehicleRegNumber) throws Exception {
+        long start = System.nanoTime();
+        boolean counted = false;
+        try {
+            Integer visits = countVisits(vehicleRegNumber);
+            counted = true;
+            return visits;
+        } finally {
+            GET_NB_TICKET.recordSince(start, counted);
+        }
+    }
+
+    private Integer countVisits(String vehicleRegNumber) throws Exception {
+        awaitPendingWrite(vehicleRegNumber);
+        Integer visits = visitCountCache.get(vehicleRegNumber);
+        if (visits != null) {
+            return visits;
+        }
+        long generation = visitCountCache.loadGeneration(vehicleRegNumber);
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NUMBER_TICKET);
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_VISITS);
             //VEHICLE_REG_NUMBER
             ps.setString(1,vehicleRegNumber);
             ResultSet rs = ps.executeQuery();
+            int result = 0;
             if(rs.next()){
-            	return (int)rs.getInt(1);
+            	result = rs.getInt(1);
             }
-            return null;
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            visitCountCache.putLoaded(vehicleRegNumber, result, generation);
+            return result;
     	}catch (Exception ex){
             logger.error("Error fetching the number of visits",ex);
             throw ex;
@@ -107,4 +313,18 @@ public class TicketDAO {
             dataBaseConfig.closeConnection(con);
         }
     }
+
+    public ActiveSessionMirror getActiveSessions() {
+        return activeSessions;
+    }
+
+    public VisitCountCache getVisitCountCache() {
+        return visitCountCache;
+    }
+
+    // Drops every cached value; needed after the tables are changed behind the DAO's back
+    public void invalidateCaches() {
+        visitCountCache.invalidateAll();
+        activeSessions.clear();
+    }
 }
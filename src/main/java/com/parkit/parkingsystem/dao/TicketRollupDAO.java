@@ -0,0 +1,95 @@
+package com.parkit.parkingsystem.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.RevenueRollup;
+import com.parkit.parkingsystem.model.Ticket;
+
+// Closed tickets and revenue per hour and per day, so reports read a few hundred rows instead of scanning the
+// ticket table. Tickets are added as they close, in the transaction that closes them; RollupBackfillJob adds
+// those closed before the rollup tables existed.
+public class TicketRollupDAO {
+
+    private static final Logger logger = LogManager.getLogger("TicketRollupDAO");
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    // Adds a closed ticket to the hour and the day of its exit, on the caller's transaction
+    static void rollUp(DataBaseConfig dataBaseConfig, Connection con, Ticket ticket) throws Exception {
+        if (ticket.getParkingSpot() == null || ticket.getParkingSpot().getParkingType() == null) {
+            return;
+        }
+        String type = ticket.getParkingSpot().getParkingType().toString();
+        long revenueCents = Math.round(ticket.getPrice() * 100);
+        LocalDateTime hour = RollupBuffer.hourOf(ticket.getOutTime().getTime());
+        PreparedStatement ps = con.prepareStatement(DBConstants.ROLL_UP_HOUR);
+        //HOUR_START, TYPE, TICKETS, REVENUE_CENTS
+        ps.setTimestamp(1, Timestamp.valueOf(hour));
+        ps.setString(2, type);
+        ps.setInt(3, 1);
+        ps.setLong(4, revenueCents);
+        ps.executeUpdate();
+        dataBaseConfig.closePreparedStatement(ps);
+        ps = con.prepareStatement(DBConstants.ROLL_UP_DAY);
+        //DAY_START, TYPE, TICKETS, REVENUE_CENTS
+        ps.setDate(1, java.sql.Date.valueOf(hour.toLocalDate()));
+        ps.setString(2, type);
+        ps.setInt(3, 1);
+        ps.setLong(4, revenueCents);
+        ps.executeUpdate();
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+
+    // Hours starting in [from, to), oldest first
+    public List<RevenueRollup> getHourlyRollups(Date from, Date to) throws Exception {
+        return getRollups(DBConstants.GET_HOURLY_ROLLUPS, new Timestamp(from.getTime()), new Timestamp(to.getTime()));
+    }
+
+    // Days starting in [from, to), oldest first; a month is at most 31 rows per parking type
+    public List<RevenueRollup> getDailyRollups(Date from, Date to) throws Exception {
+        return getRollups(DBConstants.GET_DAILY_ROLLUPS, new Timestamp(from.getTime()), new Timestamp(to.getTime()));
+    }
+
+    private List<RevenueRollup> getRollups(String query, Timestamp from, Timestamp to) throws Exception {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(query);
+            ps.setTimestamp(1, from);
+            ps.setTimestamp(2, to);
+            //PERIOD_START, TYPE, TICKETS, REVENUE_CENTS
+            ResultSet rs = ps.executeQuery();
+            List<RevenueRollup> rollups = new ArrayList<>();
+            while (rs.next()) {
+                String type = rs.getString(2);
+                try {
+                    rollups.add(new RevenueRollup(new Date(rs.getTimestamp(1).getTime()), ParkingType.valueOf(type),
+                            rs.getInt(3), rs.getLong(4)));
+                } catch (IllegalArgumentException ie) {
+                    logger.error("Ignoring rollup with unknown type " + type, ie);
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            return rollups;
+        } catch (Exception ex) {
+            logger.error("Error fetching rollups", ex);
+            throw ex;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+// Where tickets, open sessions and visit counts are kept; see Storage for the available backends
+public interface TicketStore {
+
+    // Saves a new ticket and sets its ID; false when it cannot be saved, e.g. the vehicle is already parked
+    boolean saveTicket(Ticket ticket);
+
+    // Open ticket of the vehicle, or null when it is not parked
+    Ticket getTicket(String vehicleRegNumber);
+
+    // Stores the price and out time, ending the vehicle's session; false when the ticket is not open
+    boolean updateTicket(Ticket ticket);
+
+    // Number of tickets ever saved for the vehicle
+    Integer getNbTicket(String vehicleRegNumber) throws Exception;
+}
@@ -0,0 +1,348 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Queues new tickets and inserts them from a single flusher thread with JDBC batches,
+// committing once per batch. A batch is flushed when it reaches batchSize tickets or
+// when its oldest ticket has waited flushIntervalMillis, whichever comes first.
+// A ticket whose future fails was not written; its spot is the submitter's to give back.
+public class TicketWriteBehind {
+
+    private static final Logger logger = LogManager.getLogger("TicketWriteBehind");
+
+    public static final String ENABLED_PROPERTY = "parkit.ticket.writeBehind";
+    public static final String BATCH_SIZE_PROPERTY = "parkit.ticket.writeBehind.batchSize";
+    public static final String FLUSH_INTERVAL_PROPERTY = "parkit.ticket.writeBehind.flushIntervalMillis";
+    public static final String QUEUE_DEPTH_PROPERTY = "parkit.ticket.writeBehind.queueDepth";
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 20;
+    public static final int DEFAULT_QUEUE_DEPTH = 10000;
+
+    // How long an idle flusher sleeps before checking whether it has been closed
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final BlockingQueue<PendingTicket> queue;
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> pendingByVehicle = new ConcurrentHashMap<>();
+    private final Thread flusher;
+    // Guards running against submit, so nothing is queued after the flusher's last look at the queue
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+    private volatile Consumer<Ticket> persistedListener = ticket -> { };
+
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder flushedTickets = new LongAdder();
+    private final LongAdder failedTickets = new LongAdder();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile int lastBatchSize;
+
+    public TicketWriteBehind(DataBaseConfig dataBaseConfig, int batchSize, long flushIntervalMillis, int queueDepth) {
+        if (batchSize <= 0 || queueDepth <= 0 || flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Invalid write-behind settings");
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.queue = new ArrayBlockingQueue<>(queueDepth);
+        this.flusher = new Thread(this::runFlusher, "ticket-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public static TicketWriteBehind fromSystemProperties(DataBaseConfig dataBaseConfig) {
+        return new TicketWriteBehind(dataBaseConfig,
+                Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE),
+                Long.getLong(FLUSH_INTERVAL_PROPERTY, DEFAULT_FLUSH_INTERVAL_MILLIS),
+                Integer.getInteger(QUEUE_DEPTH_PROPERTY, DEFAULT_QUEUE_DEPTH));
+    }
+
+    // Called on the flusher thread for each committed ticket, before its future completes
+    public void setPersistedListener(Consumer<Ticket> persistedListener) {
+        this.persistedListener = persistedListener;
+    }
+
+    // Blocks while the queue is full; the returned future completes once the ticket is committed and has its ID.
+    // Throws IllegalStateException once closed
+    public CompletableFuture<Boolean> submit(Ticket ticket) throws InterruptedException {
+        PendingTicket pending = new PendingTicket(ticket);
+        boolean registered = false;
+        boolean queued = false;
+        try {
+            while (!queued) {
+                // Shared by submitters and taken alone by close, so nothing is queued after the flusher's last look
+                Lock shared = lifecycle.readLock();
+                shared.lockInterruptibly();
+                try {
+                    if (!running) {
+                        throw new IllegalStateException("Ticket write-behind has been closed");
+                    }
+                    if (!registered) {
+                        if (pendingByVehicle.putIfAbsent(ticket.getVehicleRegNumber(), pending.durable) != null) {
+                            throw new IllegalStateException("Vehicle " + ticket.getVehicleRegNumber() + " already has a ticket queued");
+                        }
+                        registered = true;
+                    }
+                    // A short wait at a time, so a full queue does not hold off close
+                    queued = queue.offer(pending, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } finally {
+                    shared.unlock();
+                }
+            }
+        } finally {
+            if (registered && !queued) {
+                pendingByVehicle.remove(ticket.getVehicleRegNumber(), pending.durable);
+            }
+        }
+        return pending.durable;
+    }
+
+    // Waits until any queued ticket of this vehicle has reached the database
+    public void awaitPending(String vehicleRegNumber, long timeoutMillis) throws Exception {
+        CompletableFuture<Boolean> pending = pendingByVehicle.get(vehicleRegNumber);
+        if (pending != null) {
+            pending.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void runFlusher() {
+        List<PendingTicket> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingTicket first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingTicket next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Only close stops the flusher, or tickets queued afterwards would never be written
+                logger.warn("Ticket write-behind flusher interrupted, carrying on until closed");
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // A batch that fails is rolled back and its tickets written one at a time, so one bad row only fails its
+    // own future
+    private void flush(List<PendingTicket> batch) {
+        long start = System.nanoTime();
+        try {
+            write(batch);
+            recordFlush(batch.size(), System.nanoTime() - start);
+            persisted(batch);
+            return;
+        } catch (Exception ex) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), ex);
+                return;
+            }
+            logger.warn("Error writing batch of " + batch.size() + " tickets, writing them one by one", ex);
+        }
+        for (PendingTicket pending : batch) {
+            List<PendingTicket> single = Collections.singletonList(pending);
+            long rowStart = System.nanoTime();
+            try {
+                write(single);
+                recordFlush(1, System.nanoTime() - rowStart);
+                persisted(single);
+            } catch (Exception ex) {
+                fail(pending, ex);
+            }
+        }
+    }
+
+    // Inserts the tickets, their sessions and visit counts in one transaction
+    private void write(List<PendingTicket> batch) throws Exception {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+            for (PendingTicket pending : batch) {
+                Ticket ticket = pending.ticket;
+                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
+                ps.setInt(1, ticket.getParkingSpot().getId());
+                ps.setString(2, ticket.getVehicleRegNumber());
+                ps.setDouble(3, ticket.getPrice());
+                ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+                ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : new Timestamp(ticket.getOutTime().getTime()));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            ResultSet keys = ps.getGeneratedKeys();
+            for (int i = 0; i < batch.size() && keys.next(); i++) {
+                batch.get(i).ticket.setId(keys.getInt(1));
+            }
+            dataBaseConfig.closeResultSet(keys);
+            dataBaseConfig.closePreparedStatement(ps);
+            PreparedStatement sessions = con.prepareStatement(DBConstants.SAVE_SESSION);
+            boolean hasSessions = false;
+            for (PendingTicket pending : batch) {
+                Ticket ticket = pending.ticket;
+                if (ticket.getOutTime() != null) {
+                    continue;
+                }
+                //VEHICLE_REG_NUMBER, TICKET_ID, PARKING_NUMBER, TYPE, IN_TIME
+                sessions.setString(1, ticket.getVehicleRegNumber());
+                sessions.setInt(2, ticket.getId());
+                sessions.setInt(3, ticket.getParkingSpot().getId());
+                sessions.setString(4, ticket.getParkingSpot().getParkingType().toString());
+                sessions.setTimestamp(5, new Timestamp(ticket.getInTime().getTime()));
+                sessions.addBatch();
+                hasSessions = true;
+            }
+            if (hasSessions) {
+                sessions.executeBatch();
+            }
+            dataBaseConfig.closePreparedStatement(sessions);
+            PreparedStatement visits = con.prepareStatement(DBConstants.INCREMENT_VISITS);
+            for (PendingTicket pending : batch) {
+                visits.setString(1, pending.ticket.getVehicleRegNumber());
+                visits.addBatch();
+            }
+            visits.executeBatch();
+            dataBaseConfig.closePreparedStatement(visits);
+            con.commit();
+        } catch (Exception ex) {
+            if (con != null) {
+                try {
+                    con.rollback();
+                } catch (Exception e) {
+                    logger.error("Error rolling back ticket batch", e);
+                }
+            }
+            throw ex;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private void persisted(List<PendingTicket> batch) {
+        for (PendingTicket pending : batch) {
+            persistedListener.accept(pending.ticket);
+            pending.complete(null);
+        }
+    }
+
+    private void fail(PendingTicket pending, Exception ex) {
+        logger.error("Error writing ticket for vehicle " + pending.ticket.getVehicleRegNumber(), ex);
+        failedTickets.increment();
+        pending.ticket.setId(0);
+        pending.complete(ex);
+    }
+
+    private void recordFlush(int size, long nanos) {
+        flushCount.increment();
+        flushedTickets.add(size);
+        totalFlushNanos.addAndGet(nanos);
+        maxFlushNanos.accumulateAndGet(nanos, Math::max);
+        lastBatchSize = size;
+    }
+
+    // Stops accepting tickets and waits for everything queued to be written
+    public void close() throws InterruptedException {
+        Lock exclusive = lifecycle.writeLock();
+        exclusive.lock();
+        try {
+            running = false;
+        } finally {
+            exclusive.unlock();
+        }
+        flusher.join();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+
+    public long getFlushedTicketCount() {
+        return flushedTickets.sum();
+    }
+
+    public long getFailedTicketCount() {
+        return failedTickets.sum();
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public double getAverageBatchSize() {
+        long flushes = flushCount.sum();
+        return flushes == 0 ? 0 : (double) flushedTickets.sum() / flushes;
+    }
+
+    public double getAverageFlushMillis() {
+        long flushes = flushCount.sum();
+        return flushes == 0 ? 0 : totalFlushNanos.get() / 1e6 / flushes;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1e6;
+    }
+
+    private final class PendingTicket {
+        private final Ticket ticket;
+        private final CompletableFuture<Boolean> durable = new CompletableFuture<>();
+
+        PendingTicket(Ticket ticket) {
+            this.ticket = ticket;
+        }
+
+        void complete(Exception failure) {
+            pendingByVehicle.remove(ticket.getVehicleRegNumber(), durable);
+            if (failure == null) {
+                durable.complete(true);
+            } else {
+                durable.completeExceptionally(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded LRU cache of visit counts per vehicle, split in stripes so gates rarely share a lock.
+// Each stripe keeps a generation bumped by every increment it could not apply, so a count read
+// from the database while a ticket was being saved is never cached stale.
+public class VisitCountCache {
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VisitCountCache(int maxSize) {
+        int stripeSize = Math.max(1, maxSize / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    // Returns the cached count, or null when the vehicle has to be loaded from DB
+    public Integer get(String vehicleRegNumber) {
+        Stripe stripe = stripeFor(vehicleRegNumber);
+        Integer visits;
+        synchronized (stripe) {
+            visits = stripe.counts.get(vehicleRegNumber);
+        }
+        if (visits == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return visits;
+    }
+
+    // Generation to pass to putLoaded once the count has been read from DB
+    public long loadGeneration(String vehicleRegNumber) {
+        Stripe stripe = stripeFor(vehicleRegNumber);
+        synchronized (stripe) {
+            return stripe.generation;
+        }
+    }
+
+    public void putLoaded(String vehicleRegNumber, int visits, long generation) {
+        Stripe stripe = stripeFor(vehicleRegNumber);
+        synchronized (stripe) {
+            if (stripe.generation == generation) {
+                stripe.counts.putIfAbsent(vehicleRegNumber, visits);
+            }
+        }
+    }
+
+    public void increment(String vehicleRegNumber) {
+        Stripe stripe = stripeFor(vehicleRegNumber);
+        synchronized (stripe) {
+            Integer visits = stripe.counts.get(vehicleRegNumber);
+            if (visits != null) {
+                stripe.counts.put(vehicleRegNumber, visits + 1);
+            } else {
+                stripe.generation++;
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.counts.clear();
+                stripe.generation++;
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private Stripe stripeFor(String vehicleRegNumber) {
+        int h = vehicleRegNumber.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe {
+        private final LinkedHashMap<String, Integer> counts;
+        private long generation;
+
+        Stripe(int maxSize) {
+            counts = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+    }
+}
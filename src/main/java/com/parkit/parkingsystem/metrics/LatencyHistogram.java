@@ -0,0 +1,195 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencies of one operation, in nanoseconds, counted in log-linear buckets: 8 buckets per power of two,
+// so a percentile is read back within 12.5% of the true value. Recording is one atomic increment and a few
+// LongAdder updates, with no lock and no allocation; snapshots may see a recording half done.
+public class LatencyHistogram implements LatencyHistogramMXBean {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    // Highest latency counted in the bucket
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    // Records the time elapsed since startNanos, a System.nanoTime() value
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    // Same, counting an error when the operation did not succeed
+    public void recordSince(long startNanos, boolean succeeded) {
+        record(System.nanoTime() - startNanos);
+        if (!succeeded) {
+            errors.increment();
+        }
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = counts.get(i);
+            total += buckets[i];
+        }
+        return new Snapshot(name, buckets, total, totalNanos.sum(), errors.sum(), maxNanos.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        errors.reset();
+        maxNanos.set(0);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return snapshot().getMeanMicros();
+    }
+
+    @Override
+    public double getP50Micros() {
+        return snapshot().getPercentileMicros(50);
+    }
+
+    @Override
+    public double getP99Micros() {
+        return snapshot().getPercentileMicros(99);
+    }
+
+    @Override
+    public double getP999Micros() {
+        return snapshot().getPercentileMicros(99.9);
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return maxNanos.get() / 1000.0;
+    }
+
+    // Histogram counts copied at one point in time
+    public static class Snapshot {
+        private final String name;
+        private final long[] buckets;
+        private final long count;
+        private final long totalNanos;
+        private final long errors;
+        private final long maxNanos;
+
+        Snapshot(String name, long[] buckets, long count, long totalNanos, long errors, long maxNanos) {
+            this.name = name;
+            this.buckets = buckets;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.errors = errors;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getPercentileNanos(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        public double getPercentileMicros(double percentile) {
+            return getPercentileNanos(percentile) / 1000.0;
+        }
+
+        public double getMeanMicros() {
+            return count == 0 ? 0 : (double) totalNanos / count / 1000;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s count=%d errors=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+                    name, count, errors, getMeanMicros(), getPercentileMicros(50), getPercentileMicros(99),
+                    getPercentileMicros(99.9), maxNanos / 1000.0);
+        }
+    }
+}
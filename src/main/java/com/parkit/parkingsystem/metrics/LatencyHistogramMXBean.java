@@ -0,0 +1,19 @@
+package com.parkit.parkingsystem.metrics;
+
+// What JMX clients such as jconsole see of each LatencyHistogram
+public interface LatencyHistogramMXBean {
+
+    long getCount();
+
+    long getErrors();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
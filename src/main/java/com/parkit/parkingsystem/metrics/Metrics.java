@@ -0,0 +1,102 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Latency histograms of the service and DAO operations, one per name such as "TicketDAO.saveTicket".
+// Each is registered in JMX as com.parkit.parkingsystem:type=Latency,name=<name>, and all of them can be
+// written to the "Metrics" log every parkit.metrics.reportIntervalMillis (off by default).
+// Callers look their histogram up once, into a static final field, and only record on the hot path.
+public final class Metrics {
+
+    private static final Logger logger = LogManager.getLogger("Metrics");
+
+    public static final String REPORT_INTERVAL_PROPERTY = "parkit.metrics.reportIntervalMillis";
+    static final String JMX_DOMAIN = "com.parkit.parkingsystem";
+
+    private static final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService reporter;
+
+    private Metrics() {
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, Metrics::register);
+    }
+
+    private static LatencyHistogram register(String name) {
+        LatencyHistogram histogram = new LatencyHistogram(name);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Latency,name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(histogram, objectName);
+            }
+        } catch (Exception e) {
+            // Still recorded and reported, only not visible in JMX
+            logger.warn("Unable to register latency histogram " + name + " in JMX", e);
+        }
+        return histogram;
+    }
+
+    public static List<LatencyHistogram.Snapshot> snapshots() {
+        List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>();
+        for (LatencyHistogram histogram : histograms.values()) {
+            snapshots.add(histogram.snapshot());
+        }
+        snapshots.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return snapshots;
+    }
+
+    public static void report() {
+        for (LatencyHistogram.Snapshot snapshot : snapshots()) {
+            if (snapshot.getCount() > 0 || snapshot.getErrors() > 0) {
+                logger.info(snapshot.toString());
+            }
+        }
+    }
+
+    public static void startReportingFromSystemProperties() {
+        startReporting(Long.getLong(REPORT_INTERVAL_PROPERTY, 0));
+    }
+
+    // Logs every histogram each intervalMillis; counts keep adding up from the start
+    public static synchronized void startReporting(long intervalMillis) {
+        if (reporter != null || intervalMillis <= 0) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(Metrics::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Writes a last report
+    public static synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdown();
+            reporter = null;
+            report();
+        }
+    }
+
+    public static void resetAll() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+}
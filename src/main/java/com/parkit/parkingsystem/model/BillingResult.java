@@ -0,0 +1,37 @@
+package com.parkit.parkingsystem.model;
+
+public class BillingResult {
+    private final long ticketsRead;
+    private final long ticketsUpdated;
+    private final long ticketsSkipped;
+    private final long elapsedMillis;
+
+    public BillingResult(long ticketsRead, long ticketsUpdated, long ticketsSkipped, long elapsedMillis) {
+        this.ticketsRead = ticketsRead;
+        this.ticketsUpdated = ticketsUpdated;
+        this.ticketsSkipped = ticketsSkipped;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getTicketsRead() {
+        return ticketsRead;
+    }
+
+    // Tickets whose stored price differed from the recomputed one
+    public long getTicketsUpdated() {
+        return ticketsUpdated;
+    }
+
+    // Tickets left untouched because their times or parking type are invalid
+    public long getTicketsSkipped() {
+        return ticketsSkipped;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getTicketsPerSecond() {
+        return elapsedMillis == 0 ? ticketsRead : ticketsRead * 1000.0 / elapsedMillis;
+    }
+}
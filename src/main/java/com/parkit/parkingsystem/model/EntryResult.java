@@ -0,0 +1,23 @@
+package com.parkit.parkingsystem.model;
+
+public class EntryResult {
+    private final Ticket ticket;
+    private final boolean recurringUser;
+
+    public EntryResult(Ticket ticket, boolean recurringUser) {
+        this.ticket = ticket;
+        this.recurringUser = recurringUser;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public ParkingSpot getParkingSpot() {
+        return ticket.getParkingSpot();
+    }
+
+    public boolean isRecurringUser() {
+        return recurringUser;
+    }
+}
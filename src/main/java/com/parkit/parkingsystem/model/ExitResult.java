@@ -0,0 +1,30 @@
+package com.parkit.parkingsystem.model;
+
+public class ExitResult {
+    private final Ticket ticket;
+    private final boolean discounted;
+    private final boolean updated;
+
+    public ExitResult(Ticket ticket, boolean discounted, boolean updated) {
+        this.ticket = ticket;
+        this.discounted = discounted;
+        this.updated = updated;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public double getPrice() {
+        return ticket.getPrice();
+    }
+
+    public boolean isDiscounted() {
+        return discounted;
+    }
+
+    // False when the ticket could not be closed in DB; the spot is then left taken
+    public boolean isUpdated() {
+        return updated;
+    }
+}
@@ -0,0 +1,50 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.Date;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+// A spot of a type booked for a vehicle from start, inclusive, to end, exclusive
+public class Reservation {
+    private final int id;
+    private final String vehicleRegNumber;
+    private final ParkingType parkingType;
+    private final long startMillis;
+    private final long endMillis;
+
+    public Reservation(int id, String vehicleRegNumber, ParkingType parkingType, long startMillis, long endMillis) {
+        this.id = id;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingType = parkingType;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public Date getStart() {
+        return new Date(startMillis);
+    }
+
+    public Date getEnd() {
+        return new Date(endMillis);
+    }
+}
@@ -0,0 +1,40 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.Date;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+// Tickets closed and their revenue in one hour or day for one parking type
+public class RevenueRollup {
+    private final Date periodStart;
+    private final ParkingType parkingType;
+    private final int tickets;
+    private final long revenueCents;
+
+    public RevenueRollup(Date periodStart, ParkingType parkingType, int tickets, long revenueCents) {
+        this.periodStart = periodStart;
+        this.parkingType = parkingType;
+        this.tickets = tickets;
+        this.revenueCents = revenueCents;
+    }
+
+    public Date getPeriodStart() {
+        return periodStart;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public int getTickets() {
+        return tickets;
+    }
+
+    public long getRevenueCents() {
+        return revenueCents;
+    }
+
+    public double getRevenue() {
+        return revenueCents / 100.0;
+    }
+}
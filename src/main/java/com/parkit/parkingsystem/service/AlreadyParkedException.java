@@ -0,0 +1,11 @@
+package com.parkit.parkingsystem.service;
+
+// The vehicle has an open ticket already, as opposed to a failure of the stores
+public class AlreadyParkedException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public AlreadyParkedException(String vehicleRegNumber) {
+        super("Vehicle " + vehicleRegNumber + " is already parked");
+    }
+}
@@ -0,0 +1,270 @@
+package com.parkit.parkingsystem.service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.RollupBuffer;
+import com.parkit.parkingsystem.model.BillingResult;
+
+// Recomputes the price of every closed ticket with the current fares and writes back the ones that changed.
+// Tickets are streamed in ID order in chunks: while one chunk is priced on the fork-join pool the next is read,
+// then the changed prices are written in one JDBC batch and committed. The last committed ticket ID is kept in
+// the checkpoint file, so a stopped run resumes after it; the file is deleted once the whole history is done.
+// Price changes of tickets already in the revenue rollups are added to them in the same commit; tickets the rollup
+// backfill has not reached yet are left to it. Run the two jobs one after the other, not at the same time.
+public class BillingJob {
+
+    private static final Logger logger = LogManager.getLogger("BillingJob");
+
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+    public static final String DEFAULT_CHECKPOINT_FILE = "billing.checkpoint";
+
+    // Below this many tickets a fare task prices its range itself instead of splitting it
+    private static final int SEQUENTIAL_THRESHOLD = 1024;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final Path checkpointFile;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    // Price changes waiting to be added to the rollups with the chunk's commit
+    private RollupBuffer rollups;
+    private long rolledUpSince;
+    private int backfilledId;
+
+    public BillingJob(DataBaseConfig dataBaseConfig, Path checkpointFile) {
+        this(dataBaseConfig, checkpointFile, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public BillingJob(DataBaseConfig dataBaseConfig, Path checkpointFile, int chunkSize, ForkJoinPool pool) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.checkpointFile = checkpointFile;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    public BillingResult run() throws Exception {
+        long start = System.nanoTime();
+        int lastId = readCheckpoint();
+        if (lastId > 0) {
+            logger.info("Resuming billing after ticket " + lastId);
+        }
+        long read = 0;
+        long updated = 0;
+        long skipped = 0;
+        Connection readCon = null;
+        Connection writeCon = null;
+        try {
+            // A streaming result set keeps its connection busy, so writes go through a second one
+            readCon = dataBaseConfig.getConnection();
+            writeCon = dataBaseConfig.getConnection();
+            writeCon.setAutoCommit(false);
+            readRollupScope(writeCon);
+            PreparedStatement query = readCon.prepareStatement(DBConstants.GET_CLOSED_TICKETS_FOR_BILLING,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Makes MySQL stream rows instead of loading the whole history in memory
+            query.setFetchSize(Integer.MIN_VALUE);
+            query.setInt(1, lastId);
+            ResultSet rs = query.executeQuery();
+            PreparedStatement update = writeCon.prepareStatement(DBConstants.UPDATE_TICKET_PRICE);
+
+            Chunk[] buffers = {new Chunk(chunkSize), new Chunk(chunkSize)};
+            int current = 0;
+            Chunk pricing = null;
+            ForkJoinTask<Void> pricingTask = null;
+            while (true) {
+                Chunk chunk = buffers[current];
+                chunk.fill(rs);
+                if (pricing != null) {
+                    pricingTask.join();
+                    write(writeCon, update, pricing);
+                    read += pricing.size;
+                    updated += pricing.updated;
+                    skipped += pricing.skipped;
+                    writeCheckpoint(pricing.ids[pricing.size - 1]);
+                    logger.info("Billed " + read + " tickets up to ID " + pricing.ids[pricing.size - 1] + ", "
+                            + (long) (read * 1e9 / (System.nanoTime() - start)) + " tickets/s");
+                }
+                if (chunk.size == 0) {
+                    break;
+                }
+                pricing = chunk;
+                pricingTask = pool.submit(new FareTask(chunk, 0, chunk.size));
+                current ^= 1;
+            }
+            dataBaseConfig.closePreparedStatement(update);
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(query);
+            Files.deleteIfExists(checkpointFile);
+        } catch (Exception ex) {
+            logger.error("Billing stopped after " + read + " tickets, rerun to resume from the checkpoint", ex);
+            throw ex;
+        } finally {
+            dataBaseConfig.closeConnection(writeCon);
+            dataBaseConfig.closeConnection(readCon);
+        }
+        BillingResult result = new BillingResult(read, updated, skipped, (System.nanoTime() - start) / 1000000);
+        logger.info("Billing done: " + result.getTicketsRead() + " tickets read, " + result.getTicketsUpdated()
+                + " updated, " + result.getTicketsSkipped() + " skipped, " + (long) result.getTicketsPerSecond() + " tickets/s");
+        return result;
+    }
+
+    private void write(Connection writeCon, PreparedStatement update, Chunk chunk) throws Exception {
+        chunk.updated = 0;
+        chunk.skipped = 0;
+        for (int i = 0; i < chunk.size; i++) {
+            if (chunk.cents[i] < 0) {
+                chunk.skipped++;
+                continue;
+            }
+            double price = chunk.cents[i] / 100.0;
+            if (price != chunk.prices[i]) {
+                update.setDouble(1, price);
+                update.setInt(2, chunk.ids[i]);
+                update.addBatch();
+                chunk.updated++;
+                if (chunk.outTimes[i] >= rolledUpSince || chunk.ids[i] <= backfilledId) {
+                    rollups.add(chunk.outTimes[i], chunk.types[i], 0, chunk.cents[i] - Math.round(chunk.prices[i] * 100));
+                }
+            }
+        }
+        if (chunk.updated > 0) {
+            update.executeBatch();
+            rollups.writeTo(dataBaseConfig, writeCon);
+        }
+        // Committed before the checkpoint moves: a crash in between only reprices this chunk again
+        writeCon.commit();
+    }
+
+    // Tickets closed since ROLLUP_SINCE were rolled up as they closed, older ones up to LAST_TICKET_ID by the backfill
+    private void readRollupScope(Connection writeCon) throws Exception {
+        rollups = new RollupBuffer();
+        PreparedStatement state = writeCon.prepareStatement(DBConstants.GET_ROLLUP_BACKFILL);
+        //ROLLUP_SINCE, LAST_TICKET_ID
+        ResultSet rs = state.executeQuery();
+        if (rs.next()) {
+            rolledUpSince = rs.getTimestamp(1).getTime();
+            backfilledId = rs.getInt(2);
+        } else {
+            rolledUpSince = Long.MAX_VALUE;
+            backfilledId = 0;
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(state);
+    }
+
+    private int readCheckpoint() throws Exception {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        return Integer.parseInt(new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim());
+    }
+
+    private void writeCheckpoint(int lastId) throws Exception {
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.write(tmp, Integer.toString(lastId).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Column arrays reused from chunk to chunk; cents is -1 for a ticket that cannot be priced
+    private static final class Chunk {
+        private final int[] ids;
+        private final ParkingType[] types;
+        private final long[] minutes;
+        private final long[] outTimes;
+        private final boolean[] discounts;
+        private final double[] prices;
+        private final long[] cents;
+        private int size;
+        private int updated;
+        private int skipped;
+
+        Chunk(int capacity) {
+            ids = new int[capacity];
+            types = new ParkingType[capacity];
+            minutes = new long[capacity];
+            outTimes = new long[capacity];
+            discounts = new boolean[capacity];
+            prices = new double[capacity];
+            cents = new long[capacity];
+        }
+
+        void fill(ResultSet rs) throws Exception {
+            size = 0;
+            while (size < ids.length && rs.next()) {
+                //ID, IN_TIME, OUT_TIME, PRICE, TYPE, VISIT
+                ids[size] = rs.getInt(1);
+                Timestamp inTime = rs.getTimestamp(2);
+                Timestamp outTime = rs.getTimestamp(3);
+                // Same minute truncation as FareCalculatorService.calculateFare
+                minutes[size] = (inTime == null || outTime.before(inTime)) ? -1
+                        : outTime.getTime() / 60 / 1000 - inTime.getTime() / 60 / 1000;
+                outTimes[size] = outTime.getTime();
+                prices[size] = rs.getDouble(4);
+                String type = rs.getString(5);
+                try {
+                    types[size] = ParkingType.valueOf(type);
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    logger.error("Ticket " + ids[size] + " has unknown parking type " + type);
+                    types[size] = null;
+                }
+                // A vehicle's first ticket is full price, later ones get the recurring user discount
+                discounts[size] = rs.getInt(6) > 1;
+                size++;
+            }
+        }
+    }
+
+    private static final class FareTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+
+        FareTask(Chunk chunk, int from, int to) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    chunk.cents[i] = (chunk.types[i] == null || chunk.minutes[i] < 0) ? -1
+                            : FareCalculatorService.calculateFareCents(chunk.types[i], chunk.minutes[i], chunk.discounts[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new FareTask(chunk, from, middle), new FareTask(chunk, middle, to));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path checkpointFile = Paths.get(args.length > 0 ? args[0] : DEFAULT_CHECKPOINT_FILE);
+        BillingResult result = new BillingJob(new DataBaseConfig(), checkpointFile).run();
+        System.out.println("Billed " + result.getTicketsRead() + " tickets, " + result.getTicketsUpdated()
+                + " prices corrected in " + result.getElapsedMillis() + " ms");
+    }
+}
@@ -0,0 +1,476 @@
+package com.parkit.parkingsystem.service;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.RollupBuffer;
+import com.parkit.parkingsystem.model.ImportResult;
+import com.parkit.parkingsystem.util.CsvUtil;
+
+// Loads a site's spot inventory and closed ticket history from CSV files. The input is read one line at a time and
+// checked, and accepted rows are written with multi-row inserts of batchSize rows, committed every commitSize rows,
+// so memory does not grow with the file. Rejected rows are counted and logged with their line number.
+//   spots:   PARKING_NUMBER,TYPE[,AVAILABLE[,LEVEL]]
+//   tickets: VEHICLE_REG_NUMBER,TYPE,PARKING_NUMBER,IN_TIME,OUT_TIME,PRICE
+// Times are yyyy-MM-dd HH:mm[:ss]; a first line naming the columns is skipped. Tickets must be closed and parked on a
+// spot of their type that already exists. Their visits are added to vehicle_visit and, when they closed after
+// ROLLUP_SINCE, their revenue to the rollups, in the same commit; older ones are left to RollupBackfillJob. With
+// deferIndexes the ticket table's secondary indexes are dropped for the load and built once at the end, which is
+// faster than updating them row by row but slows lookups meanwhile, so only defer them before the site goes live.
+public class BulkImportJob {
+
+    private static final Logger logger = LogManager.getLogger("BulkImportJob");
+
+    public static final String BATCH_SIZE_PROPERTY = "parkit.import.batchSize";
+    public static final String COMMIT_SIZE_PROPERTY = "parkit.import.commitSize";
+    public static final String DEFER_INDEXES_PROPERTY = "parkit.import.deferIndexes";
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_COMMIT_SIZE = 20000;
+    // Keeps a multi-row ticket insert well under MySQL's 65535 placeholders per statement
+    public static final int MAX_BATCH_SIZE = 10000;
+
+    private static final int LOGGED_REJECTS = 100;
+    // VEHICLE_REG_NUMBER holds 10 characters
+    private static final Pattern PLATE = Pattern.compile("[A-Za-z0-9-]{1,10}");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd[ ]['T']HH:mm[:ss]");
+
+    private static final Map<String, String> TICKET_INDEXES = new LinkedHashMap<>();
+
+    static {
+        TICKET_INDEXES.put(DBConstants.TICKET_VEHICLE_INDEX, DBConstants.CREATE_TICKET_VEHICLE_INDEX);
+        TICKET_INDEXES.put(DBConstants.TICKET_OUT_TIME_INDEX, DBConstants.CREATE_TICKET_OUT_TIME_INDEX);
+    }
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int batchSize;
+    private final int commitSize;
+    private final boolean deferIndexes;
+
+    public BulkImportJob(DataBaseConfig dataBaseConfig, int batchSize, int commitSize, boolean deferIndexes) {
+        if (batchSize <= 0 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_BATCH_SIZE + ": " + batchSize);
+        }
+        if (commitSize < batchSize) {
+            throw new IllegalArgumentException("Commit size must be at least the batch size: " + commitSize);
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.batchSize = batchSize;
+        this.commitSize = commitSize;
+        this.deferIndexes = deferIndexes;
+    }
+
+    public static BulkImportJob fromSystemProperties(DataBaseConfig dataBaseConfig) {
+        return new BulkImportJob(dataBaseConfig, Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE),
+                Integer.getInteger(COMMIT_SIZE_PROPERTY, DEFAULT_COMMIT_SIZE),
+                Boolean.parseBoolean(System.getProperty(DEFER_INDEXES_PROPERTY, "false")));
+    }
+
+    public ImportResult importSpots(Reader input) throws Exception {
+        return load(input, new SpotLoader());
+    }
+
+    public ImportResult importTickets(Reader input) throws Exception {
+        return load(input, new TicketLoader());
+    }
+
+    private ImportResult load(Reader input, Loader loader) throws Exception {
+        long start = System.nanoTime();
+        long read = 0;
+        long imported = 0;
+        long rejected = 0;
+        Connection con = null;
+        try (BufferedReader lines = new BufferedReader(input)) {
+            con = dataBaseConfig.getConnection();
+            try {
+                loader.open(con);
+                con.setAutoCommit(false);
+                PreparedStatement fullBatch = con.prepareStatement(multiRowInsert(loader.insert, batchSize));
+                Object[][] batch = new Object[batchSize][];
+                int batched = 0;
+                int uncommitted = 0;
+                int lineNumber = 0;
+                boolean first = true;
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    lineNumber++;
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    String[] values;
+                    try {
+                        values = CsvUtil.split(line);
+                        if (first && values[0].trim().equalsIgnoreCase(loader.firstColumn)) {
+                            first = false;
+                            continue;
+                        }
+                        first = false;
+                        read++;
+                        batch[batched] = loader.parse(values);
+                    } catch (IllegalArgumentException e) {
+                        first = false;
+                        if (++rejected <= LOGGED_REJECTS) {
+                            logger.warn("Line " + lineNumber + " rejected: " + e.getMessage());
+                        }
+                        continue;
+                    }
+                    if (++batched < batchSize) {
+                        continue;
+                    }
+                    insert(fullBatch, batch, batched);
+                    uncommitted += batched;
+                    batched = 0;
+                    if (uncommitted >= commitSize) {
+                        loader.beforeCommit(con);
+                        con.commit();
+                        imported += uncommitted;
+                        uncommitted = 0;
+                        logger.info("Imported " + imported + " " + loader.name + ", rejected " + rejected + ", "
+                                + (long) (read * 1e9 / (System.nanoTime() - start)) + " rows/s");
+                    }
+                }
+                dataBaseConfig.closePreparedStatement(fullBatch);
+                if (batched > 0) {
+                    PreparedStatement lastBatch = con.prepareStatement(multiRowInsert(loader.insert, batched));
+                    insert(lastBatch, batch, batched);
+                    dataBaseConfig.closePreparedStatement(lastBatch);
+                    uncommitted += batched;
+                }
+                loader.beforeCommit(con);
+                con.commit();
+                imported += uncommitted;
+            } catch (Exception ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                loader.close(con);
+            }
+        } catch (Exception ex) {
+            logger.error("Import stopped after " + imported + " committed " + loader.name
+                    + ", which stay imported; leave them out of the input before running it again", ex);
+            throw ex;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        logger.info("Import done: " + imported + " " + loader.name + " imported, " + rejected + " rejected in "
+                + elapsedMillis + " ms");
+        return new ImportResult(read, imported, rejected, elapsedMillis);
+    }
+
+    private static void insert(PreparedStatement ps, Object[][] batch, int rows) throws Exception {
+        int index = 1;
+        for (int i = 0; i < rows; i++) {
+            for (Object value : batch[i]) {
+                ps.setObject(index++, value);
+            }
+            batch[i] = null;
+        }
+        ps.executeUpdate();
+    }
+
+    // Repeats the values(...) group of a single row insert for the given number of rows
+    static String multiRowInsert(String singleRowInsert, int rows) {
+        String row = singleRowInsert.substring(singleRowInsert.lastIndexOf('('));
+        StringBuilder sql = new StringBuilder(singleRowInsert.length() + (row.length() + 1) * (rows - 1));
+        sql.append(singleRowInsert);
+        for (int i = 1; i < rows; i++) {
+            sql.append(',').append(row);
+        }
+        return sql.toString();
+    }
+
+    private static ParkingType parkingType(String value) {
+        try {
+            return ParkingType.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown parking type " + value);
+        }
+    }
+
+    private static int parkingNumber(String value) {
+        try {
+            int parkingNumber = Integer.parseInt(value.trim());
+            if (parkingNumber > 0) {
+                return parkingNumber;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("invalid parking number " + value);
+    }
+
+    private static Timestamp time(String value, String column) {
+        try {
+            return Timestamp.valueOf(LocalDateTime.parse(value.trim(), TIME));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid " + column + " " + value);
+        }
+    }
+
+    // Spots of the parking table by number
+    private Map<Integer, ParkingType> loadSpots(Connection con) throws Exception {
+        Map<Integer, ParkingType> spots = new HashMap<>();
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+        //PARKING_NUMBER, AVAILABLE, TYPE
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            try {
+                spots.put(rs.getInt(1), ParkingType.valueOf(rs.getString(3)));
+            } catch (IllegalArgumentException e) {
+                logger.error("Spot " + rs.getInt(1) + " has unknown parking type " + rs.getString(3));
+            }
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return spots;
+    }
+
+    // What differs between importing spots and tickets
+    private abstract static class Loader {
+        final String name;
+        final String firstColumn;
+        final String insert;
+
+        Loader(String name, String firstColumn, String insert) {
+            this.name = name;
+            this.firstColumn = firstColumn;
+            this.insert = insert;
+        }
+
+        void open(Connection con) throws Exception {
+        }
+
+        // Values of an accepted row in the order of the insert's columns; throws IllegalArgumentException with the reason
+        abstract Object[] parse(String[] values);
+
+        // Writes what the rows accepted since the last commit change besides their own table
+        void beforeCommit(Connection con) throws Exception {
+        }
+
+        void close(Connection con) {
+        }
+    }
+
+    private class SpotLoader extends Loader {
+        private Map<Integer, ParkingType> spots;
+
+        SpotLoader() {
+            super("spots", "PARKING_NUMBER", DBConstants.SAVE_PARKING_SPOT);
+        }
+
+        @Override
+        void open(Connection con) throws Exception {
+            spots = loadSpots(con);
+        }
+
+        @Override
+        Object[] parse(String[] values) {
+            if (values.length < 2 || values.length > 4) {
+                throw new IllegalArgumentException("expected 2 to 4 values, got " + values.length);
+            }
+            int parkingNumber = parkingNumber(values[0]);
+            ParkingType parkingType = parkingType(values[1]);
+            boolean available = true;
+            if (values.length >= 3 && !values[2].trim().isEmpty()) {
+                String value = values[2].trim();
+                if (value.equalsIgnoreCase("false") || value.equals("0")) {
+                    available = false;
+                } else if (!value.equalsIgnoreCase("true") && !value.equals("1")) {
+                    throw new IllegalArgumentException("invalid availability " + values[2]);
+                }
+            }
+            int level = 0;
+            if (values.length == 4 && !values[3].trim().isEmpty()) {
+                try {
+                    level = Integer.parseInt(values[3].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("invalid level " + values[3]);
+                }
+            }
+            if (spots.putIfAbsent(parkingNumber, parkingType) != null) {
+                throw new IllegalArgumentException("spot " + parkingNumber + " already exists");
+            }
+            //PARKING_NUMBER, AVAILABLE, TYPE, LEVEL
+            return new Object[] {parkingNumber, available, parkingType.toString(), level};
+        }
+    }
+
+    private class TicketLoader extends Loader {
+        private Map<Integer, ParkingType> spots;
+        private Timestamp rollupSince;
+        private final Map<String, Integer> visits = new HashMap<>();
+        private final RollupBuffer rollups = new RollupBuffer();
+        private final List<String> droppedIndexes = new ArrayList<>();
+
+        TicketLoader() {
+            super("tickets", "VEHICLE_REG_NUMBER", DBConstants.SAVE_TICKET);
+        }
+
+        @Override
+        void open(Connection con) throws Exception {
+            spots = loadSpots(con);
+            PreparedStatement state = con.prepareStatement(DBConstants.GET_ROLLUP_BACKFILL);
+            //ROLLUP_SINCE, LAST_TICKET_ID
+            ResultSet rs = state.executeQuery();
+            if (!rs.next()) {
+                throw new IllegalStateException("No rollup_backfill row, run the V4__ticket_rollup.sql migration first");
+            }
+            rollupSince = rs.getTimestamp(1);
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(state);
+            if (deferIndexes) {
+                dropIndexes(con);
+            }
+            execute(con, DBConstants.DISABLE_FOREIGN_KEY_CHECKS);
+        }
+
+        @Override
+        Object[] parse(String[] values) {
+            if (values.length != 6) {
+                throw new IllegalArgumentException("expected 6 values, got " + values.length);
+            }
+            String vehicleRegNumber = values[0].trim();
+            if (!PLATE.matcher(vehicleRegNumber).matches()) {
+                throw new IllegalArgumentException("invalid vehicle registration number " + values[0]);
+            }
+            ParkingType parkingType = parkingType(values[1]);
+            int parkingNumber = parkingNumber(values[2]);
+            ParkingType spotType = spots.get(parkingNumber);
+            if (spotType == null) {
+                throw new IllegalArgumentException("spot " + parkingNumber + " does not exist");
+            }
+            if (spotType != parkingType) {
+                throw new IllegalArgumentException("spot " + parkingNumber + " is a " + spotType + " spot");
+            }
+            Timestamp inTime = time(values[3], "IN_TIME");
+            if (values[4].trim().isEmpty()) {
+                throw new IllegalArgumentException("ticket is still open, only closed tickets are imported");
+            }
+            Timestamp outTime = time(values[4], "OUT_TIME");
+            if (outTime.before(inTime)) {
+                throw new IllegalArgumentException("OUT_TIME is before IN_TIME");
+            }
+            double price;
+            try {
+                price = Double.parseDouble(values[5].trim());
+            } catch (NumberFormatException e) {
+                price = -1;
+            }
+            if (!(price >= 0) || Double.isInfinite(price)) {
+                throw new IllegalArgumentException("invalid price " + values[5]);
+            }
+            visits.merge(vehicleRegNumber, 1, Integer::sum);
+            if (!outTime.before(rollupSince)) {
+                rollups.add(outTime.getTime(), parkingType, 1, Math.round(price * 100));
+            }
+            //PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
+            return new Object[] {parkingNumber, vehicleRegNumber, price, inTime, outTime};
+        }
+
+        @Override
+        void beforeCommit(Connection con) throws Exception {
+            if (!visits.isEmpty()) {
+                PreparedStatement ps = con.prepareStatement(DBConstants.ADD_VISITS);
+                for (Map.Entry<String, Integer> vehicle : visits.entrySet()) {
+                    ps.setString(1, vehicle.getKey());
+                    ps.setInt(2, vehicle.getValue());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                dataBaseConfig.closePreparedStatement(ps);
+                visits.clear();
+            }
+            rollups.writeTo(dataBaseConfig, con);
+        }
+
+        @Override
+        void close(Connection con) {
+            // Pooled connections keep their session settings
+            try {
+                execute(con, DBConstants.ENABLE_FOREIGN_KEY_CHECKS);
+            } catch (Exception e) {
+                logger.error("Unable to enable foreign key checks again", e);
+            }
+            buildIndexes(con);
+        }
+
+        private void dropIndexes(Connection con) throws Exception {
+            Set<String> existing = new HashSet<>();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET_INDEXES);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                existing.add(rs.getString(1));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            for (String index : TICKET_INDEXES.keySet()) {
+                if (existing.contains(index)) {
+                    execute(con, DBConstants.DROP_TICKET_INDEX + index);
+                    droppedIndexes.add(index);
+                    logger.info("Dropped index " + index + " until the import is done");
+                }
+            }
+        }
+
+        // Also after a failed import, so the table is never left without its indexes
+        private void buildIndexes(Connection con) {
+            for (String index : droppedIndexes) {
+                String create = TICKET_INDEXES.get(index);
+                long start = System.nanoTime();
+                try {
+                    execute(con, create);
+                    logger.info("Built index " + index + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+                } catch (Exception e) {
+                    logger.error("Unable to build index " + index + " again, run: " + create, e);
+                }
+            }
+            droppedIndexes.clear();
+        }
+
+        private void execute(Connection con, String sql) throws Exception {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.execute();
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+    }
+
+    // Arguments: spots|tickets <CSV file>
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 || !(args[0].equals("spots") || args[0].equals("tickets"))) {
+            System.out.println("Usage: BulkImportJob spots|tickets <CSV file>");
+            return;
+        }
+        BulkImportJob job = fromSystemProperties(new DataBaseConfig());
+        ImportResult result;
+        try (Reader input = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            result = args[0].equals("spots") ? job.importSpots(input) : job.importTickets(input);
+        }
+        System.out.println(String.format("%d %s imported, %d rejected of %d rows in %d ms (%.0f rows/s)",
+                result.getRowsImported(), args[0], result.getRowsRejected(), result.getRowsRead(),
+                result.getElapsedMillis(), result.getRowsPerSecond()));
+    }
+}
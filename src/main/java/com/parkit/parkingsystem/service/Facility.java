@@ -0,0 +1,37 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.Storage;
+
+// One lot and the stores it runs on. Facilities share nothing: each has its own spots, tickets, free spot
+// index, caches, reservations and, on the jdbc backend, database and connection pool, so entries at one never
+// wait on another.
+public class Facility {
+
+    private final String id;
+    private final Storage storage;
+    private final ParkingService parkingService;
+
+    public Facility(String id, Storage storage) {
+        this(id, storage, new ParkingService(null, storage.getParkingSpotStore(), storage.getTicketStore(),
+                storage.getParkingTransactionDAO(), ReservationBook.fromSystemProperties(storage.getParkingSpotStore()), id));
+    }
+
+    // The storage may be null when the caller owns it
+    public Facility(String id, Storage storage, ParkingService parkingService) {
+        this.id = id;
+        this.storage = storage;
+        this.parkingService = parkingService;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ParkingService getParkingService() {
+        return parkingService;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+}
@@ -0,0 +1,115 @@
+package com.parkit.parkingsystem.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.FacilityProperties;
+import com.parkit.parkingsystem.dao.Storage;
+
+// The facilities this process serves, by ID. parkit.facilities lists them, e.g. "north,south", and each one
+// is set up from its parkit.facility.<id>.* properties (see Storage.forFacility). Without the property there is
+// a single facility, DEFAULT_FACILITY, on the parkit.* properties as before.
+public class FacilityRegistry {
+
+    private static final Logger logger = LogManager.getLogger("FacilityRegistry");
+
+    public static final String FACILITIES_PROPERTY = "parkit.facilities";
+    public static final String DEFAULT_FACILITY = "main";
+
+    private static final Pattern ID = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    private final Map<String, Facility> facilities = new LinkedHashMap<>();
+
+    public FacilityRegistry(Collection<Facility> facilities) {
+        if (facilities.isEmpty()) {
+            throw new IllegalArgumentException("At least one facility is needed");
+        }
+        for (Facility facility : facilities) {
+            if (this.facilities.put(facility.getId(), facility) != null) {
+                throw new IllegalArgumentException("Facility " + facility.getId() + " is listed twice");
+            }
+        }
+    }
+
+    // A single facility on a ParkingService the caller set up
+    public static FacilityRegistry of(ParkingService parkingService) {
+        return new FacilityRegistry(Collections.singletonList(new Facility(DEFAULT_FACILITY, null, parkingService)));
+    }
+
+    public static FacilityRegistry fromSystemProperties() throws Exception {
+        String ids = System.getProperty(FACILITIES_PROPERTY, "").trim();
+        if (ids.isEmpty()) {
+            return new FacilityRegistry(Collections.singletonList(new Facility(DEFAULT_FACILITY, Storage.fromSystemProperties())));
+        }
+        Map<String, String> databases = new HashMap<>();
+        for (String id : ids.split(",")) {
+            id = id.trim();
+            if (!ID.matcher(id).matches()) {
+                throw new IllegalArgumentException("Invalid facility ID " + id + " in " + FACILITIES_PROPERTY);
+            }
+            if (Storage.JDBC.equalsIgnoreCase(FacilityProperties.get(id, Storage.BACKEND_PROPERTY, Storage.JDBC))) {
+                String url = FacilityProperties.get(id, DataBaseConfig.URL_PROPERTY, DataBaseConfig.DEFAULT_URL);
+                String other = databases.put(url, id);
+                if (other != null) {
+                    throw new IllegalArgumentException("Facilities " + other + " and " + id + " both use " + url
+                            + ", set " + FacilityProperties.name(id, DataBaseConfig.URL_PROPERTY));
+                }
+            }
+        }
+        Collection<Facility> facilities = new ArrayList<>();
+        try {
+            for (String id : ids.split(",")) {
+                id = id.trim();
+                facilities.add(new Facility(id, Storage.forFacility(id)));
+                logger.info("Facility " + id + " ready");
+            }
+        } catch (Exception ex) {
+            close(facilities);
+            throw ex;
+        }
+        return new FacilityRegistry(facilities);
+    }
+
+    public Facility get(String id) {
+        Facility facility = facilities.get(id);
+        if (facility == null) {
+            throw new IllegalArgumentException("Unknown facility " + id);
+        }
+        return facility;
+    }
+
+    // The only facility, or null when there are several and the caller has to say which
+    public Facility getSingle() {
+        return facilities.size() == 1 ? facilities.values().iterator().next() : null;
+    }
+
+    public Collection<Facility> getFacilities() {
+        return Collections.unmodifiableCollection(facilities.values());
+    }
+
+    public void close() {
+        close(facilities.values());
+    }
+
+    private static void close(Collection<Facility> facilities) {
+        for (Facility facility : facilities) {
+            if (facility.getStorage() == null) {
+                continue;
+            }
+            try {
+                facility.getStorage().close();
+            } catch (Exception e) {
+                logger.error("Unable to close the storage of facility " + facility.getId(), e);
+            }
+        }
+    }
+}
@@ -2,13 +2,72 @@ package com.parkit.parkingsystem.service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.BitSet;
 
 import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
 import com.parkit.parkingsystem.model.Ticket;
 
 public class FareCalculatorService {
 
+    private static final LatencyHistogram CALCULATE_FARE = Metrics.histogram("FareCalculatorService.calculateFare");
+
+    // Hourly rate in hundredths of a cent, by ParkingType ordinal then discount tier (0 = full price, 1 = discounted),
+    // so a price is one multiply and one integer division with no rounding error
+    private static final long[][] RATES = new long[ParkingType.values().length][2];
+    private static final long MINUTES_PER_HOUR_IN_CENT_HUNDREDTHS = 60 * 100;
+    private static final long HALF_CENT_IN_CENT_HUNDREDTHS = MINUTES_PER_HOUR_IN_CENT_HUNDREDTHS / 2;
+
+    // Discounted fares land on exact half cents every few minutes. They used to be priced in doubles, which put
+    // some of those ties just under the half, and rounded them down; they still are. By ParkingType ordinal, the
+    // durations up to TIE_TABLE_MINUTES whose tie rounds down; longer ties are priced the old way
+    private static final int TIE_TABLE_MINUTES = 100000;
+    private static final BitSet[] TIES_ROUNDED_DOWN = new BitSet[ParkingType.values().length];
+    private static final double[] RATES_PER_HOUR = new double[ParkingType.values().length];
+
+    static {
+        for (ParkingType parkingType : ParkingType.values()) {
+            long centsPerHour;
+            switch (parkingType) {
+                case CAR: {
+                    centsPerHour = Fare.CAR_RATE_CENTS_PER_HOUR;
+                    RATES_PER_HOUR[parkingType.ordinal()] = Fare.CAR_RATE_PER_HOUR;
+                    break;
+                }
+                case BIKE: {
+                    centsPerHour = Fare.BIKE_RATE_CENTS_PER_HOUR;
+                    RATES_PER_HOUR[parkingType.ordinal()] = Fare.BIKE_RATE_PER_HOUR;
+                    break;
+                }
+                default: throw new IllegalArgumentException("Unknown Parking Type");
+            }
+            RATES[parkingType.ordinal()][0] = centsPerHour * 100;
+            RATES[parkingType.ordinal()][1] = centsPerHour * (100 - Fare.RECURRING_USER_DISCOUNT_PERCENT);
+            BitSet tiesRoundedDown = new BitSet(TIE_TABLE_MINUTES + 1);
+            for (int minutes = (int) Fare.FREE_MINUTES + 1; minutes <= TIE_TABLE_MINUTES; minutes++) {
+                long cents = halfUpCents(minutes * RATES[parkingType.ordinal()][1]);
+                if (isTie(minutes * RATES[parkingType.ordinal()][1]) && discountedCentsInDoubles(parkingType, minutes) < cents) {
+                    tiesRoundedDown.set(minutes);
+                }
+            }
+            TIES_ROUNDED_DOWN[parkingType.ordinal()] = tiesRoundedDown;
+        }
+    }
+
     public void calculateFare(Ticket ticket, boolean discount) {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            price(ticket, discount);
+            succeeded = true;
+        } finally {
+            CALCULATE_FARE.recordSince(start, succeeded);
+        }
+    }
+
+    private void price(Ticket ticket, boolean discount) {
         if( (ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime())) ) {
             throw new IllegalArgumentException("Out time provided is incorrect:"+ticket.getOutTime().toString());
         }
@@ -20,42 +79,41 @@ public class FareCalculatorService {
         // Calculating the duration in minutes
         long durationInMinutes = outTimeInMinutes - inTimeInMinutes;
 
-        // Setting price to 0 if vehicle stays less than 30 minutes
-        if(durationInMinutes <= 30) {
-        	ticket.setPrice(0);
+        long cents = calculateFareCents(ticket.getParkingSpot().getParkingType(), durationInMinutes, discount);
+        ticket.setPrice(cents / 100.0);
+    }
+
+    // Price in cents, rounded half up except for the discounted ties above; stays up to Fare.FREE_MINUTES are free.
+    // Allocates nothing for stays up to TIE_TABLE_MINUTES, so it can be used to recompute fares in bulk.
+    public static long calculateFareCents(ParkingType parkingType, long durationInMinutes, boolean discount) {
+        if(durationInMinutes <= Fare.FREE_MINUTES) {
+            return 0;
         }
-        
-        // Calculating price with discount -> discount @param = true
-        else {
-	        if(discount) {
-	        	switch (ticket.getParkingSpot().getParkingType()) {
-	            case CAR: {
-	                ticket.setPrice(round((durationInMinutes) * Fare.CAR_RATE_PER_HOUR * 0.95 / 60, 2));
-	                break;
-	            }
-	            case BIKE: {
-	                ticket.setPrice(round((durationInMinutes) * Fare.BIKE_RATE_PER_HOUR * 0.95 / 60, 2));
-	                break;
-	            }
-	            default: throw new IllegalArgumentException("Unknown Parking Type");
-	        	}
-	        }
-	        
-	        // Calculating regular price without discount -> discount @param = false
-	        else {
-		        switch (ticket.getParkingSpot().getParkingType()) {
-		        case CAR: {
-		            ticket.setPrice(round((durationInMinutes) * Fare.CAR_RATE_PER_HOUR / 60, 2));
-		            break;
-		        }
-		        case BIKE: {
-		            ticket.setPrice(round((durationInMinutes)* Fare.BIKE_RATE_PER_HOUR / 60, 2));
-		            break;
-		        }
-		        default: throw new IllegalArgumentException("Unknown Parking Type");
-		    	}
-	        }
+        long centHundredths = durationInMinutes * RATES[parkingType.ordinal()][discount ? 1 : 0];
+        long cents = halfUpCents(centHundredths);
+        if (discount && isTie(centHundredths)) {
+            boolean roundedDown = durationInMinutes <= TIE_TABLE_MINUTES
+                    ? TIES_ROUNDED_DOWN[parkingType.ordinal()].get((int) durationInMinutes)
+                    : discountedCentsInDoubles(parkingType, durationInMinutes) < cents;
+            if (roundedDown) {
+                cents--;
+            }
         }
+        return cents;
+    }
+
+    // Takes cent hundredths per hour times minutes
+    private static long halfUpCents(long centHundredths) {
+        return (centHundredths + HALF_CENT_IN_CENT_HUNDREDTHS) / MINUTES_PER_HOUR_IN_CENT_HUNDREDTHS;
+    }
+
+    private static boolean isTie(long centHundredths) {
+        return centHundredths % MINUTES_PER_HOUR_IN_CENT_HUNDREDTHS == HALF_CENT_IN_CENT_HUNDREDTHS;
+    }
+
+    // The discounted fare as it was computed before fares went to integer cents
+    private static long discountedCentsInDoubles(ParkingType parkingType, long durationInMinutes) {
+        return Math.round(round((durationInMinutes) * RATES_PER_HOUR[parkingType.ordinal()] * 0.95 / 60, 2) * 100);
     }
     
     // Method to round to two decimals
@@ -71,4 +129,4 @@ public class FareCalculatorService {
     	calculateFare(ticket, false);
     }
     
-}
\ No newline at end of file
+}
@@ -3,8 +3,8 @@ package com.parkit.parkingsystem.service;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.Storage;
+import com.parkit.parkingsystem.metrics.Metrics;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 
 public class InteractiveShell {
@@ -17,9 +17,10 @@ public class InteractiveShell {
 
         boolean continueApp = true;
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        Storage storage = Storage.fromSystemProperties();
+        Metrics.startReportingFromSystemProperties();
+        ParkingService parkingService = new ParkingService(inputReaderUtil, storage.getParkingSpotStore(),
+                storage.getTicketStore(), storage.getParkingTransactionDAO());
 
         while(continueApp){
             loadMenu();
@@ -35,6 +36,8 @@ public class InteractiveShell {
                 }
                 case 3: {
                     System.out.println("Exiting from the system!");
+                    storage.close();
+                    Metrics.stopReporting();
                     continueApp = false;
                     break;
                 }
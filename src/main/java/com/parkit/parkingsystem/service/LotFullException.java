@@ -0,0 +1,11 @@
+package com.parkit.parkingsystem.service;
+
+// No free spot of the requested type, as opposed to a failure of the stores
+public class LotFullException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public LotFullException() {
+        super("Error fetching parking number from DB. Parking slots might be full");
+    }
+}
@@ -1,9 +1,16 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.audit.AuditLog;
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
@@ -11,46 +18,248 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.Date;
 
+// enter() and exit() hold no state between calls and are safe to call from many gate threads at once.
+// The process* methods are the console front end used by InteractiveShell.
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
-    private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    // Behind processIncomingVehicle and processExitingVehicle, without the time spent waiting for console input
+    private static final LatencyHistogram ENTER = Metrics.histogram("ParkingService.enter");
+    private static final LatencyHistogram EXIT = Metrics.histogram("ParkingService.exit");
 
-    private InputReaderUtil inputReaderUtil;
-    private ParkingSpotDAO parkingSpotDAO;
-    private  TicketDAO ticketDAO;
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private final AuditLog auditLog = AuditLog.shared();
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+    private final InputReaderUtil inputReaderUtil;
+    private final ParkingSpotStore parkingSpotStore;
+    private final TicketStore ticketStore;
+    // When set, entries and exits run as one transaction each unless tickets are written behind
+    private final ParkingTransactionDAO parkingTransactionDAO;
+    // When set, walk-ins leave the spots booked ahead free, see ReservationBook
+    private final ReservationBook reservationBook;
+    // Tells this lot's audit events from the others'
+    private final String facilityId;
+
+    public ParkingService(ParkingSpotStore parkingSpotStore, TicketStore ticketStore){
+        this(null, parkingSpotStore, ticketStore);
+    }
+
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotStore parkingSpotStore, TicketStore ticketStore){
+        this(inputReaderUtil, parkingSpotStore, ticketStore, null);
+    }
+
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotStore parkingSpotStore, TicketStore ticketStore, ParkingTransactionDAO parkingTransactionDAO){
+        this(inputReaderUtil, parkingSpotStore, ticketStore, parkingTransactionDAO, null);
+    }
+
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotStore parkingSpotStore, TicketStore ticketStore, ParkingTransactionDAO parkingTransactionDAO, ReservationBook reservationBook){
+        this(inputReaderUtil, parkingSpotStore, ticketStore, parkingTransactionDAO, reservationBook, FacilityRegistry.DEFAULT_FACILITY);
+    }
+
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotStore parkingSpotStore, TicketStore ticketStore, ParkingTransactionDAO parkingTransactionDAO, ReservationBook reservationBook, String facilityId){
         this.inputReaderUtil = inputReaderUtil;
-        this.parkingSpotDAO = parkingSpotDAO;
-        this.ticketDAO = ticketDAO;
+        this.parkingSpotStore = parkingSpotStore;
+        this.ticketStore = ticketStore;
+        this.parkingTransactionDAO = parkingTransactionDAO;
+        this.reservationBook = reservationBook;
+        this.facilityId = facilityId;
     }
 
-    public Ticket processIncomingVehicle() throws Exception {
+    public String getFacilityId(){
+        return facilityId;
+    }
+
+    private boolean useTransactions(){
+        return parkingTransactionDAO != null && parkingTransactionDAO.isUsable();
+    }
+
+    public EntryResult enter(String vehicleRegNumber, ParkingType parkingType) throws Exception {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            EntryResult entry = openTicket(vehicleRegNumber, parkingType);
+            succeeded = true;
+            auditLog.spot(facilityId, entry.getParkingSpot());
+            auditLog.entry(facilityId, entry.getTicket());
+            return entry;
+        } finally {
+            ENTER.recordSince(start, succeeded);
+        }
+    }
+
+    private EntryResult openTicket(String vehicleRegNumber, ParkingType parkingType) throws Exception {
+        if(vehicleRegNumber == null || vehicleRegNumber.trim().length() == 0){
+            throw new IllegalArgumentException("Vehicle registration number is required");
+        }
+        if(parkingType == null){
+            throw new IllegalArgumentException("Parking type is required");
+        }
+        Date inTime = new Date();
+        if(reservationBook == null){
+            return issueTicket(vehicleRegNumber, parkingType, inTime);
+        }
+        Reservation reservation = reservationBook.findArrival(vehicleRegNumber, parkingType, inTime.getTime());
+        if(reservation == null){
+            return reservationBook.admitWalkIn(parkingType, inTime.getTime(), () -> issueTicket(vehicleRegNumber, parkingType, inTime));
+        }
+        // The spot is taken before the booking is let go, so walk-ins never see it free in between
+        EntryResult entry = issueTicket(vehicleRegNumber, parkingType, inTime);
+        reservationBook.arrived(reservation);
+        return entry;
+    }
+
+    private EntryResult issueTicket(String vehicleRegNumber, ParkingType parkingType, Date inTime) throws Exception {
+        if(useTransactions()){
+            EntryResult entry;
+            try{
+                entry = parkingTransactionDAO.enter(vehicleRegNumber, parkingType, inTime);
+            }catch(Exception e){
+                throw alreadyParkedOr(vehicleRegNumber, e);
+            }
+            if(entry == null){
+                throw lotFull(parkingType);
+            }
+            return entry;
+        }
+        ParkingSpot parkingSpot = claimParkingSpot(parkingType);
         try{
-            ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
             Ticket ticket = new Ticket();
-            if(parkingSpot !=null && parkingSpot.getId() > 0){
-                String vehicleRegNumber = getVehichleRegNumber();
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);
-
-                Date inTime = new Date();
-                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(0);
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
-                ticketDAO.saveTicket(ticket);
-                if(ticketDAO.getNbTicket(vehicleRegNumber) > 1) {
-                	System.out.println("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de 5%.");
-                }
-                System.out.println("Generated Ticket and saved in DB");
-                System.out.println("Please park your vehicle in spot number:"+parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+inTime);
+            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+            ticket.setParkingSpot(parkingSpot);
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(0);
+            ticket.setInTime(inTime);
+            ticket.setOutTime(null);
+            if(!ticketStore.saveTicket(ticket)){
+                throw alreadyParkedOr(vehicleRegNumber, new IllegalStateException("Unable to save ticket for vehicle number:" + vehicleRegNumber));
+            }
+            boolean recurringUser = ticketStore.getNbTicket(vehicleRegNumber) > 1;
+            return new EntryResult(ticket, recurringUser);
+        }catch(Exception e){
+            releaseParkingSpot(parkingSpot);
+            throw e;
+        }
+    }
+
+    // A failed entry is the vehicle already being in the lot when it has an open ticket; otherwise the stores failed.
+    // Only looked up once the entry has failed, so entries that go through pay nothing for it
+    private Exception alreadyParkedOr(String vehicleRegNumber, Exception failure) {
+        try{
+            if(ticketStore.getTicket(vehicleRegNumber) != null){
+                return new AlreadyParkedException(vehicleRegNumber);
             }
+        }catch(Exception e){
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+
+    public ExitResult exit(String vehicleRegNumber) throws Exception {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            ExitResult exit = closeTicket(vehicleRegNumber);
+            succeeded = true;
+            Ticket ticket = exit.getTicket();
+            auditLog.fare(facilityId, ticket);
+            if (exit.isUpdated()) {
+                auditLog.exit(facilityId, ticket);
+                auditLog.spot(facilityId, ticket.getParkingSpot());
+            }
+            return exit;
+        } finally {
+            EXIT.recordSince(start, succeeded);
+        }
+    }
+
+    private ExitResult closeTicket(String vehicleRegNumber) throws Exception {
+        if(useTransactions()){
+            ExitResult exit = parkingTransactionDAO.exit(vehicleRegNumber, new Date(), fareCalculatorService::calculateFare);
+            if(exit == null){
+                throw new IllegalArgumentException("No ticket found for vehicle number:" + vehicleRegNumber);
+            }
+            return exit;
+        }
+        Ticket ticket = ticketStore.getTicket(vehicleRegNumber);
+        if(ticket == null){
+            throw new IllegalArgumentException("No ticket found for vehicle number:" + vehicleRegNumber);
+        }
+        ticket.setOutTime(new Date());
+        boolean discount = ticketStore.getNbTicket(vehicleRegNumber) > 1;
+        fareCalculatorService.calculateFare(ticket, discount);
+        boolean updated = ticketStore.updateTicket(ticket);
+        if(updated) {
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            parkingSpot.setAvailable(true);
+            parkingSpotStore.updateParking(parkingSpot);
+        }
+        return new ExitResult(ticket, discount, updated);
+    }
+
+    // Fare the vehicle would pay if it left now; nothing is stored
+    public Ticket quote(String vehicleRegNumber) throws Exception {
+        Ticket open = ticketStore.getTicket(vehicleRegNumber);
+        if(open == null){
+            throw new IllegalArgumentException("No ticket found for vehicle number:" + vehicleRegNumber);
+        }
+        Ticket ticket = new Ticket();
+        ticket.setId(open.getId());
+        ticket.setParkingSpot(open.getParkingSpot());
+        ticket.setVehicleRegNumber(open.getVehicleRegNumber());
+        ticket.setInTime(open.getInTime());
+        ticket.setOutTime(new Date());
+        fareCalculatorService.calculateFare(ticket, ticketStore.getNbTicket(vehicleRegNumber) > 1);
+        return ticket;
+    }
+
+    public int getFreeCount(ParkingType parkingType) {
+        return parkingSpotStore.getFreeCount(parkingType);
+    }
+
+    public int getSpotCount(ParkingType parkingType) {
+        return parkingSpotStore.getSpotCount(parkingType);
+    }
+
+    public int getLevel(int parkingNumber) {
+        return parkingSpotStore.getLevel(parkingNumber);
+    }
+
+    public Reservation reserve(String vehicleRegNumber, ParkingType parkingType, Date start, Date end) throws Exception {
+        if(vehicleRegNumber == null || vehicleRegNumber.trim().length() == 0){
+            throw new IllegalArgumentException("Vehicle registration number is required");
+        }
+        return reservations().reserve(vehicleRegNumber, parkingType, start.getTime(), end.getTime(), System.currentTimeMillis());
+    }
+
+    public boolean cancelReservation(int reservationId) {
+        return reservations().cancel(reservationId);
+    }
+
+    // Spots of the type that can still be booked for the whole window
+    public int getReservableCount(ParkingType parkingType, Date start, Date end) {
+        return reservations().getAvailableCount(parkingType, start.getTime(), end.getTime(), System.currentTimeMillis());
+    }
+
+    private ReservationBook reservations() {
+        if(reservationBook == null){
+            throw new IllegalStateException("Reservations are not taken here");
+        }
+        return reservationBook;
+    }
+
+    public Ticket processIncomingVehicle() throws Exception {
+        try{
+            ParkingType parkingType = getVehichleType();
+            String vehicleRegNumber = getVehichleRegNumber();
+            EntryResult entry = enter(vehicleRegNumber, parkingType);
+            Ticket ticket = entry.getTicket();
+            if(entry.isRecurringUser()) {
+            	System.out.println("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de 5%.");
+            }
+            System.out.println("Generated Ticket and saved in DB");
+            System.out.println("Please park your vehicle in spot number:"+ticket.getParkingSpot().getId());
+            System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+ticket.getInTime());
             return ticket;
         }catch(Exception e){
             logger.error("Unable to process incoming vehicle",e);
@@ -58,30 +267,45 @@ public class ParkingService {
         }
     }
 
+    // Gives back a spot claimed for an entry that could not be completed
+    private void releaseParkingSpot(ParkingSpot parkingSpot) {
+        if(parkingSpot != null && !parkingSpot.isAvailable()){
+            parkingSpot.setAvailable(true);
+            parkingSpotStore.updateParking(parkingSpot);
+        }
+    }
+
     public String getVehichleRegNumber() throws Exception {
         System.out.println("Please type the vehicle registration number and press enter key");
         return inputReaderUtil.readVehicleRegistrationNumber();
     }
 
+    // Treats the vehicle as a walk-in, so spots held for reservations are not handed out
     public ParkingSpot getNextParkingNumberIfAvailable() throws Exception{
-        int parkingNumber=0;
-        ParkingSpot parkingSpot = null;
         try{
             ParkingType parkingType = getVehichleType();
-            parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
-            if(parkingNumber > 0){
-                parkingSpot = new ParkingSpot(parkingNumber,parkingType, true);
-            }else{
-                throw new Exception("Error fetching parking number from DB. Parking slots might be full");
+            if(reservationBook == null){
+                return claimParkingSpot(parkingType);
             }
+            return reservationBook.admitWalkIn(parkingType, System.currentTimeMillis(), () -> claimParkingSpot(parkingType));
         }catch(IllegalArgumentException ie){
             logger.error("Error parsing user input for type of vehicle", ie);
             throw ie;
-        }catch(Exception e){
-            logger.error("Error fetching next available parking slot", e);
-            throw e;
         }
-        return parkingSpot;
+    }
+
+    private ParkingSpot claimParkingSpot(ParkingType parkingType) throws Exception {
+        int parkingNumber = parkingSpotStore.claimNextAvailableSlot(parkingType);
+        if(parkingNumber > 0){
+            return new ParkingSpot(parkingNumber, parkingType, false);
+        }
+        throw lotFull(parkingType);
+    }
+
+    // A full lot is an everyday answer at a busy gate, not an error; callers decide what to report
+    private static Exception lotFull(ParkingType parkingType) {
+        logger.debug("No " + parkingType + " spot available");
+        return new LotFullException();
     }
 
     private ParkingType getVehichleType(){
@@ -108,20 +332,11 @@ public class ParkingService {
     	Ticket ticket;
         try{
             String vehicleRegNumber = getVehichleRegNumber();
-            ticket = ticketDAO.getTicket(vehicleRegNumber);
-            Date outTime = new Date();
-            ticket.setOutTime(outTime);
-            if(ticketDAO.getNbTicket(vehicleRegNumber) > 1) {
-            	fareCalculatorService.calculateFare(ticket, true);
-            }else{
-            	fareCalculatorService.calculateFare(ticket);
-            }
-            if(ticketDAO.updateTicket(ticket)) {
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
+            ExitResult exit = exit(vehicleRegNumber);
+            ticket = exit.getTicket();
+            if(exit.isUpdated()) {
                 System.out.println("Please pay the parking fare:" + ticket.getPrice());
-                System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + outTime);
+                System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + ticket.getOutTime());
             }else{
                 System.out.println("Unable to update ticket information. Error occurred");
             }
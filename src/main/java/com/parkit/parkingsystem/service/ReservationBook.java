@@ -0,0 +1,277 @@
+package com.parkit.parkingsystem.service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotStore;
+import com.parkit.parkingsystem.dao.ReservationTimeline;
+import com.parkit.parkingsystem.model.Reservation;
+
+// Spots booked ahead for a time window, per ParkingType, each type on a ReservationTimeline of its own.
+// Windows are widened to whole slots of the timeline, 15 minutes by default.
+// A booking is accepted while, at every moment of its window, fewer spots of the type are booked than exist;
+// one starting within the hold time also needs a spot free now that no other booking holds.
+// Walk-ins are turned away rather than take a spot held for a booking that starts within the hold time or has
+// started and not arrived yet, since a walk-in may stay any length of time. A booked vehicle may arrive from
+// the early arrival time before its start until its end; it then parks like any other and its booking is done.
+// Bookings are held in memory and are lost on a restart.
+public class ReservationBook {
+
+    private static final Logger logger = LogManager.getLogger("ReservationBook");
+
+    public static final String SLOT_MINUTES_PROPERTY = "parkit.reservation.slotMinutes";
+    public static final String HORIZON_DAYS_PROPERTY = "parkit.reservation.horizonDays";
+    public static final String HOLD_MINUTES_PROPERTY = "parkit.reservation.holdMinutes";
+    public static final String EARLY_ARRIVAL_MINUTES_PROPERTY = "parkit.reservation.earlyArrivalMinutes";
+    public static final int DEFAULT_SLOT_MINUTES = 15;
+    public static final int DEFAULT_HORIZON_DAYS = 30;
+    public static final int DEFAULT_HOLD_MINUTES = 60;
+    public static final int DEFAULT_EARLY_ARRIVAL_MINUTES = 15;
+
+    // How often timelines start over from the current time, dropping the bookings that have ended
+    private static final long REBUILD_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final ParkingSpotStore parkingSpotStore;
+    private final long slotMillis;
+    private final long horizonMillis;
+    private final long holdMillis;
+    private final long earlyArrivalMillis;
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final Map<ParkingType, Lane> lanes = new EnumMap<>(ParkingType.class);
+
+    public ReservationBook(ParkingSpotStore parkingSpotStore, int slotMinutes, int horizonDays, int holdMinutes,
+                           int earlyArrivalMinutes) {
+        if (slotMinutes <= 0 || horizonDays <= 0 || holdMinutes < 0 || earlyArrivalMinutes < 0) {
+            throw new IllegalArgumentException("Invalid reservation settings");
+        }
+        this.parkingSpotStore = parkingSpotStore;
+        this.slotMillis = TimeUnit.MINUTES.toMillis(slotMinutes);
+        this.horizonMillis = TimeUnit.DAYS.toMillis(horizonDays);
+        this.holdMillis = TimeUnit.MINUTES.toMillis(holdMinutes);
+        this.earlyArrivalMillis = TimeUnit.MINUTES.toMillis(earlyArrivalMinutes);
+        for (ParkingType parkingType : ParkingType.values()) {
+            lanes.put(parkingType, new Lane());
+        }
+    }
+
+    public static ReservationBook fromSystemProperties(ParkingSpotStore parkingSpotStore) {
+        return new ReservationBook(parkingSpotStore,
+                Integer.getInteger(SLOT_MINUTES_PROPERTY, DEFAULT_SLOT_MINUTES),
+                Integer.getInteger(HORIZON_DAYS_PROPERTY, DEFAULT_HORIZON_DAYS),
+                Integer.getInteger(HOLD_MINUTES_PROPERTY, DEFAULT_HOLD_MINUTES),
+                Integer.getInteger(EARLY_ARRIVAL_MINUTES_PROPERTY, DEFAULT_EARLY_ARRIVAL_MINUTES));
+    }
+
+    // Books a spot for [startMillis, endMillis); throws LotFullException when none is left for the whole window
+    public Reservation reserve(String vehicleRegNumber, ParkingType parkingType, long startMillis, long endMillis,
+                               long nowMillis) throws LotFullException {
+        if (endMillis <= startMillis || endMillis <= nowMillis) {
+            throw new IllegalArgumentException("A reservation has to end after it starts and in the future");
+        }
+        if (endMillis > nowMillis + horizonMillis) {
+            throw new IllegalArgumentException("Reservations are taken up to " + TimeUnit.MILLISECONDS.toDays(horizonMillis)
+                    + " days ahead");
+        }
+        Lane lane = lanes.get(parkingType);
+        // One starting within the hold time is checked against the free spots, so walk-ins must not take one
+        // meanwhile; later ones do not hold anything yet and need not wait for them
+        Lock admission = startMillis < nowMillis + holdMillis ? lane.admission.writeLock() : null;
+        if (admission != null) {
+            admission.lock();
+        }
+        try {
+            synchronized (lane) {
+                ReservationTimeline timeline = lane.timeline(nowMillis);
+                if (timeline.max(startMillis, endMillis) >= parkingSpotStore.getSpotCount(parkingType)) {
+                    throw new LotFullException();
+                }
+                if (startMillis < nowMillis + holdMillis
+                        && parkingSpotStore.getFreeCount(parkingType) <= timeline.max(nowMillis, nowMillis + holdMillis)) {
+                    throw new LotFullException();
+                }
+                Reservation reservation = new Reservation(lastId.incrementAndGet(), vehicleRegNumber, parkingType,
+                        Math.max(startMillis, nowMillis), endMillis);
+                lane.add(reservation);
+                logger.info("Reserved a " + parkingType + " spot for vehicle " + vehicleRegNumber + " from "
+                        + reservation.getStart() + " to " + reservation.getEnd());
+                return reservation;
+            }
+        } finally {
+            if (admission != null) {
+                admission.unlock();
+            }
+        }
+    }
+
+    // Returns false when there is no such booking, e.g. it was used or has ended
+    public boolean cancel(int reservationId) {
+        for (Lane lane : lanes.values()) {
+            synchronized (lane) {
+                Reservation reservation = lane.byId.get(reservationId);
+                if (reservation != null) {
+                    lane.remove(reservation);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Spots of the type left to book for the whole of [startMillis, endMillis), by the rules of reserve
+    public int getAvailableCount(ParkingType parkingType, long startMillis, long endMillis, long nowMillis) {
+        Lane lane = lanes.get(parkingType);
+        synchronized (lane) {
+            ReservationTimeline timeline = lane.timeline(nowMillis);
+            int available = parkingSpotStore.getSpotCount(parkingType) - timeline.max(startMillis, endMillis);
+            if (startMillis < nowMillis + holdMillis) {
+                available = Math.min(available, parkingSpotStore.getFreeCount(parkingType)
+                        - timeline.max(nowMillis, nowMillis + holdMillis));
+            }
+            return Math.max(0, available);
+        }
+    }
+
+    // Spots of the type walk-ins must leave free at this moment
+    public int getHeldCount(ParkingType parkingType, long nowMillis) {
+        Lane lane = lanes.get(parkingType);
+        if (lane.live == 0) {
+            return 0;
+        }
+        synchronized (lane) {
+            return lane.timeline(nowMillis).max(nowMillis, nowMillis + holdMillis);
+        }
+    }
+
+    // The vehicle's booking it may park on now, or null
+    public Reservation findArrival(String vehicleRegNumber, ParkingType parkingType, long nowMillis) {
+        Lane lane = lanes.get(parkingType);
+        if (lane.live == 0) {
+            return null;
+        }
+        synchronized (lane) {
+            List<Reservation> reservations = lane.byPlate.get(vehicleRegNumber);
+            if (reservations != null) {
+                for (Reservation reservation : reservations) {
+                    if (reservation.getStartMillis() - earlyArrivalMillis <= nowMillis && nowMillis < reservation.getEndMillis()) {
+                        return reservation;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    // Marks the booking used once its vehicle has a spot, which it then occupies like a walk-in
+    public void arrived(Reservation reservation) {
+        Lane lane = lanes.get(reservation.getParkingType());
+        synchronized (lane) {
+            if (lane.byId.containsKey(reservation.getId())) {
+                lane.remove(reservation);
+            }
+        }
+    }
+
+    // Runs the entry of a vehicle without a booking, unless it would take a spot held for one. While no spot of
+    // the type is held, however many are booked further ahead, walk-ins run side by side; otherwise they go one
+    // at a time, so two of them cannot both see the last spot that is not held. Either way a booking starting
+    // within the hold time waits for them, and they for it. Booked vehicles do not wait on this
+    public <T> T admitWalkIn(ParkingType parkingType, long nowMillis, Callable<T> entry) throws Exception {
+        Lane lane = lanes.get(parkingType);
+        Lock shared = lane.admission.readLock();
+        shared.lock();
+        try {
+            if (getHeldCount(parkingType, nowMillis) == 0) {
+                return entry.call();
+            }
+        } finally {
+            shared.unlock();
+        }
+        Lock exclusive = lane.admission.writeLock();
+        exclusive.lock();
+        try {
+            if (parkingSpotStore.getFreeCount(parkingType) <= getHeldCount(parkingType, nowMillis)) {
+                throw new LotFullException();
+            }
+            return entry.call();
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Lane lane : lanes.values()) {
+            size += lane.live;
+        }
+        return size;
+    }
+
+    // Bookings of one type; guarded by itself
+    private final class Lane {
+        // Walk-ins share it while nothing is held; held spots and the bookings that hold them take it alone
+        private final ReadWriteLock admission = new ReentrantReadWriteLock();
+        private final Map<Integer, Reservation> byId = new HashMap<>();
+        private final Map<String, List<Reservation>> byPlate = new HashMap<>();
+        // Read without the lock to skip all of it while nothing is booked
+        private volatile int live;
+        private ReservationTimeline timeline;
+
+        // The timeline, rebuilt from the bookings not yet ended once a day. It covers the horizon from any
+        // time until the next rebuild
+        ReservationTimeline timeline(long nowMillis) {
+            if (timeline == null || nowMillis - timeline.getOriginMillis() >= REBUILD_MILLIS) {
+                long origin = Math.floorDiv(nowMillis, slotMillis) * slotMillis;
+                timeline = new ReservationTimeline(origin, slotMillis,
+                        (int) ((horizonMillis + REBUILD_MILLIS) / slotMillis) + 1);
+                Iterator<Reservation> reservations = byId.values().iterator();
+                List<Reservation> ended = new ArrayList<>();
+                while (reservations.hasNext()) {
+                    Reservation reservation = reservations.next();
+                    if (reservation.getEndMillis() <= origin) {
+                        ended.add(reservation);
+                    } else {
+                        timeline.add(reservation.getStartMillis(), reservation.getEndMillis(), 1);
+                    }
+                }
+                for (Reservation reservation : ended) {
+                    remove(reservation);
+                }
+            }
+            return timeline;
+        }
+
+        void add(Reservation reservation) {
+            byId.put(reservation.getId(), reservation);
+            byPlate.computeIfAbsent(reservation.getVehicleRegNumber(), plate -> new ArrayList<>(1)).add(reservation);
+            timeline.add(reservation.getStartMillis(), reservation.getEndMillis(), 1);
+            live = byId.size();
+        }
+
+        void remove(Reservation reservation) {
+            byId.remove(reservation.getId());
+            List<Reservation> reservations = byPlate.get(reservation.getVehicleRegNumber());
+            reservations.remove(reservation);
+            if (reservations.isEmpty()) {
+                byPlate.remove(reservation.getVehicleRegNumber());
+            }
+            if (timeline != null) {
+                timeline.add(reservation.getStartMillis(), reservation.getEndMillis(), -1);
+            }
+            live = byId.size();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.parkit.parkingsystem.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.RollupBuffer;
+
+// Adds the tickets closed before the rollup tables existed (OUT_TIME before ROLLUP_SINCE) to the hourly and daily
+// rollups. Tickets are streamed in ID order and summed per hour and day, one chunk at a time; each chunk's rollup
+// updates and the new LAST_TICKET_ID are committed together, so a stopped run resumes after the last committed
+// chunk without counting any ticket twice.
+public class RollupBackfillJob {
+
+    private static final Logger logger = LogManager.getLogger("RollupBackfillJob");
+
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int chunkSize;
+
+    public RollupBackfillJob(DataBaseConfig dataBaseConfig) {
+        this(dataBaseConfig, DEFAULT_CHUNK_SIZE);
+    }
+
+    public RollupBackfillJob(DataBaseConfig dataBaseConfig, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.chunkSize = chunkSize;
+    }
+
+    // Returns the number of tickets added to the rollups by this run
+    public long run() throws Exception {
+        long start = System.nanoTime();
+        long rolledUp = 0;
+        Connection readCon = null;
+        Connection writeCon = null;
+        try {
+            // A streaming result set keeps its connection busy, so writes go through a second one
+            readCon = dataBaseConfig.getConnection();
+            writeCon = dataBaseConfig.getConnection();
+            writeCon.setAutoCommit(false);
+            PreparedStatement state = writeCon.prepareStatement(DBConstants.GET_ROLLUP_BACKFILL);
+            //ROLLUP_SINCE, LAST_TICKET_ID
+            ResultSet rs = state.executeQuery();
+            if (!rs.next()) {
+                throw new IllegalStateException("No rollup_backfill row, run the V4__ticket_rollup.sql migration first");
+            }
+            Timestamp since = rs.getTimestamp(1);
+            int lastId = rs.getInt(2);
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(state);
+            if (lastId > 0) {
+                logger.info("Resuming rollup backfill after ticket " + lastId);
+            }
+
+            PreparedStatement query = readCon.prepareStatement(DBConstants.GET_TICKETS_FOR_ROLLUP_BACKFILL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Makes MySQL stream rows instead of loading the whole history in memory
+            query.setFetchSize(Integer.MIN_VALUE);
+            query.setTimestamp(1, since);
+            query.setInt(2, lastId);
+            ResultSet tickets = query.executeQuery();
+            PreparedStatement checkpoint = writeCon.prepareStatement(DBConstants.UPDATE_ROLLUP_BACKFILL);
+            RollupBuffer rollups = new RollupBuffer();
+            boolean more = true;
+            while (more) {
+                int size = 0;
+                int chunkLastId = lastId;
+                while (size < chunkSize && (more = tickets.next())) {
+                    //ID, OUT_TIME, PRICE, TYPE
+                    chunkLastId = tickets.getInt(1);
+                    String type = tickets.getString(4);
+                    try {
+                        rollups.add(tickets.getTimestamp(2).getTime(), ParkingType.valueOf(type), 1,
+                                Math.round(tickets.getDouble(3) * 100));
+                    } catch (IllegalArgumentException | NullPointerException e) {
+                        logger.error("Ticket " + chunkLastId + " has unknown parking type " + type + ", not rolled up");
+                    }
+                    size++;
+                }
+                if (size == 0) {
+                    break;
+                }
+                rollups.writeTo(dataBaseConfig, writeCon);
+                checkpoint.setInt(1, chunkLastId);
+                checkpoint.setInt(2, lastId);
+                if (checkpoint.executeUpdate() != 1) {
+                    writeCon.rollback();
+                    throw new IllegalStateException("Rollup backfill checkpoint moved past ticket " + lastId
+                            + ", is another backfill running?");
+                }
+                writeCon.commit();
+                lastId = chunkLastId;
+                rolledUp += size;
+                logger.info("Rolled up " + rolledUp + " tickets up to ID " + lastId + ", "
+                        + (long) (rolledUp * 1e9 / (System.nanoTime() - start)) + " tickets/s");
+            }
+            dataBaseConfig.closePreparedStatement(checkpoint);
+            dataBaseConfig.closeResultSet(tickets);
+            dataBaseConfig.closePreparedStatement(query);
+        } catch (Exception ex) {
+            logger.error("Rollup backfill stopped after " + rolledUp + " tickets, rerun to resume", ex);
+            throw ex;
+        } finally {
+            dataBaseConfig.closeConnection(writeCon);
+            dataBaseConfig.closeConnection(readCon);
+        }
+        logger.info("Rollup backfill done: " + rolledUp + " tickets in " + (System.nanoTime() - start) / 1000000 + " ms");
+        return rolledUp;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long rolledUp = new RollupBackfillJob(new DataBaseConfig()).run();
+        System.out.println("Rolled up " + rolledUp + " tickets");
+    }
+}
@@ -0,0 +1,160 @@
+package com.parkit.parkingsystem.service;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.archive.TicketArchive;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+// Moves tickets closed longer ago than the maximum age from the ticket table to the TicketArchive, so the table
+// only holds open and recent tickets. Each chunk is written to pending segments, deleted from the table in one
+// transaction and then published; pending segments left by a stopped run are published if their tickets are gone
+// from the table and discarded otherwise. Tickets the rollup backfill has not reached yet are kept until it has.
+public class TicketArchiveJob {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiveJob");
+
+    public static final String MAX_AGE_DAYS_PROPERTY = "parkit.archive.maxAgeDays";
+    public static final int DEFAULT_MAX_AGE_DAYS = 90;
+    public static final int DEFAULT_CHUNK_SIZE = 20000;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final TicketArchive archive;
+    private final long maxAgeMillis;
+    private final int chunkSize;
+
+    public TicketArchiveJob(DataBaseConfig dataBaseConfig, TicketArchive archive, long maxAgeMillis, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.dataBaseConfig = dataBaseConfig;
+        this.archive = archive;
+        this.maxAgeMillis = maxAgeMillis;
+        this.chunkSize = chunkSize;
+    }
+
+    // Returns the number of tickets moved to the archive by this run
+    public long run() throws Exception {
+        long start = System.nanoTime();
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - maxAgeMillis);
+        long archived = 0;
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            recoverPending(con);
+            int lastId = 0;
+            while (true) {
+                List<Ticket> tickets = new ArrayList<>();
+                PreparedStatement query = con.prepareStatement(DBConstants.GET_TICKETS_TO_ARCHIVE);
+                query.setTimestamp(1, cutoff);
+                query.setInt(2, lastId);
+                query.setInt(3, chunkSize);
+                ResultSet rs = query.executeQuery();
+                int read = 0;
+                while (rs.next()) {
+                    //ID, PARKING_NUMBER, TYPE, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME
+                    lastId = rs.getInt(1);
+                    read++;
+                    String type = rs.getString(3);
+                    ParkingType parkingType;
+                    try {
+                        parkingType = ParkingType.valueOf(type);
+                    } catch (IllegalArgumentException e) {
+                        logger.error("Ticket " + lastId + " has unknown parking type " + type + ", not archived");
+                        continue;
+                    }
+                    Ticket ticket = new Ticket();
+                    ticket.setId(lastId);
+                    ticket.setParkingSpot(new ParkingSpot(rs.getInt(2), parkingType, true));
+                    ticket.setVehicleRegNumber(rs.getString(4));
+                    ticket.setPrice(rs.getDouble(5));
+                    ticket.setInTime(new Date(rs.getTimestamp(6).getTime()));
+                    ticket.setOutTime(new Date(rs.getTimestamp(7).getTime()));
+                    tickets.add(ticket);
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(query);
+                con.commit();
+                if (read == 0) {
+                    break;
+                }
+                if (!tickets.isEmpty()) {
+                    archive(con, tickets);
+                    archived += tickets.size();
+                    logger.info("Archived " + archived + " tickets up to ID " + lastId + ", "
+                            + (long) (archived * 1e9 / (System.nanoTime() - start)) + " tickets/s");
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Archiving stopped after " + archived + " tickets, rerun to resume", ex);
+            throw ex;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        logger.info("Archiving done: " + archived + " tickets in " + (System.nanoTime() - start) / 1000000 + " ms");
+        return archived;
+    }
+
+    private void archive(Connection con, List<Ticket> tickets) throws Exception {
+        List<Path> pending = archive.writePending(tickets);
+        try {
+            PreparedStatement delete = con.prepareStatement(DBConstants.DELETE_ARCHIVED_TICKET);
+            for (Ticket ticket : tickets) {
+                delete.setInt(1, ticket.getId());
+                delete.addBatch();
+            }
+            delete.executeBatch();
+            dataBaseConfig.closePreparedStatement(delete);
+            con.commit();
+        } catch (Exception ex) {
+            // The commit may still have gone through; the next run sorts the pending segments out
+            con.rollback();
+            throw ex;
+        }
+        archive.publish(pending);
+    }
+
+    // A chunk's tickets are deleted all together or not at all, so one ticket per pending segment tells which happened
+    private void recoverPending(Connection con) throws Exception {
+        for (Path pending : archive.getPendingSegments()) {
+            PreparedStatement exists = con.prepareStatement(DBConstants.TICKET_EXISTS);
+            exists.setInt(1, TicketArchive.lowestTicketId(pending));
+            ResultSet rs = exists.executeQuery();
+            boolean stillInTable = rs.next() && rs.getInt(1) > 0;
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(exists);
+            List<Path> segment = Collections.singletonList(pending);
+            if (stillInTable) {
+                logger.warn("Discarding " + pending + ", its tickets were not deleted from the table");
+                archive.discard(segment);
+            } else {
+                logger.warn("Publishing " + pending + ", its tickets were already deleted from the table");
+                archive.publish(segment);
+            }
+        }
+        con.commit();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxAgeDays = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger(MAX_AGE_DAYS_PROPERTY, DEFAULT_MAX_AGE_DAYS);
+        TicketArchive archive = TicketArchive.fromSystemProperties();
+        long archived = new TicketArchiveJob(new DataBaseConfig(), archive, TimeUnit.DAYS.toMillis(maxAgeDays), DEFAULT_CHUNK_SIZE).run();
+        System.out.println("Archived " + archived + " tickets closed more than " + maxAgeDays + " days ago to " + archive.getDirectory());
+    }
+}
@@ -0,0 +1,31 @@
+package com.parkit.parkingsystem.simulation;
+
+import java.util.Random;
+
+// Shape of the gaps between arrivals and of the stays; EXPONENTIAL gaps make arrivals a Poisson process
+public enum Distribution {
+    EXPONENTIAL {
+        @Override
+        public double sample(double mean, Random random) {
+            return -mean * Math.log(1 - random.nextDouble());
+        }
+    },
+    // Long right tail: most stays are short, a few last all day
+    LOGNORMAL {
+        @Override
+        public double sample(double mean, Random random) {
+            double mu = Math.log(mean) - LOGNORMAL_SIGMA * LOGNORMAL_SIGMA / 2;
+            return Math.exp(mu + LOGNORMAL_SIGMA * random.nextGaussian());
+        }
+    },
+    CONSTANT {
+        @Override
+        public double sample(double mean, Random random) {
+            return mean;
+        }
+    };
+
+    private static final double LOGNORMAL_SIGMA = 0.8;
+
+    public abstract double sample(double mean, Random random);
+}
@@ -0,0 +1,121 @@
+package com.parkit.parkingsystem.simulation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+
+// Outcome of one TrafficSimulation run. Sustained throughput is the slowest whole second of completed entries and
+// exits, leaving out the first and last seconds; it only means the lot keeps up when the lag stays low as well.
+public class SimulationReport {
+
+    private final SimulationSettings settings;
+    private final long elapsedNanos;
+    private final long arrivals;
+    private final long skippedArrivals;
+    private final LatencyHistogram.Snapshot entries;
+    private final LatencyHistogram.Snapshot exits;
+    private final LatencyHistogram.Snapshot lag;
+    private final long allocationFailures;
+    private final long spotConflicts;
+    private final int peakOccupancy;
+    private final long[] completedPerSecond;
+
+    SimulationReport(SimulationSettings settings, long elapsedNanos, long arrivals, long skippedArrivals,
+                     LatencyHistogram.Snapshot entries, LatencyHistogram.Snapshot exits, LatencyHistogram.Snapshot lag,
+                     long allocationFailures, long spotConflicts, int peakOccupancy, AtomicLongArray completedPerSecond) {
+        this.settings = settings;
+        this.elapsedNanos = elapsedNanos;
+        this.arrivals = arrivals;
+        this.skippedArrivals = skippedArrivals;
+        this.entries = entries;
+        this.exits = exits;
+        this.lag = lag;
+        this.allocationFailures = allocationFailures;
+        this.spotConflicts = spotConflicts;
+        this.peakOccupancy = peakOccupancy;
+        this.completedPerSecond = new long[completedPerSecond.length()];
+        for (int i = 0; i < this.completedPerSecond.length; i++) {
+            this.completedPerSecond[i] = completedPerSecond.get(i);
+        }
+    }
+
+    public long getArrivals() {
+        return arrivals;
+    }
+
+    // Arrivals dropped because nearly every plate was already in the lot; raise the plate count if not small
+    public long getSkippedArrivals() {
+        return skippedArrivals;
+    }
+
+    public long getCompletedEntries() {
+        return entries.getCount() - entries.getErrors() - allocationFailures;
+    }
+
+    public long getCompletedExits() {
+        return exits.getCount() - exits.getErrors();
+    }
+
+    // Entries turned away because no spot of the type was free
+    public long getAllocationFailures() {
+        return allocationFailures;
+    }
+
+    public long getEntryErrors() {
+        return entries.getErrors();
+    }
+
+    public long getExitErrors() {
+        return exits.getErrors();
+    }
+
+    // Spots handed to a vehicle while another one was still on them; anything but 0 is a bug
+    public long getSpotConflicts() {
+        return spotConflicts;
+    }
+
+    public int getPeakOccupancy() {
+        return peakOccupancy;
+    }
+
+    public LatencyHistogram.Snapshot getEntryLatency() {
+        return entries;
+    }
+
+    public LatencyHistogram.Snapshot getExitLatency() {
+        return exits;
+    }
+
+    // How late entries and exits started compared to their schedule
+    public LatencyHistogram.Snapshot getLag() {
+        return lag;
+    }
+
+    public double getThroughputPerSecond() {
+        return (getCompletedEntries() + getCompletedExits()) * 1e9 / elapsedNanos;
+    }
+
+    public long getSustainedThroughputPerSecond() {
+        if (completedPerSecond.length <= 2) {
+            return (long) getThroughputPerSecond();
+        }
+        long slowest = Long.MAX_VALUE;
+        for (int i = 1; i < completedPerSecond.length - 1; i++) {
+            slowest = Math.min(slowest, completedPerSecond[i]);
+        }
+        return slowest;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d gates, %d + %d spots, %.0f arrivals/h x%.0f time scale for %d s%n"
+                        + "arrivals=%d skipped=%d entries=%d exits=%d lotFull=%d entryErrors=%d exitErrors=%d"
+                        + " spotConflicts=%d peakOccupancy=%d%n"
+                        + "throughput=%.1f/s sustained=%d/s%n%s%n%s%n%s",
+                settings.getGates(), settings.getCarSpots(), settings.getBikeSpots(), settings.getArrivalsPerHour(),
+                settings.getTimeScale(), settings.getDurationSeconds(),
+                arrivals, skippedArrivals, getCompletedEntries(), getCompletedExits(), allocationFailures,
+                getEntryErrors(), getExitErrors(), spotConflicts, peakOccupancy,
+                getThroughputPerSecond(), getSustainedThroughputPerSecond(), entries, exits, lag);
+    }
+}
@@ -0,0 +1,180 @@
+package com.parkit.parkingsystem.simulation;
+
+// What TrafficSimulation offers to the lot. Times are simulated: timeScale simulated seconds pass for every
+// real second, so with the default of 60 a day of traffic plays in 24 minutes. Every setting can be given
+// as a parkit.simulation.* system property.
+public class SimulationSettings {
+
+    private static final String PREFIX = "parkit.simulation.";
+
+    private int gates = 4;
+    private int plates = 10000;
+    private int carSpots = 100;
+    private int bikeSpots = 20;
+    private double bikeShare = 0.2;
+    private double arrivalsPerHour = 600;
+    private Distribution arrivalDistribution = Distribution.EXPONENTIAL;
+    private double meanStayMinutes = 90;
+    private Distribution stayDistribution = Distribution.LOGNORMAL;
+    private TrafficProfile profile = TrafficProfile.FLAT;
+    private int startHour = 7;
+    private double timeScale = 60;
+    private int durationSeconds = 60;
+    private long seed = 42;
+
+    public static SimulationSettings fromSystemProperties() {
+        SimulationSettings settings = new SimulationSettings();
+        settings.setGates(Integer.getInteger(PREFIX + "gates", settings.gates));
+        settings.setPlates(Integer.getInteger(PREFIX + "plates", settings.plates));
+        settings.setCarSpots(Integer.getInteger(PREFIX + "carSpots", settings.carSpots));
+        settings.setBikeSpots(Integer.getInteger(PREFIX + "bikeSpots", settings.bikeSpots));
+        settings.setBikeShare(doubleProperty("bikeShare", settings.bikeShare));
+        settings.setArrivalsPerHour(doubleProperty("arrivalsPerHour", settings.arrivalsPerHour));
+        settings.setArrivalDistribution(Distribution.valueOf(System.getProperty(PREFIX + "arrivalDistribution",
+                settings.arrivalDistribution.name()).toUpperCase()));
+        settings.setMeanStayMinutes(doubleProperty("meanStayMinutes", settings.meanStayMinutes));
+        settings.setStayDistribution(Distribution.valueOf(System.getProperty(PREFIX + "stayDistribution",
+                settings.stayDistribution.name()).toUpperCase()));
+        settings.setProfile(TrafficProfile.parse(System.getProperty(PREFIX + "profile")));
+        settings.setStartHour(Integer.getInteger(PREFIX + "startHour", settings.startHour));
+        settings.setTimeScale(doubleProperty("timeScale", settings.timeScale));
+        settings.setDurationSeconds(Integer.getInteger(PREFIX + "durationSeconds", settings.durationSeconds));
+        settings.setSeed(Long.getLong(PREFIX + "seed", settings.seed));
+        return settings;
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    // Threads calling ParkingService at once, each one gate taking entries and exits in turn
+    public int getGates() {
+        return gates;
+    }
+
+    public void setGates(int gates) {
+        if (gates <= 0) {
+            throw new IllegalArgumentException("At least one gate is needed: " + gates);
+        }
+        this.gates = gates;
+    }
+
+    // Distinct vehicles that can arrive; a vehicle already in the lot does not arrive again
+    public int getPlates() {
+        return plates;
+    }
+
+    public void setPlates(int plates) {
+        if (plates <= 0) {
+            throw new IllegalArgumentException("At least one plate is needed: " + plates);
+        }
+        this.plates = plates;
+    }
+
+    // Size of the lot for the backends the simulator creates; an existing database keeps its own spots
+    public int getCarSpots() {
+        return carSpots;
+    }
+
+    public void setCarSpots(int carSpots) {
+        this.carSpots = carSpots;
+    }
+
+    public int getBikeSpots() {
+        return bikeSpots;
+    }
+
+    public void setBikeSpots(int bikeSpots) {
+        this.bikeSpots = bikeSpots;
+    }
+
+    public double getBikeShare() {
+        return bikeShare;
+    }
+
+    public void setBikeShare(double bikeShare) {
+        this.bikeShare = bikeShare;
+    }
+
+    // Before the multiplier of the traffic profile
+    public double getArrivalsPerHour() {
+        return arrivalsPerHour;
+    }
+
+    public void setArrivalsPerHour(double arrivalsPerHour) {
+        this.arrivalsPerHour = arrivalsPerHour;
+    }
+
+    public Distribution getArrivalDistribution() {
+        return arrivalDistribution;
+    }
+
+    public void setArrivalDistribution(Distribution arrivalDistribution) {
+        this.arrivalDistribution = arrivalDistribution;
+    }
+
+    public double getMeanStayMinutes() {
+        return meanStayMinutes;
+    }
+
+    public void setMeanStayMinutes(double meanStayMinutes) {
+        this.meanStayMinutes = meanStayMinutes;
+    }
+
+    public Distribution getStayDistribution() {
+        return stayDistribution;
+    }
+
+    public void setStayDistribution(Distribution stayDistribution) {
+        this.stayDistribution = stayDistribution;
+    }
+
+    public TrafficProfile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(TrafficProfile profile) {
+        this.profile = profile;
+    }
+
+    // Simulated hour of the day the run starts at
+    public int getStartHour() {
+        return startHour;
+    }
+
+    public void setStartHour(int startHour) {
+        this.startHour = startHour;
+    }
+
+    public double getTimeScale() {
+        return timeScale;
+    }
+
+    public void setTimeScale(double timeScale) {
+        if (timeScale <= 0) {
+            throw new IllegalArgumentException("Time scale must be positive: " + timeScale);
+        }
+        this.timeScale = timeScale;
+    }
+
+    // Real time the traffic is offered for
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public void setDurationSeconds(int durationSeconds) {
+        if (durationSeconds <= 0) {
+            throw new IllegalArgumentException("Duration must be positive: " + durationSeconds);
+        }
+        this.durationSeconds = durationSeconds;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
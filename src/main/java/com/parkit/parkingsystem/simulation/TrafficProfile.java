@@ -0,0 +1,67 @@
+package com.parkit.parkingsystem.simulation;
+
+import java.util.Arrays;
+
+// Arrival rate multiplier for each hour of the simulated day, written as comma separated
+// <from hour>-<to hour>:<multiplier> ranges, e.g. "0-7:0.1,7-9:2.5,9-17:1,17-19:2,19-24:0.3".
+// Hours not covered by any range get a multiplier of 1.
+public class TrafficProfile {
+
+    public static final TrafficProfile FLAT = new TrafficProfile(flat());
+
+    private final double[] multipliers;
+
+    private TrafficProfile(double[] multipliers) {
+        this.multipliers = multipliers;
+    }
+
+    private static double[] flat() {
+        double[] multipliers = new double[24];
+        Arrays.fill(multipliers, 1);
+        return multipliers;
+    }
+
+    public static TrafficProfile parse(String script) {
+        double[] multipliers = flat();
+        if (script == null || script.trim().isEmpty()) {
+            return new TrafficProfile(multipliers);
+        }
+        for (String range : script.split(",")) {
+            try {
+                String[] hoursAndMultiplier = range.trim().split(":");
+                String[] hours = hoursAndMultiplier[0].split("-");
+                int from = Integer.parseInt(hours[0].trim());
+                int to = Integer.parseInt(hours[1].trim());
+                double multiplier = Double.parseDouble(hoursAndMultiplier[1].trim());
+                if (from < 0 || to > 24 || from >= to || multiplier < 0) {
+                    throw new IllegalArgumentException("Invalid traffic range " + range);
+                }
+                Arrays.fill(multipliers, from, to, multiplier);
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid traffic range " + range + ", expected <from>-<to>:<multiplier>", e);
+            }
+        }
+        return new TrafficProfile(multipliers);
+    }
+
+    // Multiplier at a time of the simulated day, in seconds since midnight; days repeat
+    public double multiplierAt(double secondOfDay) {
+        return multipliers[hourOf(secondOfDay)];
+    }
+
+    // Start of the next hour with a different multiplier, at most a day later
+    public double nextChangeAfter(double secondOfDay) {
+        int hour = hourOf(secondOfDay);
+        double dayStart = secondOfDay - ((secondOfDay % 86400) + 86400) % 86400;
+        for (int i = 1; i <= 24; i++) {
+            if (multipliers[(hour + i) % 24] != multipliers[hour]) {
+                return dayStart + (hour + i) * 3600.0;
+            }
+        }
+        return secondOfDay + 86400;
+    }
+
+    private static int hourOf(double secondOfDay) {
+        return (int) ((((secondOfDay % 86400) + 86400) % 86400) / 3600);
+    }
+}
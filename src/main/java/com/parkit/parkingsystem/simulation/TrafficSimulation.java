@@ -0,0 +1,286 @@
+package com.parkit.parkingsystem.simulation;
+
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.Storage;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.service.LotFullException;
+import com.parkit.parkingsystem.service.ParkingService;
+
+// Drives ParkingService.enter and exit the way gates of a real lot would. A generator thread schedules arrivals
+// from the arrival rate, distribution and traffic profile; each gate thread takes the next due arrival or
+// departure and runs it, and a vehicle that got a spot is scheduled to leave after a stay drawn from the stay
+// distribution. Events are run late rather than dropped when the gates cannot keep up, so the lag behind schedule
+// shows whether the lot sustains the offered traffic. Vehicles still parked at the end are driven out, unmeasured.
+public class TrafficSimulation {
+
+    private static final Logger logger = LogManager.getLogger("TrafficSimulation");
+
+    // How far ahead of time the generator schedules arrivals
+    private static final long SCHEDULE_AHEAD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long POLL_MILLIS = 50;
+    private static final int PLATE_ATTEMPTS = 8;
+
+    private final ParkingService parkingService;
+    private final SimulationSettings settings;
+    private final String[] plates;
+
+    private final DelayQueue<Event> events = new DelayQueue<>();
+    // Vehicles arriving or parked, which do not arrive again until they have left
+    private final Map<String, Boolean> busyPlates = new ConcurrentHashMap<>();
+    // Spot number to the vehicle the lot assigned it to, to catch the same spot handed out twice
+    private final Map<Integer, String> assignedSpots = new ConcurrentHashMap<>();
+    private final Map<String, Integer> parked = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram entryLatency = new LatencyHistogram("simulation.entry");
+    private final LatencyHistogram exitLatency = new LatencyHistogram("simulation.exit");
+    private final LatencyHistogram lag = new LatencyHistogram("simulation.lag");
+    private final LongAdder arrivals = new LongAdder();
+    private final LongAdder skippedArrivals = new LongAdder();
+    private final LongAdder lotFull = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final AtomicInteger occupancy = new AtomicInteger();
+    private final AtomicInteger peakOccupancy = new AtomicInteger();
+    private AtomicLongArray completedPerSecond;
+    private long startNanos;
+    private long endNanos;
+
+    public TrafficSimulation(ParkingService parkingService, SimulationSettings settings) {
+        this.parkingService = parkingService;
+        this.settings = settings;
+        this.plates = new String[settings.getPlates()];
+        for (int i = 0; i < plates.length; i++) {
+            // VEHICLE_REG_NUMBER holds 10 characters
+            plates[i] = String.format("SIM%07d", i);
+        }
+    }
+
+    public SimulationReport run() throws InterruptedException {
+        int durationSeconds = settings.getDurationSeconds();
+        completedPerSecond = new AtomicLongArray(durationSeconds);
+        startNanos = System.nanoTime();
+        endNanos = startNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+        Thread generator = new Thread(this::generateArrivals, "simulation-arrivals");
+        generator.setDaemon(true);
+        generator.start();
+        Thread[] gates = new Thread[settings.getGates()];
+        for (int i = 0; i < gates.length; i++) {
+            Random random = new Random(settings.getSeed() + i + 1);
+            gates[i] = new Thread(() -> runGate(random), "simulation-gate-" + (i + 1));
+            gates[i].setDaemon(true);
+            gates[i].start();
+        }
+        generator.join();
+        for (Thread gate : gates) {
+            gate.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        SimulationReport report = new SimulationReport(settings, elapsedNanos, arrivals.sum(), skippedArrivals.sum(),
+                entryLatency.snapshot(), exitLatency.snapshot(), lag.snapshot(), lotFull.sum(), conflicts.sum(),
+                peakOccupancy.get(), completedPerSecond);
+        driveOutParkedVehicles();
+        return report;
+    }
+
+    private void generateArrivals() {
+        Random random = new Random(settings.getSeed());
+        TrafficProfile profile = settings.getProfile();
+        double timeScale = settings.getTimeScale();
+        double simulatedStart = settings.getStartHour() * 3600.0;
+        double simulated = simulatedStart;
+        while (true) {
+            double rate = settings.getArrivalsPerHour() * profile.multiplierAt(simulated);
+            if (rate <= 0) {
+                simulated = profile.nextChangeAfter(simulated);
+            } else {
+                simulated += settings.getArrivalDistribution().sample(3600 / rate, random);
+            }
+            long dueNanos = startNanos + (long) ((simulated - simulatedStart) / timeScale * 1e9);
+            if (dueNanos >= endNanos) {
+                return;
+            }
+            if (rate <= 0) {
+                continue;
+            }
+            String plate = null;
+            for (int attempt = 0; attempt < PLATE_ATTEMPTS && plate == null; attempt++) {
+                String candidate = plates[random.nextInt(plates.length)];
+                if (busyPlates.putIfAbsent(candidate, Boolean.TRUE) == null) {
+                    plate = candidate;
+                }
+            }
+            arrivals.increment();
+            if (plate == null) {
+                // Nearly every plate is already in the lot
+                skippedArrivals.increment();
+                continue;
+            }
+            ParkingType parkingType = random.nextDouble() < settings.getBikeShare() ? ParkingType.BIKE : ParkingType.CAR;
+            long wait = dueNanos - System.nanoTime() - SCHEDULE_AHEAD_NANOS;
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            events.put(new Event(dueNanos, plate, parkingType, 0));
+        }
+    }
+
+    private void runGate(Random random) {
+        try {
+            while (System.nanoTime() < endNanos) {
+                Event event = events.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    continue;
+                }
+                if (System.nanoTime() >= endNanos) {
+                    // Outside the measured run; a departure left here is driven out at the end
+                    events.put(event);
+                    return;
+                }
+                lag.record(System.nanoTime() - event.dueNanos);
+                if (event.parkingNumber == 0) {
+                    enter(event, random);
+                } else {
+                    exit(event);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enter(Event event, Random random) {
+        long start = System.nanoTime();
+        EntryResult entry;
+        try {
+            entry = parkingService.enter(event.vehicleRegNumber, event.parkingType);
+        } catch (LotFullException e) {
+            entryLatency.recordSince(start);
+            lotFull.increment();
+            busyPlates.remove(event.vehicleRegNumber);
+            return;
+        } catch (Exception e) {
+            entryLatency.recordSince(start, false);
+            logger.error("Entry of " + event.vehicleRegNumber + " failed", e);
+            busyPlates.remove(event.vehicleRegNumber);
+            return;
+        }
+        entryLatency.recordSince(start);
+        completed();
+        int parkingNumber = entry.getParkingSpot().getId();
+        String previous = assignedSpots.putIfAbsent(parkingNumber, event.vehicleRegNumber);
+        if (previous != null) {
+            conflicts.increment();
+            logger.error("Spot " + parkingNumber + " given to " + event.vehicleRegNumber + " while " + previous + " is on it");
+        }
+        parked.put(event.vehicleRegNumber, parkingNumber);
+        int occupied = occupancy.incrementAndGet();
+        peakOccupancy.accumulateAndGet(occupied, Math::max);
+        double stay = settings.getStayDistribution().sample(settings.getMeanStayMinutes() * 60, random);
+        long dueNanos = System.nanoTime() + (long) (stay / settings.getTimeScale() * 1e9);
+        events.put(new Event(dueNanos, event.vehicleRegNumber, event.parkingType, parkingNumber));
+    }
+
+    private void exit(Event event) {
+        // Released before the exit frees the spot, so the next vehicle given it is not taken for a conflict
+        assignedSpots.remove(event.parkingNumber, event.vehicleRegNumber);
+        long start = System.nanoTime();
+        try {
+            parkingService.exit(event.vehicleRegNumber);
+            exitLatency.recordSince(start);
+            completed();
+        } catch (Exception e) {
+            exitLatency.recordSince(start, false);
+            logger.error("Exit of " + event.vehicleRegNumber + " failed", e);
+        }
+        parked.remove(event.vehicleRegNumber);
+        occupancy.decrementAndGet();
+        busyPlates.remove(event.vehicleRegNumber);
+    }
+
+    private void completed() {
+        int second = (int) ((System.nanoTime() - startNanos) / 1000000000L);
+        if (second < completedPerSecond.length()) {
+            completedPerSecond.incrementAndGet(second);
+        }
+    }
+
+    // Leaves the lot as empty as it was found, so the next run starts from the same state
+    private void driveOutParkedVehicles() {
+        for (String vehicleRegNumber : parked.keySet()) {
+            try {
+                parkingService.exit(vehicleRegNumber);
+            } catch (Exception e) {
+                logger.error("Unable to drive out " + vehicleRegNumber, e);
+            }
+        }
+        parked.clear();
+        assignedSpots.clear();
+        busyPlates.clear();
+        events.clear();
+        occupancy.set(0);
+    }
+
+    // An arrival when parkingNumber is 0, otherwise the departure of the vehicle parked there
+    private static final class Event implements Delayed {
+        private final long dueNanos;
+        private final String vehicleRegNumber;
+        private final ParkingType parkingType;
+        private final int parkingNumber;
+
+        Event(long dueNanos, String vehicleRegNumber, ParkingType parkingType, int parkingNumber) {
+            this.dueNanos = dueNanos;
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.parkingType = parkingType;
+            this.parkingNumber = parkingNumber;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Event) other).dueNanos);
+        }
+    }
+
+    // Runs on the backend of the parkit.storage property; the memory and journal lots get the simulation's spots,
+    // the jdbc one is the database's own
+    public static void main(String[] args) throws Exception {
+        SimulationSettings settings = SimulationSettings.fromSystemProperties();
+        String backend = System.getProperty(Storage.BACKEND_PROPERTY, Storage.JDBC);
+        Storage storage;
+        if (Storage.MEMORY.equalsIgnoreCase(backend)) {
+            storage = Storage.inMemory(settings.getCarSpots(), settings.getBikeSpots());
+        } else if (Storage.JOURNAL.equalsIgnoreCase(backend)) {
+            storage = Storage.journal(Paths.get(System.getProperty(Storage.JOURNAL_PATH_PROPERTY, "simulation.journal")),
+                    settings.getCarSpots(), settings.getBikeSpots());
+        } else {
+            storage = Storage.jdbc(new DataBaseConfig());
+        }
+        try {
+            ParkingService parkingService = new ParkingService(null, storage.getParkingSpotStore(),
+                    storage.getTicketStore(), storage.getParkingTransactionDAO());
+            System.out.println(new TrafficSimulation(parkingService, settings).run());
+        } finally {
+            storage.close();
+        }
+    }
+}
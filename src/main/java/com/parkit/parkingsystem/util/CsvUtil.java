@@ -0,0 +1,43 @@
+package com.parkit.parkingsystem.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Splits one line of comma separated values. A value may be quoted to hold commas, with "" for a quote inside it;
+// values spanning several lines are not supported.
+public class CsvUtil {
+
+    private CsvUtil() {
+    }
+
+    public static String[] split(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote");
+        }
+        values.add(value.toString());
+        return values.toArray(new String[0]);
+    }
+}
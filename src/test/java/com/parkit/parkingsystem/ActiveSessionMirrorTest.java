@@ -0,0 +1,64 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ActiveSessionMirror;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+class ActiveSessionMirrorTest {
+
+	private ActiveSessionMirror activeSessions;
+
+	@BeforeEach
+	private void setUpPerTest() {
+		activeSessions = new ActiveSessionMirror();
+	}
+
+	private static Ticket newTicket(int id, String vehicleRegNumber) {
+		Ticket ticket = new Ticket();
+		ticket.setId(id);
+		ticket.setParkingSpot(new ParkingSpot(3, ParkingType.BIKE, false));
+		ticket.setVehicleRegNumber(vehicleRegNumber);
+		ticket.setInTime(new Date(1000));
+		return ticket;
+	}
+
+	@Test
+	void openTicketIsReadBackByPlate() {
+		// GIVEN
+		activeSessions.put(newTicket(7, "ABCDEF"));
+
+		// WHEN
+		Ticket ticket = activeSessions.get("ABCDEF");
+
+		// THEN
+		assertThat(ticket.getId()).isEqualTo(7);
+		assertThat(ticket.getParkingSpot()).isEqualTo(new ParkingSpot(3, ParkingType.BIKE, false));
+		assertThat(ticket.getInTime()).isEqualTo(new Date(1000));
+		assertThat(ticket.getOutTime()).isNull();
+		assertThat(activeSessions.get("UNKNOWN")).isNull();
+	}
+
+	@Test
+	void removingAnOlderTicketKeepsTheCurrentSession() {
+		// GIVEN
+		activeSessions.put(newTicket(7, "ABCDEF"));
+		activeSessions.put(newTicket(8, "ABCDEF"));
+
+		// WHEN
+		activeSessions.remove("ABCDEF", 7);
+
+		// THEN
+		assertThat(activeSessions.get("ABCDEF").getId()).isEqualTo(8);
+		activeSessions.remove("ABCDEF", 8);
+		assertThat(activeSessions.contains("ABCDEF")).isFalse();
+		assertThat(activeSessions.size()).isZero();
+	}
+}
@@ -0,0 +1,102 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ActiveSessionTable;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+class ActiveSessionTableTest {
+
+	private ActiveSessionTable sessions;
+
+	@BeforeEach
+	private void setUpPerTest() {
+		sessions = new ActiveSessionTable();
+	}
+
+	@Test
+	void platesPackIntoALongAndBack() {
+		// GIVEN
+		String[] plates = {"A", "ABCDEF", "ab-12-CD", "ZZZZZZZZZZ", "0000000000", "----------"};
+
+		// WHEN
+		Map<Long, String> unpacked = new HashMap<>();
+		for (String plate : plates) {
+			unpacked.put(ActiveSessionTable.pack(plate), ActiveSessionTable.unpack(ActiveSessionTable.pack(plate)));
+		}
+
+		// THEN
+		assertThat(unpacked).hasSize(plates.length).doesNotContainKey(0L);
+		assertThat(unpacked.values()).containsExactlyInAnyOrder(plates);
+		assertThat(ActiveSessionTable.pack("")).isZero();
+		assertThat(ActiveSessionTable.pack("AB 123 CD")).isZero();
+		assertThat(ActiveSessionTable.pack("ABCDEFGHIJK")).isZero();
+	}
+
+	@Test
+	void sessionsSurviveGrowthAndRemoval() {
+		// GIVEN
+		Random random = new Random(42);
+		Map<String, Integer> expected = new HashMap<>();
+		int ticketId = 0;
+		int peak = 0;
+
+		// WHEN
+		for (int i = 0; i < 20000; i++) {
+			String plate = "P" + random.nextInt(5000);
+			if (expected.containsKey(plate) && random.nextBoolean()) {
+				assertThat(sessions.remove(plate, expected.remove(plate))).isTrue();
+			} else {
+				sessions.put(plate, ++ticketId, ticketId % 100, ParkingType.CAR, 1000L * ticketId);
+				expected.put(plate, ticketId);
+			}
+			peak = Math.max(peak, expected.size());
+		}
+
+		// THEN
+		assertThat(sessions.size()).isEqualTo(expected.size());
+		for (int i = 0; i < 5000; i++) {
+			String plate = "P" + i;
+			assertThat(sessions.getTicketId(plate)).isEqualTo(expected.getOrDefault(plate, ActiveSessionTable.NO_TICKET));
+		}
+		assertThat(sessions.getTickets()).hasSize(expected.size());
+		// 32 byte records, at least 3/8 full when last grown
+		assertThat(sessions.getOffHeapBytes()).isLessThanOrEqualTo(86L * peak);
+	}
+
+	@Test
+	void unpackablePlatesAreKeptAsWell() {
+		// GIVEN
+		Ticket ticket = new Ticket();
+		ticket.setId(7);
+		ticket.setParkingSpot(new ParkingSpot(3, ParkingType.BIKE, false));
+		ticket.setVehicleRegNumber("AB 123 CD");
+		ticket.setInTime(new Date(1000));
+		sessions.put(ticket);
+		sessions.put("ABCDEF", 8, 1, ParkingType.CAR, 2000);
+
+		// WHEN
+		Ticket unpackable = sessions.get("AB 123 CD");
+		Ticket packed = sessions.get("ABCDEF");
+
+		// THEN
+		assertThat(unpackable.getId()).isEqualTo(7);
+		assertThat(unpackable.getParkingSpot()).isEqualTo(new ParkingSpot(3, ParkingType.BIKE, false));
+		assertThat(packed.getInTime().getTime()).isEqualTo(2000);
+		assertThat(packed.getVehicleRegNumber()).isEqualTo("ABCDEF");
+		assertThat(sessions.getTickets()).extracting(Ticket::getVehicleRegNumber).containsExactlyInAnyOrder("AB 123 CD", "ABCDEF");
+		assertThat(sessions.remove("AB 123 CD", 8)).isFalse();
+		assertThat(sessions.remove("AB 123 CD", 7)).isTrue();
+		assertThat(sessions.size()).isEqualTo(1);
+	}
+}
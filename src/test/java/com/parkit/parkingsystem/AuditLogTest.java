@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.audit.AuditLog;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+class AuditLogTest {
+
+	@Test
+	void lifecycleEventsAreWrittenOneLineEach() {
+		// GIVEN
+		StringWriter out = new StringWriter();
+		AuditLog auditLog = new AuditLog(out, 4);
+		Ticket ticket = new Ticket();
+		ticket.setId(12);
+		ticket.setParkingSpot(new ParkingSpot(3, ParkingType.BIKE, false));
+		ticket.setVehicleRegNumber("ABCDEF");
+		ticket.setInTime(new Date());
+
+		// WHEN
+		auditLog.spot("north", ticket.getParkingSpot());
+		auditLog.entry("north", ticket);
+		ticket.setPrice(1.43);
+		auditLog.fare("north", ticket);
+		auditLog.exit("north", ticket);
+		ticket.getParkingSpot().setAvailable(true);
+		auditLog.spot("north", ticket.getParkingSpot());
+		auditLog.close();
+
+		// THEN
+		String[] lines = out.toString().split("\n");
+		assertThat(lines).hasSize(5);
+		assertThat(lines[0]).matches("\\d+ north SPOT - - BIKE 3 0");
+		assertThat(lines[1]).matches("\\d+ north ENTRY 12 ABCDEF BIKE 3 0");
+		assertThat(lines[2]).matches("\\d+ north FARE 12 ABCDEF BIKE 3 143");
+		assertThat(lines[3]).matches("\\d+ north EXIT 12 ABCDEF BIKE 3 0");
+		assertThat(lines[4]).matches("\\d+ north SPOT - - BIKE 3 1");
+	}
+
+	@Test
+	void producersWaitForRoomInsteadOfDroppingEvents() throws Exception {
+		// GIVEN
+		StringWriter out = new StringWriter();
+		AuditLog auditLog = new AuditLog(out, 8);
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			int thread = i;
+			threads.add(new Thread(() -> {
+				for (int number = 1; number <= 1000; number++) {
+					auditLog.spot("main", new ParkingSpot(thread * 1000 + number, ParkingType.CAR, true));
+				}
+			}));
+		}
+
+		// WHEN
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		auditLog.close();
+
+		// THEN
+		String[] lines = out.toString().split("\n");
+		assertThat(lines).hasSize(4000);
+		assertThat(lines).allMatch(line -> line.matches("\\d+ main SPOT - - CAR \\d+ 1"));
+	}
+}
@@ -0,0 +1,135 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.BillingResult;
+import com.parkit.parkingsystem.service.BillingJob;
+
+@ExtendWith(MockitoExtension.class)
+class BillingJobTest {
+
+	private static final long HOUR = 60 * 60 * 1000;
+
+	@TempDir
+	Path tempDir;
+
+	private Path checkpointFile;
+
+	@Mock
+	private DataBaseConfig dataBaseConfig;
+	@Mock
+	private Connection readConnection;
+	@Mock
+	private Connection writeConnection;
+	@Mock
+	private PreparedStatement query;
+	@Mock
+	private PreparedStatement update;
+	@Mock
+	private ResultSet tickets;
+	@Mock
+	private PreparedStatement rollupState;
+	@Mock
+	private ResultSet rollupStateRow;
+	@Mock
+	private PreparedStatement rollup;
+
+	@BeforeEach
+	private void setUpPerTest() throws Exception {
+		checkpointFile = tempDir.resolve("billing.checkpoint");
+		when(dataBaseConfig.getConnection()).thenReturn(readConnection, writeConnection);
+		when(readConnection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(query);
+		when(query.executeQuery()).thenReturn(tickets);
+		doReturn(update).when(writeConnection).prepareStatement(DBConstants.UPDATE_TICKET_PRICE);
+		// tickets closed from 2h on were rolled up as they closed, older ones are backfilled up to ticket 1
+		doReturn(rollupState).when(writeConnection).prepareStatement(DBConstants.GET_ROLLUP_BACKFILL);
+		when(rollupState.executeQuery()).thenReturn(rollupStateRow);
+		when(rollupStateRow.next()).thenReturn(true);
+		when(rollupStateRow.getTimestamp(1)).thenReturn(new Timestamp(2 * HOUR));
+		when(rollupStateRow.getInt(2)).thenReturn(1);
+		lenient().doReturn(rollup).when(writeConnection).prepareStatement(DBConstants.ROLL_UP_HOUR);
+		lenient().doReturn(rollup).when(writeConnection).prepareStatement(DBConstants.ROLL_UP_DAY);
+		// ticket 1: CAR for 1h, first visit, stored price right
+		// ticket 2: CAR for 1h, second visit, stored price wrong
+		// ticket 3: BIKE for 2h, first visit, stored price wrong
+		Timestamp inTime = new Timestamp(0);
+		when(tickets.next()).thenReturn(true, true, true, false);
+		lenient().when(tickets.getInt(1)).thenReturn(1, 2, 3);
+		lenient().when(tickets.getTimestamp(2)).thenReturn(inTime, inTime, inTime);
+		lenient().when(tickets.getTimestamp(3)).thenReturn(new Timestamp(HOUR), new Timestamp(HOUR), new Timestamp(2 * HOUR));
+		when(tickets.getDouble(4)).thenReturn(1.5, 1.5, 0.0);
+		when(tickets.getString(5)).thenReturn("CAR", "CAR", "BIKE");
+		lenient().when(tickets.getInt(6)).thenReturn(1, 2, 1);
+	}
+
+	@Test
+	void changedPricesAreWrittenInBatches() throws Exception {
+		// GIVEN
+		BillingJob billingJob = new BillingJob(dataBaseConfig, checkpointFile, 2, ForkJoinPool.commonPool());
+
+		// WHEN
+		BillingResult result = billingJob.run();
+
+		// THEN
+		assertThat(result.getTicketsRead()).isEqualTo(3);
+		assertThat(result.getTicketsUpdated()).isEqualTo(2);
+		assertThat(result.getTicketsSkipped()).isZero();
+		verify(query).setFetchSize(Integer.MIN_VALUE);
+		verify(query).setInt(1, 0);
+		verify(update).setDouble(1, 1.43);
+		verify(update).setInt(2, 2);
+		verify(update).setDouble(1, 2.0);
+		verify(update).setInt(2, 3);
+		verify(update, times(2)).executeBatch();
+		verify(writeConnection, times(2)).commit();
+		assertThat(Files.exists(checkpointFile)).isFalse();
+		// only ticket 3 is in the rollups, ticket 2 is left to the backfill
+		verify(rollup, times(2)).setLong(eq(4), anyLong());
+		verify(rollup, times(2)).setLong(4, 200L);
+		verify(rollup, times(2)).setInt(3, 0);
+	}
+
+	@Test
+	void failedRunResumesFromCheckpoint() throws Exception {
+		// GIVEN
+		BillingJob billingJob = new BillingJob(dataBaseConfig, checkpointFile, 2, ForkJoinPool.commonPool());
+		when(update.executeBatch()).thenReturn(new int[] {1}).thenThrow(new SQLException("connection lost"));
+
+		// WHEN
+		assertThatThrownBy(billingJob::run).isInstanceOf(SQLException.class);
+
+		// THEN
+		assertThat(new String(Files.readAllBytes(checkpointFile)).trim()).isEqualTo("2");
+		verify(writeConnection, times(1)).commit();
+		verify(readConnection, never()).commit();
+	}
+}
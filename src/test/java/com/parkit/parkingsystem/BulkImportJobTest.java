@@ -0,0 +1,171 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.ImportResult;
+import com.parkit.parkingsystem.service.BulkImportJob;
+
+@ExtendWith(MockitoExtension.class)
+class BulkImportJobTest {
+
+	private static final String TICKETS_OF_TWO_ROWS = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)"
+			+ " values(?,?,?,?,?),(?,?,?,?,?)";
+
+	@Mock
+	private DataBaseConfig dataBaseConfig;
+	@Mock
+	private Connection connection;
+	@Mock
+	private ResultSet spots;
+	@Mock
+	private ResultSet rollupState;
+	@Mock
+	private ResultSet indexes;
+
+	// Statements by SQL, created as the job prepares them
+	private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+	@BeforeEach
+	private void setUpPerTest() throws Exception {
+		when(dataBaseConfig.getConnection()).thenReturn(connection);
+		when(connection.prepareStatement(anyString())).thenAnswer(
+				invocation -> statement(invocation.getArgument(0)));
+		// spots 1 and 2 are CAR spots, 4 is a BIKE spot
+		when(statement(DBConstants.GET_PARKING_SPOTS).executeQuery()).thenReturn(spots);
+		when(spots.next()).thenReturn(true, true, true, false);
+		when(spots.getInt(1)).thenReturn(1, 2, 4);
+		when(spots.getString(3)).thenReturn("CAR", "CAR", "BIKE");
+		lenient().when(statement(DBConstants.GET_ROLLUP_BACKFILL).executeQuery()).thenReturn(rollupState);
+		lenient().when(rollupState.next()).thenReturn(true);
+		lenient().when(rollupState.getTimestamp(1)).thenReturn(Timestamp.valueOf(LocalDateTime.of(2020, 3, 1, 0, 0)));
+		lenient().when(statement(DBConstants.GET_TICKET_INDEXES).executeQuery()).thenReturn(indexes);
+		lenient().when(indexes.next()).thenReturn(true, true, false);
+		lenient().when(indexes.getString(1)).thenReturn("PRIMARY", DBConstants.TICKET_VEHICLE_INDEX);
+	}
+
+	private PreparedStatement statement(String sql) {
+		return statements.computeIfAbsent(sql, s -> mock(PreparedStatement.class));
+	}
+
+	@Test
+	void ticketsAreInsertedInMultiRowBatchesAndInvalidRowsAreRejected() throws Exception {
+		// GIVEN
+		String csv = "VEHICLE_REG_NUMBER,TYPE,PARKING_NUMBER,IN_TIME,OUT_TIME,PRICE\n"
+				+ "ABCDEF,CAR,1,2020-02-10 08:00,2020-02-10 09:30,1.5\n"
+				+ "ABCDEF,CAR,2,2020-03-14 10:00:00,2020-03-14 12:00:00,3.0\n"
+				+ "\n"
+				+ "TOOLONGPLATE1,CAR,1,2020-03-14 10:00,2020-03-14 11:00,1.5\n"
+				+ "GHIJKL,TRUCK,1,2020-03-14 10:00,2020-03-14 11:00,1.5\n"
+				+ "GHIJKL,BIKE,1,2020-03-14 10:00,2020-03-14 11:00,1.5\n"
+				+ "GHIJKL,CAR,9,2020-03-14 10:00,2020-03-14 11:00,1.5\n"
+				+ "GHIJKL,CAR,1,2020-03-14 10:00,,\n"
+				+ "GHIJKL,CAR,1,2020-03-14 10:00,2020-03-14 09:00,1.5\n"
+				+ "GHIJKL,CAR,1,2020-03-14 10:00,2020-03-14 11:00,free\n"
+				+ "\"GHIJKL\",BIKE,4,2020-03-14T10:00,2020-03-14T11:00,1.0\n";
+		BulkImportJob job = new BulkImportJob(dataBaseConfig, 2, 2, false);
+
+		// WHEN
+		ImportResult result = job.importTickets(new StringReader(csv));
+
+		// THEN
+		assertThat(result.getRowsRead()).isEqualTo(10);
+		assertThat(result.getRowsImported()).isEqualTo(3);
+		assertThat(result.getRowsRejected()).isEqualTo(7);
+		PreparedStatement twoRows = statement(TICKETS_OF_TWO_ROWS);
+		verify(twoRows).setObject(2, "ABCDEF");
+		verify(twoRows).setObject(8, 3.0);
+		verify(twoRows, times(1)).executeUpdate();
+		PreparedStatement oneRow = statement(DBConstants.SAVE_TICKET);
+		verify(oneRow).setObject(1, 4);
+		verify(oneRow).setObject(2, "GHIJKL");
+		verify(oneRow).setObject(4, Timestamp.valueOf(LocalDateTime.of(2020, 3, 14, 10, 0)));
+		verify(oneRow, times(1)).executeUpdate();
+		verify(connection, times(2)).commit();
+		// ABCDEF twice in the first commit, GHIJKL once in the second
+		PreparedStatement visits = statement(DBConstants.ADD_VISITS);
+		verify(visits).setInt(2, 2);
+		verify(visits).setInt(2, 1);
+		// the ticket closed before ROLLUP_SINCE is left to the backfill
+		verify(statement(DBConstants.ROLL_UP_HOUR)).setLong(4, 300L);
+		verify(statement(DBConstants.ROLL_UP_HOUR)).setLong(4, 100L);
+		verify(statement(DBConstants.ROLL_UP_HOUR), never()).setLong(4, 150L);
+		verify(statement(DBConstants.DISABLE_FOREIGN_KEY_CHECKS)).execute();
+		verify(statement(DBConstants.ENABLE_FOREIGN_KEY_CHECKS)).execute();
+	}
+
+	@Test
+	void droppedIndexesAreBuiltAgainWhenTheImportFails() throws Exception {
+		// GIVEN
+		String csv = "ABCDEF,CAR,1,2020-03-14 10:00,2020-03-14 11:00,1.5\n";
+		when(statement(DBConstants.SAVE_TICKET).executeUpdate()).thenThrow(new SQLException("Disk full"));
+		BulkImportJob job = new BulkImportJob(dataBaseConfig, 2, 2, true);
+
+		// WHEN
+		assertThatThrownBy(() -> job.importTickets(new StringReader(csv))).isInstanceOf(SQLException.class);
+
+		// THEN
+		verify(statement(DBConstants.DROP_TICKET_INDEX + DBConstants.TICKET_VEHICLE_INDEX)).execute();
+		verify(connection).rollback();
+		verify(connection, never()).commit();
+		verify(statement(DBConstants.CREATE_TICKET_VEHICLE_INDEX)).execute();
+		assertThat(statements).doesNotContainKey(DBConstants.CREATE_TICKET_OUT_TIME_INDEX);
+		verify(dataBaseConfig).closeConnection(connection);
+	}
+
+	@Test
+	void spotsAreInsertedOnceEach() throws Exception {
+		// GIVEN
+		String csv = "PARKING_NUMBER,TYPE,AVAILABLE,LEVEL\n"
+				+ "10,CAR\n"
+				+ "11,bike,false,-1\n"
+				+ "1,CAR\n"
+				+ "10,BIKE\n"
+				+ "12,TRUCK\n"
+				+ "0,CAR\n";
+		BulkImportJob job = new BulkImportJob(dataBaseConfig, 5, 10, false);
+
+		// WHEN
+		ImportResult result = job.importSpots(new StringReader(csv));
+
+		// THEN
+		assertThat(result.getRowsImported()).isEqualTo(2);
+		assertThat(result.getRowsRejected()).isEqualTo(4);
+		PreparedStatement twoRows = statement(DBConstants.SAVE_PARKING_SPOT + ",(?,?,?,?)");
+		verify(twoRows).setObject(1, 10);
+		verify(twoRows).setObject(4, 0);
+		verify(twoRows).setObject(6, false);
+		verify(twoRows).setObject(7, "BIKE");
+		verify(twoRows).setObject(8, -1);
+		verify(twoRows).executeUpdate();
+		verify(connection).commit();
+		verify(connection, never()).prepareStatement(DBConstants.GET_ROLLUP_BACKFILL);
+		verify(connection, never()).prepareStatement(anyString(), anyInt(), anyInt());
+	}
+}
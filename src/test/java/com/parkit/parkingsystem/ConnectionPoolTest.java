@@ -0,0 +1,198 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+
+class ConnectionPoolTest {
+
+	private List<Connection> physicalConnections;
+	private ConnectionPool.ConnectionFactory connectionFactory;
+
+	@BeforeEach
+	private void setUpPerTest() {
+		physicalConnections = new ArrayList<>();
+		connectionFactory = () -> {
+			Connection connection = mock(Connection.class);
+			lenient().when(connection.isValid(anyInt())).thenReturn(true);
+			lenient().when(connection.getAutoCommit()).thenReturn(true);
+			physicalConnections.add(connection);
+			return connection;
+		};
+	}
+
+	@Test
+	void releasedConnectionIsReused() throws Exception {
+		// GIVEN
+		ConnectionPool pool = new ConnectionPool(connectionFactory, 2, 100, 60000, 1);
+
+		// WHEN
+		pool.getConnection().close();
+		pool.getConnection().close();
+
+		// THEN
+		assertThat(physicalConnections).hasSize(1);
+		assertThat(pool.getIdleCount()).isEqualTo(1);
+		assertThat(pool.getActiveCount()).isZero();
+		verify(physicalConnections.get(0), times(0)).close();
+	}
+
+	@Test
+	void countersTrackBorrowedConnections() throws Exception {
+		// GIVEN
+		ConnectionPool pool = new ConnectionPool(connectionFactory, 3, 100, 60000, 1);
+
+		// WHEN
+		Connection first = pool.getConnection();
+		pool.getConnection();
+		first.close();
+
+		// THEN
+		assertThat(pool.getActiveCount()).isEqualTo(1);
+		assertThat(pool.getIdleCount()).isEqualTo(1);
+		assertThat(pool.getTotalCount()).isEqualTo(2);
+		assertThat(pool.getWaitingCount()).isZero();
+		assertThat(first.isClosed()).isTrue();
+	}
+
+	@Test
+	void exhaustedPoolTimesOut() throws Exception {
+		// GIVEN
+		ConnectionPool pool = new ConnectionPool(connectionFactory, 1, 50, 60000, 1);
+		pool.getConnection();
+
+		// THEN
+		assertThatThrownBy(pool::getConnection).isInstanceOf(SQLTimeoutException.class);
+		assertThat(pool.getWaitingCount()).isZero();
+	}
+
+	@Test
+	void waitingCallerGetsReturnedConnection() throws Exception {
+		// GIVEN
+		ConnectionPool pool = new ConnectionPool(connectionFactory, 1, 5000, 60000, 1);
+		Connection held = pool.getConnection();
+		Thread releaser = new Thread(() -> {
+			while (pool.getWaitingCount() == 0) {
+				Thread.yield();
+			}
+			try {
+				held.close();
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		// WHEN
+		releaser.start();
+		Connection next = pool.getConnection();
+		releaser.join();
+
+		// THEN
+		assertThat(next).isNotNull();
+		assertThat(physicalConnections).hasSize(1);
+	}
+
+	@Test
+	void idleConnectionsTimeOut() throws Exception {
+		// GIVEN
+		ConnectionPool pool = new ConnectionPool(connectionFactory, 2, 100, 0, 1);
+		pool.getConnection().close();
+
+		// WHEN
+		pool.getConnection();
+
+		// THEN
+		assertThat(physicalConnections).hasSize(2);
+		verify(physicalConnections.get(0)).close();
+	}
+
+	@Test
+	void openStatementsAreClosedOnRelease() throws Exception {
+		// GIVEN
+		ConnectionPool pool = new ConnectionPool(connectionFactory, 1, 100, 60000, 1);
+		Connection connection = pool.getConnection();
+		PreparedStatement ps = mock(PreparedStatement.class);
+		lenient().when(physicalConnections.get(0).prepareStatement("select 1")).thenReturn(ps);
+
+		// WHEN
+		connection.prepareStatement("select 1");
+		connection.close();
+
+		// THEN
+		verify(ps).close();
+	}
+
+	@Test
+	void closedPoolRejectsBorrowers() throws Exception {
+		// GIVEN
+		ConnectionPool pool = new ConnectionPool(connectionFactory, 1, 100, 60000, 1);
+		pool.getConnection().close();
+
+		// WHEN
+		pool.close();
+
+		// THEN
+		verify(physicalConnections.get(0)).close();
+		assertThatThrownBy(pool::getConnection).isInstanceOf(SQLException.class);
+	}
+
+	@Test
+	void preparedStatementsAreCachedPerConnection() throws Exception {
+		// GIVEN
+		ConnectionPool pool = new ConnectionPool(connectionFactory, 1, 100, 60000, 1, 2);
+		Connection connection = pool.getConnection();
+		PreparedStatement ps = mock(PreparedStatement.class);
+		lenient().when(physicalConnections.get(0).prepareStatement("select 1")).thenReturn(ps);
+
+		// WHEN
+		connection.prepareStatement("select 1").close();
+		connection.close();
+		connection = pool.getConnection();
+		PreparedStatement reused = connection.prepareStatement("select 1");
+		reused.setInt(1, 42);
+		connection.close();
+
+		// THEN
+		assertThat(pool.getStatementCacheMisses()).isEqualTo(1);
+		assertThat(pool.getStatementCacheHits()).isEqualTo(1);
+		verify(physicalConnections.get(0), times(1)).prepareStatement("select 1");
+		verify(ps).setInt(1, 42);
+		verify(ps, times(2)).clearParameters();
+		verify(ps, times(0)).close();
+	}
+
+	@Test
+	void leastRecentlyUsedStatementIsEvicted() throws Exception {
+		// GIVEN
+		ConnectionPool pool = new ConnectionPool(connectionFactory, 1, 100, 60000, 1, 1);
+		Connection connection = pool.getConnection();
+		PreparedStatement first = mock(PreparedStatement.class);
+		PreparedStatement second = mock(PreparedStatement.class);
+		lenient().when(physicalConnections.get(0).prepareStatement("select 1")).thenReturn(first);
+		lenient().when(physicalConnections.get(0).prepareStatement("select 2")).thenReturn(second);
+
+		// WHEN
+		connection.prepareStatement("select 1").close();
+		connection.prepareStatement("select 2").close();
+
+		// THEN
+		verify(first).close();
+		verify(second, times(0)).close();
+	}
+}
@@ -0,0 +1,121 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.api.GateServer;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FacilityRegistry;
+
+class FacilityRegistryTest {
+
+	private static final String[] PROPERTIES = {FacilityRegistry.FACILITIES_PROPERTY, "parkit.storage",
+			"parkit.facility.north.storage", "parkit.facility.south.storage",
+			"parkit.facility.north.storage.memory.carSpots", "parkit.facility.south.storage.memory.carSpots",
+			"parkit.facility.north.db.url", "parkit.facility.south.db.url"};
+
+	private FacilityRegistry facilities;
+	private GateServer server;
+
+	@AfterEach
+	private void tearDownPerTest() {
+		if (server != null) {
+			server.stop();
+		}
+		if (facilities != null) {
+			facilities.close();
+		}
+		for (String property : PROPERTIES) {
+			System.clearProperty(property);
+		}
+	}
+
+	private String[] call(String method, String path) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+		connection.setRequestMethod(method);
+		int status = connection.getResponseCode();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			byte[] buffer = new byte[512];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				body.write(buffer, 0, read);
+			}
+		}
+		return new String[] {String.valueOf(status), new String(body.toByteArray(), StandardCharsets.UTF_8)};
+	}
+
+	@Test
+	void eachFacilityAllocatesFromItsOwnSpots() throws Exception {
+		// GIVEN
+		System.setProperty(FacilityRegistry.FACILITIES_PROPERTY, "north, south");
+		System.setProperty("parkit.storage", "memory");
+		System.setProperty("parkit.facility.north.storage.memory.carSpots", "1");
+		System.setProperty("parkit.facility.south.storage.memory.carSpots", "2");
+		facilities = FacilityRegistry.fromSystemProperties();
+
+		// WHEN
+		facilities.get("north").getParkingService().enter("ABCDEF", ParkingType.CAR);
+		facilities.get("south").getParkingService().enter("ABCDEF", ParkingType.CAR);
+
+		// THEN
+		assertThat(facilities.getFacilities()).hasSize(2);
+		assertThat(facilities.getSingle()).isNull();
+		assertThat(facilities.get("north").getParkingService().getFreeCount(ParkingType.CAR)).isEqualTo(0);
+		assertThat(facilities.get("south").getParkingService().getFreeCount(ParkingType.CAR)).isEqualTo(1);
+		assertThat(facilities.get("south").getParkingService().getFacilityId()).isEqualTo("south");
+		assertThatThrownBy(() -> facilities.get("east")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void gateRequestsAreRoutedToTheirFacility() throws Exception {
+		// GIVEN
+		System.setProperty(FacilityRegistry.FACILITIES_PROPERTY, "north,south");
+		System.setProperty("parkit.facility.north.storage", "memory");
+		System.setProperty("parkit.facility.south.storage", "memory");
+		System.setProperty("parkit.facility.north.storage.memory.carSpots", "1");
+		facilities = FacilityRegistry.fromSystemProperties();
+		server = new GateServer(facilities, 0, 4, 16);
+		server.start();
+
+		// WHEN
+		String[] north = call("POST", "/facilities/north/entry?plate=ABCDEF&type=CAR");
+		String[] northFull = call("POST", "/facilities/north/entry?plate=GHIJKL&type=CAR");
+		String[] south = call("POST", "/facilities/south/entry?plate=GHIJKL&type=CAR");
+		String[] unknown = call("GET", "/facilities/east/occupancy");
+		String[] unrouted = call("GET", "/occupancy");
+
+		// THEN
+		assertThat(north[0]).isEqualTo("201");
+		assertThat(north[1]).contains("\"level\":0");
+		assertThat(northFull[0]).isEqualTo("409");
+		assertThat(south[0]).isEqualTo("201");
+		assertThat(unknown[0]).isEqualTo("404");
+		assertThat(unrouted[0]).isEqualTo("400");
+		assertThat(call("GET", "/facilities/north/quote?plate=GHIJKL")[0]).isEqualTo("404");
+		assertThat(call("POST", "/facilities/south/exit?plate=GHIJKL")[0]).isEqualTo("200");
+	}
+
+	@Test
+	void facilitiesCannotShareADatabase() {
+		// GIVEN
+		System.setProperty(FacilityRegistry.FACILITIES_PROPERTY, "north,south");
+		System.setProperty("parkit.facility.north.db.url", "jdbc:mysql://localhost:3306/north");
+		System.setProperty("parkit.facility.south.db.url", "jdbc:mysql://localhost:3306/north");
+
+		// WHEN
+		assertThatThrownBy(FacilityRegistry::fromSystemProperties).isInstanceOf(IllegalArgumentException.class)
+
+				// THEN
+				.hasMessageContaining("parkit.facility.south.db.url");
+	}
+}
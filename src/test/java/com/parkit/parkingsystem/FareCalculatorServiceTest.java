@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
@@ -241,4 +242,30 @@ class FareCalculatorServiceTest {
 		assertEquals(0.95, ticket.getPrice());
 	}
 
+	@Test
+	void fareCentsMatchPreviousRoundingWithoutDiscount() {
+		// Full price fares are the same as the former double and BigDecimal computation
+		for (long minutes = 0; minutes <= 100000; minutes++) {
+			double car = minutes <= 30 ? 0 : FareCalculatorService.round(minutes * Fare.CAR_RATE_PER_HOUR / 60, 2);
+			double bike = minutes <= 30 ? 0 : FareCalculatorService.round(minutes * Fare.BIKE_RATE_PER_HOUR / 60, 2);
+			assertEquals(car, FareCalculatorService.calculateFareCents(ParkingType.CAR, minutes, false) / 100.0);
+			assertEquals(bike, FareCalculatorService.calculateFareCents(ParkingType.BIKE, minutes, false) / 100.0);
+		}
+	}
+
+	@Test
+	void discountedFareCentsMatchPreviousRounding() {
+		// Including the half cent ties the former double computation rounded down, e.g. 42 minutes of BIKE at 95%,
+		// and the ties past the precomputed ones
+		for (long minutes = 0; minutes <= 200000; minutes++) {
+			double car = minutes <= 30 ? 0 : FareCalculatorService.round(minutes * Fare.CAR_RATE_PER_HOUR * 0.95 / 60, 2);
+			double bike = minutes <= 30 ? 0 : FareCalculatorService.round(minutes * Fare.BIKE_RATE_PER_HOUR * 0.95 / 60, 2);
+			assertEquals(car, FareCalculatorService.calculateFareCents(ParkingType.CAR, minutes, true) / 100.0);
+			assertEquals(bike, FareCalculatorService.calculateFareCents(ParkingType.BIKE, minutes, true) / 100.0);
+		}
+		assertEquals(66, FareCalculatorService.calculateFareCents(ParkingType.BIKE, 42, true));
+		assertEquals(123, FareCalculatorService.calculateFareCents(ParkingType.CAR, 52, true));
+		assertEquals(199, FareCalculatorService.calculateFareCents(ParkingType.CAR, 84, true));
+	}
+
 }
@@ -0,0 +1,165 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.dao.FreeSpotIndex;
+
+class FreeSpotIndexTest {
+
+	private FreeSpotIndex freeSpotIndex;
+
+	@BeforeEach
+	private void setUpPerTest() {
+		freeSpotIndex = new FreeSpotIndex(200);
+	}
+
+	@Test
+	void emptyIndexHasNoFreeSpot() {
+		assertThat(freeSpotIndex.lowestFree()).isZero();
+		assertThat(freeSpotIndex.claimLowestFree()).isZero();
+	}
+
+	@Test
+	void lowestFreeSpotIsReturned() {
+		// GIVEN
+		freeSpotIndex.markFree(7);
+		freeSpotIndex.markFree(3);
+		freeSpotIndex.markFree(5);
+
+		// WHEN
+		freeSpotIndex.markTaken(3);
+
+		// THEN
+		assertThat(freeSpotIndex.lowestFree()).isEqualTo(5);
+		assertThat(freeSpotIndex.freeCount()).isEqualTo(2);
+		assertThat(freeSpotIndex.isFree(3)).isFalse();
+	}
+
+	@Test
+	void freeCountOnlyChangesWithTheSpotState() {
+		// GIVEN
+		freeSpotIndex.markFree(1);
+		freeSpotIndex.markFree(2);
+		freeSpotIndex.markFree(2);
+
+		// WHEN
+		freeSpotIndex.claimLowestFree();
+		freeSpotIndex.markTaken(1);
+		freeSpotIndex.markTaken(150);
+
+		// THEN
+		assertThat(freeSpotIndex.freeCount()).isEqualTo(1);
+		assertThat(freeSpotIndex.isFree(2)).isTrue();
+	}
+
+	@Test
+	void claimTakesLowestFreeSpot() {
+		// GIVEN
+		freeSpotIndex.markFree(64);
+		freeSpotIndex.markFree(130);
+
+		// WHEN
+		int first = freeSpotIndex.claimLowestFree();
+		int second = freeSpotIndex.claimLowestFree();
+
+		// THEN
+		assertThat(first).isEqualTo(64);
+		assertThat(second).isEqualTo(130);
+		assertThat(freeSpotIndex.claimLowestFree()).isZero();
+	}
+
+	@Test
+	void numbersBeyondCapacityAreNotIndexed() {
+		assertThat(freeSpotIndex.markFree(201)).isFalse();
+		assertThat(freeSpotIndex.lowestFree()).isZero();
+	}
+
+	@Test
+	void takenSpotsAcrossWordsAreSkipped() {
+		// GIVEN
+		for (int number = 1; number <= 200; number++) {
+			freeSpotIndex.markFree(number);
+		}
+
+		// WHEN
+		for (int number = 1; number < 130; number++) {
+			freeSpotIndex.markTaken(number);
+		}
+
+		// THEN
+		assertThat(freeSpotIndex.lowestFree()).isEqualTo(130);
+	}
+
+	@Test
+	void nonPositiveNumbersAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> freeSpotIndex.markFree(0));
+	}
+
+	@Test
+	void concurrentGatesNeverClaimTheSameSpot() throws Exception {
+		// GIVEN
+		int spots = 200000;
+		int gates = 8;
+		FreeSpotIndex index = new FreeSpotIndex(spots);
+		for (int number = 1; number <= spots; number++) {
+			index.markFree(number);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(gates);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<int[]>> results = new ArrayList<>();
+		for (int gate = 0; gate < gates; gate++) {
+			results.add(executor.submit(() -> {
+				int[] claimed = new int[spots];
+				int count = 0;
+				int attempts = 0;
+				start.await();
+				int number;
+				while ((number = index.claimLowestFree()) != 0) {
+					claimed[count++] = number;
+					// Every third claim is released again, like a vehicle leaving
+					if (++attempts % 3 == 0) {
+						index.markFree(claimed[--count]);
+					}
+				}
+				int[] result = new int[count];
+				System.arraycopy(claimed, 0, result, 0, count);
+				return result;
+			}));
+		}
+
+		// WHEN
+		long startNanos = System.nanoTime();
+		start.countDown();
+		BitSet seen = new BitSet(spots + 1);
+		int total = 0;
+		for (Future<int[]> result : results) {
+			for (int number : result.get(1, TimeUnit.MINUTES)) {
+				// THEN
+				assertThat(seen.get(number)).as("spot %d claimed twice", number).isFalse();
+				seen.set(number);
+				total++;
+			}
+		}
+		long elapsedNanos = System.nanoTime() - startNanos;
+		executor.shutdown();
+
+		// THEN
+		assertThat(total).isEqualTo(spots);
+		assertThat(index.freeCount()).isZero();
+		System.out.println(gates + " gates claimed " + spots + " spots at "
+				+ (long) (spots / (elapsedNanos / 1e9)) + " claims/s");
+	}
+}
@@ -0,0 +1,188 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.api.GateServer;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.Storage;
+import com.parkit.parkingsystem.dao.TicketStore;
+import com.parkit.parkingsystem.service.AlreadyParkedException;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ReservationBook;
+
+class GateServerTest {
+
+	private GateServer server;
+
+	@AfterEach
+	private void tearDownPerTest() {
+		if (server != null) {
+			server.stop();
+		}
+	}
+
+	private String[] call(String method, String path) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+		connection.setRequestMethod(method);
+		int status = connection.getResponseCode();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			byte[] buffer = new byte[512];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				body.write(buffer, 0, read);
+			}
+		}
+		return new String[] {String.valueOf(status), new String(body.toByteArray(), StandardCharsets.UTF_8)};
+	}
+
+	@Test
+	void gatesEnterQuoteAndExitOverHttp() throws Exception {
+		// GIVEN
+		Storage storage = Storage.inMemory(1, 1);
+		server = new GateServer(new ParkingService(storage.getParkingSpotStore(), storage.getTicketStore()), 0, 4, 16);
+		server.start();
+
+		// WHEN
+		String[] entry = call("POST", "/entry?plate=ABCDEF&type=car");
+		String[] lotFull = call("POST", "/entry?plate=GHIJKL&type=CAR");
+		String[] occupancy = call("GET", "/occupancy");
+		String[] quote = call("GET", "/quote?plate=ABCDEF");
+		String[] exit = call("POST", "/exit?plate=ABCDEF");
+		String[] exitAgain = call("POST", "/exit?plate=ABCDEF");
+
+		// THEN
+		assertThat(entry[0]).isEqualTo("201");
+		assertThat(entry[1]).contains("\"plate\":\"ABCDEF\"", "\"parkingNumber\":1", "\"type\":\"CAR\"");
+		assertThat(lotFull[0]).isEqualTo("409");
+		assertThat(occupancy[1]).isEqualTo("{\"CAR\":{\"free\":0,\"spots\":1},\"BIKE\":{\"free\":1,\"spots\":1}}");
+		assertThat(quote[0]).isEqualTo("200");
+		assertThat(quote[1]).contains("\"price\":0.0");
+		assertThat(exit[0]).isEqualTo("200");
+		assertThat(exit[1]).contains("\"price\":0.0", "\"discounted\":false");
+		assertThat(exitAgain[0]).isEqualTo("404");
+		assertThat(call("GET", "/occupancy")[1]).contains("\"CAR\":{\"free\":1,\"spots\":1}");
+	}
+
+	@Test
+	void onlyAVehicleAlreadyParkedIsAConflict() throws Exception {
+		// GIVEN
+		Storage storage = Storage.inMemory(2, 0);
+		server = new GateServer(new ParkingService(storage.getParkingSpotStore(), storage.getTicketStore()), 0, 4, 16);
+		server.start();
+		call("POST", "/entry?plate=ABCDEF&type=CAR");
+
+		// WHEN
+		String[] again = call("POST", "/entry?plate=ABCDEF&type=CAR");
+		server.stop();
+		// Saves nothing and knows of no open ticket, as when the database is down
+		TicketStore failingStore = mock(TicketStore.class);
+		server = new GateServer(new ParkingService(storage.getParkingSpotStore(), failingStore), 0, 4, 16);
+		server.start();
+		String[] storeDown = call("POST", "/entry?plate=GHIJKL&type=CAR");
+
+		// THEN
+		assertThat(again[0]).isEqualTo("409");
+		assertThat(again[1]).contains("already parked");
+		assertThat(storeDown[0]).isEqualTo("500");
+		assertThat(storage.getParkingSpotStore().getFreeCount(ParkingType.CAR)).isEqualTo(1);
+	}
+
+	@Test
+	void reservationsAreBookedOverHttp() throws Exception {
+		// GIVEN
+		Storage storage = Storage.inMemory(1, 0);
+		server = new GateServer(new ParkingService(null, storage.getParkingSpotStore(), storage.getTicketStore(), null,
+				new ReservationBook(storage.getParkingSpotStore(), 15, 30, 60, 15)), 0, 4, 16);
+		server.start();
+		Instant tomorrow = Instant.now().truncatedTo(ChronoUnit.HOURS).plus(1, ChronoUnit.DAYS);
+		String window = "&from=" + tomorrow + "&to=" + tomorrow.plus(2, ChronoUnit.HOURS);
+
+		// WHEN
+		String[] reserved = call("POST", "/reserve?plate=ABCDEF&type=CAR" + window);
+		String[] full = call("POST", "/reserve?plate=GHIJKL&type=CAR" + window);
+		String[] availability = call("GET", "/availability?type=CAR" + window);
+		String[] badTime = call("GET", "/availability?type=CAR&from=tomorrow&to=later");
+
+		// THEN
+		assertThat(reserved[0]).isEqualTo("201");
+		assertThat(reserved[1]).contains("\"reservationId\":1", "\"from\":\"" + tomorrow + "\"");
+		assertThat(full[0]).isEqualTo("409");
+		assertThat(availability[1]).contains("\"available\":0");
+		assertThat(badTime[0]).isEqualTo("400");
+		assertThat(call("POST", "/cancel?id=1")[0]).isEqualTo("200");
+		assertThat(call("POST", "/cancel?id=1")[0]).isEqualTo("404");
+		assertThat(call("GET", "/availability?type=CAR" + window)[1]).contains("\"available\":1");
+	}
+
+	@Test
+	void invalidRequestsAreRefused() throws Exception {
+		// GIVEN
+		Storage storage = Storage.inMemory(1, 1);
+		server = new GateServer(new ParkingService(storage.getParkingSpotStore(), storage.getTicketStore()), 0, 4, 16);
+		server.start();
+
+		// WHEN
+		String[] wrongMethod = call("GET", "/entry?plate=ABCDEF&type=CAR");
+		String[] missingType = call("POST", "/entry?plate=ABCDEF");
+		String[] unknownType = call("POST", "/entry?plate=ABCDEF&type=TRUCK");
+
+		// THEN
+		assertThat(wrongMethod[0]).isEqualTo("405");
+		assertThat(missingType[0]).isEqualTo("400");
+		assertThat(missingType[1]).isEqualTo("{\"error\":\"Parameter type is required\"}");
+		assertThat(unknownType[0]).isEqualTo("400");
+	}
+
+	@Test
+	void requestsPastTheQueueCapacityAreTurnedAway() throws Exception {
+		// GIVEN
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ParkingService parkingService = mock(ParkingService.class);
+		when(parkingService.enter(anyString(), any())).thenAnswer(invocation -> {
+			entered.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			throw new AlreadyParkedException("ABCDEF");
+		});
+		server = new GateServer(parkingService, 0, 4, 1);
+		server.start();
+		String[] first = new String[1];
+		Thread gate = new Thread(() -> {
+			try {
+				first[0] = call("POST", "/entry?plate=ABCDEF&type=CAR")[0];
+			} catch (Exception e) {
+				first[0] = e.toString();
+			}
+		});
+		gate.start();
+		assertThat(entered.await(10, TimeUnit.SECONDS)).isTrue();
+
+		// WHEN
+		String[] second = call("GET", "/occupancy");
+		release.countDown();
+		gate.join();
+
+		// THEN
+		assertThat(second[0]).isEqualTo("503");
+		assertThat(first[0]).isEqualTo("409");
+		assertThat(call("GET", "/occupancy")[0]).isEqualTo("200");
+	}
+}
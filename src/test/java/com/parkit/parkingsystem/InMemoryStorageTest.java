@@ -0,0 +1,93 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingSpotStore;
+import com.parkit.parkingsystem.dao.InMemoryTicketStore;
+import com.parkit.parkingsystem.dao.Storage;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+
+class InMemoryStorageTest {
+
+	private Storage storage;
+	private ParkingService parkingService;
+
+	@BeforeEach
+	private void setUpPerTest() {
+		storage = Storage.inMemory(3, 2);
+		parkingService = new ParkingService(storage.getParkingSpotStore(), storage.getTicketStore());
+	}
+
+	@Test
+	void spotsAreNumberedCarsFirst() {
+		// GIVEN
+		InMemoryParkingSpotStore parkingSpotStore = new InMemoryParkingSpotStore(3, 2);
+
+		// WHEN
+		int car = parkingSpotStore.claimNextAvailableSlot(ParkingType.CAR);
+		int bike = parkingSpotStore.claimNextAvailableSlot(ParkingType.BIKE);
+		parkingSpotStore.updateParking(new ParkingSpot(car, ParkingType.CAR, true));
+
+		// THEN
+		assertThat(car).isEqualTo(1);
+		assertThat(bike).isEqualTo(4);
+		assertThat(parkingSpotStore.getNextAvailableSlot(ParkingType.CAR)).isEqualTo(1);
+		assertThat(parkingSpotStore.getFreeCount(ParkingType.BIKE)).isEqualTo(1);
+		assertThat(parkingSpotStore.updateParking(new ParkingSpot(6, ParkingType.BIKE, true))).isFalse();
+	}
+
+	@Test
+	void ticketStoreKeepsOneOpenTicketPerVehicle() throws Exception {
+		// GIVEN
+		InMemoryTicketStore ticketStore = new InMemoryTicketStore();
+		Ticket ticket = new Ticket();
+		ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+		ticket.setVehicleRegNumber("ABCDEF");
+		ticket.setInTime(new Date());
+
+		// WHEN
+		boolean saved = ticketStore.saveTicket(ticket);
+		boolean savedTwice = ticketStore.saveTicket(ticket);
+		Ticket open = ticketStore.getTicket("ABCDEF");
+		open.setOutTime(new Date());
+		open.setPrice(1.5);
+
+		// THEN
+		assertThat(saved).isTrue();
+		assertThat(savedTwice).isFalse();
+		assertThat(open.getId()).isEqualTo(ticket.getId());
+		assertThat(ticketStore.updateTicket(open)).isTrue();
+		assertThat(ticketStore.updateTicket(open)).isFalse();
+		assertThat(ticketStore.getTicket("ABCDEF")).isNull();
+		assertThat(ticketStore.getNbTicket("ABCDEF")).isEqualTo(1);
+	}
+
+	@Test
+	void parkingServiceRunsOnMemoryBackend() throws Exception {
+		// WHEN
+		EntryResult first = parkingService.enter("ABCDEF", ParkingType.CAR);
+		parkingService.exit("ABCDEF");
+		EntryResult second = parkingService.enter("ABCDEF", ParkingType.CAR);
+		ExitResult exit = parkingService.exit("ABCDEF");
+
+		// THEN
+		assertThat(first.isRecurringUser()).isFalse();
+		assertThat(second.isRecurringUser()).isTrue();
+		assertThat(second.getParkingSpot().getId()).isEqualTo(1);
+		assertThat(exit.isUpdated()).isTrue();
+		assertThat(exit.isDiscounted()).isTrue();
+		assertThat(storage.getParkingTransactionDAO()).isNull();
+		assertThatThrownBy(() -> parkingService.exit("ABCDEF")).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,135 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.JournalTicketStore;
+import com.parkit.parkingsystem.dao.Storage;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+
+class JournalTicketStoreTest {
+
+	@TempDir
+	Path directory;
+
+	private static Ticket ticket(int spot, String vehicleRegNumber) {
+		Ticket ticket = new Ticket();
+		ticket.setParkingSpot(new ParkingSpot(spot, ParkingType.CAR, false));
+		ticket.setVehicleRegNumber(vehicleRegNumber);
+		ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+		return ticket;
+	}
+
+	private static void close(JournalTicketStore ticketStore, Ticket open) {
+		open.setOutTime(new Date());
+		open.setPrice(1.5);
+		assertThat(ticketStore.updateTicket(open)).isTrue();
+	}
+
+	@Test
+	void reopenedJournalRecoversOpenTicketsAndVisits() throws Exception {
+		// GIVEN
+		Path path = directory.resolve("parkit.journal");
+		JournalTicketStore ticketStore = new JournalTicketStore(path, 16);
+		Ticket first = ticket(1, "ABCDEF");
+		ticketStore.saveTicket(first);
+		close(ticketStore, ticketStore.getTicket("ABCDEF"));
+		ticketStore.saveTicket(ticket(2, "ABCDEF"));
+		ticketStore.saveTicket(ticket(3, "GHIJKL"));
+		ticketStore.close();
+
+		// WHEN
+		JournalTicketStore reopened = new JournalTicketStore(path, 16);
+
+		// THEN
+		assertThat(reopened.getNbTicket("ABCDEF")).isEqualTo(2);
+		assertThat(reopened.getTicket("ABCDEF").getParkingSpot().getId()).isEqualTo(2);
+		assertThat(reopened.getTicket("ABCDEF").getId()).isEqualTo(first.getId() + 1);
+		assertThat(reopened.getTicket("GHIJKL").getInTime()).isNotNull();
+		assertThat(reopened.getOpenTickets()).hasSize(2);
+		reopened.close();
+	}
+
+	@Test
+	void damagedLastRecordIsDiscardedOnRecovery() throws Exception {
+		// GIVEN
+		Path path = directory.resolve("parkit.journal");
+		JournalTicketStore ticketStore = new JournalTicketStore(path, 16);
+		ticketStore.saveTicket(ticket(1, "ABCDEF"));
+		ticketStore.saveTicket(ticket(2, "GHIJKL"));
+		ticketStore.close();
+		try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+			// A byte of the plate of the second record, as if the write had been torn
+			file.seek(2 * 64 + 40);
+			file.write('X');
+		}
+
+		// WHEN
+		JournalTicketStore reopened = new JournalTicketStore(path, 16);
+		Ticket next = ticket(3, "MNOPQR");
+		boolean saved = reopened.saveTicket(next);
+
+		// THEN
+		assertThat(reopened.getTicket("ABCDEF")).isNotNull();
+		assertThat(reopened.getTicket("GHIJKL")).isNull();
+		assertThat(saved).isTrue();
+		assertThat(reopened.getRecordCount()).isEqualTo(2);
+		reopened.close();
+	}
+
+	@Test
+	void fullJournalIsCompactedIntoHistory() throws Exception {
+		// GIVEN
+		Path path = directory.resolve("parkit.journal");
+		JournalTicketStore ticketStore = new JournalTicketStore(path, 8);
+		ticketStore.saveTicket(ticket(1, "OPEN"));
+
+		// WHEN
+		for (int i = 0; i < 10; i++) {
+			ticketStore.saveTicket(ticket(2, "ABCDEF"));
+			close(ticketStore, ticketStore.getTicket("ABCDEF"));
+		}
+		ticketStore.close();
+		JournalTicketStore reopened = new JournalTicketStore(path, 8);
+
+		// THEN
+		assertThat(Files.size(reopened.getHistoryPath()) % 64).isZero();
+		assertThat(Files.size(reopened.getHistoryPath())).isGreaterThan(0);
+		assertThat(reopened.getCapacity()).isEqualTo(8);
+		assertThat(reopened.getNbTicket("ABCDEF")).isEqualTo(10);
+		assertThat(reopened.getTicket("ABCDEF")).isNull();
+		assertThat(reopened.getTicket("OPEN").getParkingSpot().getId()).isEqualTo(1);
+		assertThat(reopened.getNbTicket("OPEN")).isEqualTo(1);
+		reopened.close();
+	}
+
+	@Test
+	void journalBackendTakesBackSpotsOfOpenTickets() throws Exception {
+		// GIVEN
+		Path path = directory.resolve("parkit.journal");
+		Storage storage = Storage.journal(path, 3, 2);
+		new ParkingService(storage.getParkingSpotStore(), storage.getTicketStore()).enter("ABCDEF", ParkingType.CAR);
+		storage.close();
+
+		// WHEN
+		Storage restarted = Storage.journal(path, 3, 2);
+		EntryResult entry = new ParkingService(restarted.getParkingSpotStore(), restarted.getTicketStore())
+				.enter("GHIJKL", ParkingType.CAR);
+
+		// THEN
+		assertThat(entry.getParkingSpot().getId()).isEqualTo(2);
+		assertThat(restarted.getTicketStore().getTicket("ABCDEF").getParkingSpot().getId()).isEqualTo(1);
+		restarted.close();
+	}
+}
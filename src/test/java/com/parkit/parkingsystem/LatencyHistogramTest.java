@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+
+class LatencyHistogramTest {
+
+	@Test
+	void percentilesAreWithinOneBucket() {
+		// GIVEN
+		LatencyHistogram histogram = new LatencyHistogram("test");
+
+		// WHEN
+		for (long micros = 1; micros <= 1000; micros++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+		// THEN
+		assertThat(snapshot.getCount()).isEqualTo(1000);
+		assertThat(snapshot.getPercentileMicros(50)).isCloseTo(500, within(500 * 0.125));
+		assertThat(snapshot.getPercentileMicros(99)).isCloseTo(990, within(990 * 0.125));
+		assertThat(snapshot.getPercentileMicros(99.9)).isCloseTo(999, within(999 * 0.125));
+		assertThat(snapshot.getPercentileMicros(100)).isEqualTo(1000);
+		assertThat(snapshot.getMeanMicros()).isCloseTo(500.5, within(0.01));
+	}
+
+	@Test
+	void concurrentRecordingLosesNothing() throws Exception {
+		// GIVEN
+		LatencyHistogram histogram = new LatencyHistogram("test");
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			threads.add(new Thread(() -> {
+				for (int j = 0; j < 10000; j++) {
+					histogram.recordSince(System.nanoTime() - j, j % 100 != 0);
+				}
+			}));
+		}
+
+		// WHEN
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// THEN
+		assertThat(histogram.getCount()).isEqualTo(40000);
+		assertThat(histogram.getErrors()).isEqualTo(400);
+		assertThat(histogram.snapshot().getCount()).isEqualTo(40000);
+	}
+
+	@Test
+	void histogramsAreRegisteredInJmx() throws Exception {
+		// GIVEN
+		LatencyHistogram histogram = Metrics.histogram("LatencyHistogramTest.operation");
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+		histogram.error();
+
+		// WHEN
+		ObjectName name = new ObjectName("com.parkit.parkingsystem:type=Latency,name="
+				+ ObjectName.quote("LatencyHistogramTest.operation"));
+		Object count = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count");
+		Object errors = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Errors");
+
+		// THEN
+		assertThat(Metrics.histogram("LatencyHistogramTest.operation")).isSameAs(histogram);
+		assertThat(count).isEqualTo(1L);
+		assertThat(errors).isEqualTo(1L);
+		assertThat(Metrics.snapshots()).extracting(LatencyHistogram.Snapshot::getName).contains("LatencyHistogramTest.operation");
+	}
+}
@@ -18,6 +18,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.FareCalculatorService;
@@ -47,9 +49,8 @@ class ParkingServiceTest {
 		//GIVEN
 		parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
 		when(inputReaderUtil.readSelection()).thenReturn(1);
-		when(parkingSpotDAO.getNextAvailableSlot(any())).thenReturn(1);
+		when(parkingSpotDAO.claimNextAvailableSlot(any())).thenReturn(1);
 		when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
-		when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
 		when(ticketDAO.saveTicket(any())).thenReturn(true);
 		when(ticketDAO.getNbTicket(any())).thenReturn(0);
 		
@@ -129,14 +130,14 @@ class ParkingServiceTest {
 		// GIVEN
 		parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
 		when(inputReaderUtil.readSelection()).thenReturn(1);
-		when(parkingSpotDAO.getNextAvailableSlot(any())).thenReturn(1);
+		when(parkingSpotDAO.claimNextAvailableSlot(any())).thenReturn(1);
 		
 		// WHEN
 		parkingSpot = parkingService.getNextParkingNumberIfAvailable();
 		
 		// THEN
 		assertThat(parkingSpot.getId()).isEqualTo(1);
-		assertThat(parkingSpot.isAvailable()).isTrue();
+		assertThat(parkingSpot.isAvailable()).isFalse();
 	}
 
 	
@@ -145,7 +146,7 @@ class ParkingServiceTest {
 		// GIVEN
 		parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
 		when(inputReaderUtil.readSelection()).thenReturn(1);
-		when(parkingSpotDAO.getNextAvailableSlot(any())).thenReturn(0);
+		when(parkingSpotDAO.claimNextAvailableSlot(any())).thenReturn(0);
 		
 		// WHEN
 		//...
@@ -168,5 +169,68 @@ class ParkingServiceTest {
 		assertThrows(IllegalArgumentException.class, () -> { parkingService.getNextParkingNumberIfAvailable(); });
 
 	}
-	
+
+	@Test
+	void testEnterWithoutConsole() throws Exception {
+		// GIVEN
+		parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+		when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.BIKE)).thenReturn(4);
+		when(ticketDAO.saveTicket(any())).thenReturn(true);
+		when(ticketDAO.getNbTicket("GATE-1")).thenReturn(2);
+
+		// WHEN
+		EntryResult entry = parkingService.enter("GATE-1", ParkingType.BIKE);
+
+		// THEN
+		assertThat(entry.getParkingSpot().getId()).isEqualTo(4);
+		assertThat(entry.getTicket().getVehicleRegNumber()).isEqualTo("GATE-1");
+		assertThat(entry.isRecurringUser()).isTrue();
+		verify(ticketDAO, times(1)).saveTicket(entry.getTicket());
+	}
+
+	@Test
+	void testEnterReleasesSpotWhenTicketCannotBeSaved() throws Exception {
+		// GIVEN
+		parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+		when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(2);
+		when(ticketDAO.saveTicket(any())).thenReturn(false);
+
+		// WHEN
+		assertThatThrownBy(() -> parkingService.enter("ABCDEF", ParkingType.CAR)).isInstanceOf(IllegalStateException.class);
+
+		// THEN
+		verify(parkingSpotDAO, times(1)).updateParking(new ParkingSpot(2, ParkingType.CAR, true));
+	}
+
+	@Test
+	void testExitWithoutConsole() throws Exception {
+		// GIVEN
+		parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+		parkingSpot = new ParkingSpot(1, ParkingType.CAR, false);
+		ticket = new Ticket();
+		ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+		ticket.setParkingSpot(parkingSpot);
+		when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+		when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(1);
+		when(ticketDAO.updateTicket(ticket)).thenReturn(true);
+
+		// WHEN
+		ExitResult exit = parkingService.exit("ABCDEF");
+
+		// THEN
+		assertThat(exit.isUpdated()).isTrue();
+		assertThat(exit.isDiscounted()).isFalse();
+		assertThat(exit.getPrice()).isEqualTo(1.5);
+		assertThat(parkingSpot.isAvailable()).isTrue();
+	}
+
+	@Test
+	void testExitUnknownVehicle() {
+		// GIVEN
+		parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+
+		// THEN
+		assertThrows(IllegalArgumentException.class, () -> parkingService.exit("UNKNOWN"));
+	}
+
 }
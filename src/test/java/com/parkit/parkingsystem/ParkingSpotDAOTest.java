@@ -0,0 +1,131 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+
+@ExtendWith(MockitoExtension.class)
+class ParkingSpotDAOTest {
+
+	private ParkingSpotDAO parkingSpotDAO;
+
+	@Mock
+	private DataBaseConfig dataBaseConfig;
+	@Mock
+	private Connection connection;
+	@Mock
+	private PreparedStatement spotsStatement;
+	@Mock
+	private PreparedStatement claimStatement;
+	@Mock
+	private ResultSet spots;
+	@Mock
+	private PreparedStatement occupancyStatement;
+	@Mock
+	private ResultSet occupancy;
+
+	@BeforeEach
+	private void setUpPerTest() throws Exception {
+		parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		when(dataBaseConfig.getConnection()).thenReturn(connection);
+		when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+			String sql = invocation.getArgument(0);
+			if (DBConstants.GET_OCCUPANCY.equals(sql)) {
+				return occupancyStatement;
+			}
+			return DBConstants.GET_PARKING_SPOTS.equals(sql) ? spotsStatement : claimStatement;
+		});
+		when(spotsStatement.executeQuery()).thenReturn(spots);
+		// spots 1 and 2 are free CAR spots
+		when(spots.next()).thenReturn(true, true, false);
+		when(spots.getInt(1)).thenReturn(1, 2);
+		when(spots.getBoolean(2)).thenReturn(true, true);
+		when(spots.getString(3)).thenReturn("CAR", "CAR");
+	}
+
+	@Test
+	void claimTakesLowestFreeSpot() throws Exception {
+		// GIVEN
+		when(claimStatement.executeUpdate()).thenReturn(1);
+
+		// WHEN
+		int number = parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+
+		// THEN
+		assertThat(number).isEqualTo(1);
+		assertThat(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).isEqualTo(2);
+	}
+
+	@Test
+	void claimRetriesWhenSpotWasTakenElsewhere() throws Exception {
+		// GIVEN
+		when(claimStatement.executeUpdate()).thenReturn(0, 1);
+
+		// WHEN
+		int number = parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+
+		// THEN
+		assertThat(number).isEqualTo(2);
+		assertThat(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).isZero();
+	}
+
+	@Test
+	void failedClaimGivesSpotBack() throws Exception {
+		// GIVEN
+		when(claimStatement.executeUpdate()).thenThrow(new java.sql.SQLException("connection lost"));
+
+		// WHEN
+		int number = parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+
+		// THEN
+		assertThat(number).isEqualTo(-1);
+		assertThat(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).isEqualTo(1);
+	}
+
+	@Test
+	void occupancyIsReloadedWhenItStaysOutOfStep() throws Exception {
+		// GIVEN
+		// spot 1 taken by another process after the first load
+		when(spots.next()).thenReturn(true, true, false, true, true, false);
+		when(spots.getInt(1)).thenReturn(1, 2, 1, 2);
+		when(spots.getBoolean(2)).thenReturn(true, true, false, true);
+		when(occupancyStatement.executeQuery()).thenReturn(occupancy);
+		when(occupancy.next()).thenReturn(true, false, true, false, true, false);
+		when(occupancy.getString(1)).thenReturn("CAR");
+		lenient().when(occupancy.getInt(2)).thenReturn(2);
+		lenient().when(occupancy.getInt(3)).thenReturn(1);
+
+		// WHEN
+		boolean first = parkingSpotDAO.reconcileOccupancy();
+		boolean second = parkingSpotDAO.reconcileOccupancy();
+		boolean third = parkingSpotDAO.reconcileOccupancy();
+
+		// THEN
+		assertThat(first).isFalse();
+		assertThat(second).isFalse();
+		assertThat(third).isTrue();
+		verify(spotsStatement, times(2)).executeQuery();
+		assertThat(parkingSpotDAO.getFreeCount(ParkingType.CAR)).isEqualTo(1);
+		assertThat(parkingSpotDAO.getSpotCount(ParkingType.CAR)).isEqualTo(2);
+		assertThat(parkingSpotDAO.getFreeCount(ParkingType.BIKE)).isZero();
+	}
+}
@@ -0,0 +1,169 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+
+@ExtendWith(MockitoExtension.class)
+class ParkingTransactionDAOTest {
+
+	private ParkingSpotDAO parkingSpotDAO;
+	private TicketDAO ticketDAO;
+	private ParkingTransactionDAO parkingTransactionDAO;
+	private FareCalculatorService fareCalculatorService = new FareCalculatorService();
+	private Map<String, PreparedStatement> statements;
+
+	@Mock
+	private DataBaseConfig dataBaseConfig;
+	@Mock
+	private Connection connection;
+	@Mock
+	private ResultSet spots;
+	@Mock
+	private ResultSet generatedKeys;
+
+	@BeforeEach
+	private void setUpPerTest() throws Exception {
+		parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		parkingTransactionDAO = new ParkingTransactionDAO(parkingSpotDAO, ticketDAO);
+		statements = new HashMap<>();
+		when(dataBaseConfig.getConnection()).thenReturn(connection);
+		lenient().when(connection.prepareStatement(anyString())).thenAnswer(invocation -> statement(invocation.getArgument(0)));
+		lenient().when(connection.prepareStatement(anyString(), anyInt())).thenAnswer(invocation -> statement(invocation.getArgument(0)));
+		when(statement(DBConstants.GET_PARKING_SPOTS).executeQuery()).thenReturn(spots);
+		// spots 1 and 2 are free CAR spots
+		when(spots.next()).thenReturn(true, true, false);
+		when(spots.getInt(1)).thenReturn(1, 2);
+		when(spots.getBoolean(2)).thenReturn(true, true);
+		when(spots.getString(3)).thenReturn("CAR", "CAR");
+		parkingSpotDAO.loadFreeSpotIndex();
+	}
+
+	private PreparedStatement statement(String sql) {
+		return statements.computeIfAbsent(sql, key -> Mockito.mock(PreparedStatement.class));
+	}
+
+	@Test
+	void entryCommitsOnceWithCachedVisits() throws Exception {
+		// GIVEN
+		ticketDAO.getVisitCountCache().putLoaded("ABCDEF", 1, ticketDAO.getVisitCountCache().loadGeneration("ABCDEF"));
+		when(statement(DBConstants.CLAIM_PARKING_SPOT).executeUpdate()).thenReturn(1);
+		when(statement(DBConstants.SAVE_TICKET).getGeneratedKeys()).thenReturn(generatedKeys);
+		when(generatedKeys.next()).thenReturn(true);
+		when(generatedKeys.getInt(1)).thenReturn(42);
+
+		// WHEN
+		EntryResult entry = parkingTransactionDAO.enter("ABCDEF", ParkingType.CAR, new Date());
+
+		// THEN
+		assertThat(entry.getParkingSpot().getId()).isEqualTo(1);
+		assertThat(entry.getTicket().getId()).isEqualTo(42);
+		assertThat(entry.isRecurringUser()).isTrue();
+		assertThat(statements).doesNotContainKey(DBConstants.GET_VISITS);
+		verify(connection, times(1)).commit();
+		assertThat(ticketDAO.getActiveSessions().get("ABCDEF").getId()).isEqualTo(42);
+		assertThat(ticketDAO.getVisitCountCache().get("ABCDEF")).isEqualTo(2);
+		assertThat(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).isEqualTo(2);
+	}
+
+	@Test
+	void failedEntryRollsBackAndGivesSpotBack() throws Exception {
+		// GIVEN
+		when(statement(DBConstants.CLAIM_PARKING_SPOT).executeUpdate()).thenReturn(1);
+		when(statement(DBConstants.SAVE_TICKET).executeUpdate()).thenThrow(new java.sql.SQLException("lock wait timeout"));
+
+		// WHEN
+		assertThatThrownBy(() -> parkingTransactionDAO.enter("ABCDEF", ParkingType.CAR, new Date()))
+				.isInstanceOf(java.sql.SQLException.class);
+
+		// THEN
+		verify(connection).rollback();
+		verify(connection, never()).commit();
+		assertThat(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).isEqualTo(1);
+	}
+
+	@Test
+	void exitFromMirrorSkipsTheRead() throws Exception {
+		// GIVEN
+		Ticket open = new Ticket();
+		open.setId(42);
+		open.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+		open.setVehicleRegNumber("ABCDEF");
+		open.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+		ticketDAO.getActiveSessions().put(open);
+		ticketDAO.getVisitCountCache().putLoaded("ABCDEF", 1, ticketDAO.getVisitCountCache().loadGeneration("ABCDEF"));
+		when(statement(DBConstants.DELETE_SESSION).executeUpdate()).thenReturn(1);
+
+		// WHEN
+		ExitResult exit = parkingTransactionDAO.exit("ABCDEF", new Date(), fareCalculatorService::calculateFare);
+
+		// THEN
+		assertThat(exit.isUpdated()).isTrue();
+		assertThat(exit.getPrice()).isEqualTo(1.5);
+		assertThat(statements).doesNotContainKey(DBConstants.GET_EXIT_SESSION);
+		verify(statement(DBConstants.UPDATE_TICKET)).setInt(3, 42);
+		verify(statement(DBConstants.UPDATE_PARKING_SPOT)).setInt(2, 2);
+		verify(statement(DBConstants.ROLL_UP_HOUR)).setLong(4, 150L);
+		verify(statement(DBConstants.ROLL_UP_DAY)).setLong(4, 150L);
+		verify(connection, times(1)).commit();
+		assertThat(ticketDAO.getActiveSessions().contains("ABCDEF")).isFalse();
+	}
+
+	@Test
+	void exitOfVehicleAlreadyGoneRollsBack() throws Exception {
+		// GIVEN
+		Ticket open = new Ticket();
+		open.setId(42);
+		open.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+		open.setVehicleRegNumber("ABCDEF");
+		open.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+		ticketDAO.getActiveSessions().put(open);
+		ticketDAO.getVisitCountCache().putLoaded("ABCDEF", 1, ticketDAO.getVisitCountCache().loadGeneration("ABCDEF"));
+		when(statement(DBConstants.DELETE_SESSION).executeUpdate()).thenReturn(0);
+
+		// WHEN
+		ExitResult exit = parkingTransactionDAO.exit("ABCDEF", new Date(), fareCalculatorService::calculateFare);
+
+		// THEN
+		assertThat(exit).isNull();
+		verify(connection).rollback();
+		assertThat(statements).doesNotContainKey(DBConstants.UPDATE_TICKET);
+		assertThat(statements).doesNotContainKey(DBConstants.ROLL_UP_HOUR);
+		assertThat(ticketDAO.getActiveSessions().contains("ABCDEF")).isFalse();
+	}
+}
@@ -0,0 +1,161 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ReservationTimeline;
+import com.parkit.parkingsystem.dao.Storage;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.service.LotFullException;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ReservationBook;
+
+class ReservationBookTest {
+
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	private Storage storage;
+	private ReservationBook reservationBook;
+	private long now;
+
+	@BeforeEach
+	private void setUpPerTest() {
+		storage = Storage.inMemory(2, 1);
+		reservationBook = new ReservationBook(storage.getParkingSpotStore(), 15, 30, 60, 15);
+		now = System.currentTimeMillis();
+	}
+
+	@Test
+	void timelineMaximumMatchesCountingEverySlot() {
+		// GIVEN
+		ReservationTimeline timeline = new ReservationTimeline(0, 10, 1000);
+		int[] booked = new int[1000];
+		Random random = new Random(42);
+		for (int i = 0; i < 2000; i++) {
+			int from = random.nextInt(1000);
+			int to = from + 1 + random.nextInt(1000 - from);
+			int delta = random.nextInt(3) - 1;
+			timeline.add(from * 10L + random.nextInt(10), to * 10L - random.nextInt(10), delta);
+			for (int slot = from; slot < to; slot++) {
+				booked[slot] += delta;
+			}
+		}
+
+		// WHEN
+		for (int i = 0; i < 200; i++) {
+			int from = random.nextInt(1000);
+			int to = from + 1 + random.nextInt(1000 - from);
+			int expected = Integer.MIN_VALUE;
+			for (int slot = from; slot < to; slot++) {
+				expected = Math.max(expected, booked[slot]);
+			}
+
+			// THEN
+			assertThat(timeline.max(from * 10L, to * 10L)).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	void bookingsAreRefusedOnceEverySpotIsBookedForPartOfTheWindow() throws Exception {
+		// GIVEN
+		// On slot boundaries, since windows are widened to whole slots
+		long tomorrow = (now / HOUR + 24) * HOUR;
+		reservationBook.reserve("AAAAAA", ParkingType.CAR, tomorrow, tomorrow + 4 * HOUR, now);
+		Reservation late = reservationBook.reserve("BBBBBB", ParkingType.CAR, tomorrow + 3 * HOUR, tomorrow + 6 * HOUR, now);
+
+		// WHEN
+		assertThatThrownBy(() -> reservationBook.reserve("CCCCCC", ParkingType.CAR, tomorrow + 2 * HOUR, tomorrow + 8 * HOUR, now))
+				.isInstanceOf(LotFullException.class);
+
+		// THEN
+		assertThat(reservationBook.getAvailableCount(ParkingType.CAR, tomorrow + 3 * HOUR, tomorrow + 4 * HOUR, now)).isZero();
+		assertThat(reservationBook.getAvailableCount(ParkingType.CAR, tomorrow + 4 * HOUR, tomorrow + 8 * HOUR, now)).isEqualTo(1);
+		assertThat(reservationBook.getAvailableCount(ParkingType.BIKE, tomorrow, tomorrow + 8 * HOUR, now)).isEqualTo(1);
+		assertThat(reservationBook.cancel(late.getId())).isTrue();
+		assertThat(reservationBook.reserve("CCCCCC", ParkingType.CAR, tomorrow + 2 * HOUR, tomorrow + 8 * HOUR, now)).isNotNull();
+		assertThatThrownBy(() -> reservationBook.reserve("DDDDDD", ParkingType.CAR, now, now + 31 * 24 * HOUR, now))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void walkInsLeaveHeldSpotsToTheBookedVehicle() throws Exception {
+		// GIVEN
+		ParkingService parkingService = new ParkingService(null, storage.getParkingSpotStore(), storage.getTicketStore(),
+				null, reservationBook);
+		parkingService.reserve("BOOKED", ParkingType.CAR, new Date(now + HOUR / 6), new Date(now + 3 * HOUR));
+		parkingService.enter("WALKIN1", ParkingType.CAR);
+
+		// WHEN
+		assertThatThrownBy(() -> parkingService.enter("WALKIN2", ParkingType.CAR)).isInstanceOf(LotFullException.class);
+		parkingService.enter("BOOKED", ParkingType.CAR);
+
+		// THEN
+		assertThat(parkingService.getFreeCount(ParkingType.CAR)).isZero();
+		assertThat(reservationBook.size()).isZero();
+		assertThat(reservationBook.getHeldCount(ParkingType.CAR, now)).isZero();
+		parkingService.exit("WALKIN1");
+		assertThat(parkingService.enter("WALKIN2", ParkingType.CAR).getTicket().getParkingSpot().getId()).isEqualTo(1);
+	}
+
+	@Test
+	void walkInsDoNotWaitOnEachOtherWhileBookingsAreFarAhead() throws Exception {
+		// GIVEN
+		reservationBook.reserve("BOOKED", ParkingType.CAR, now + 48 * HOUR, now + 50 * HOUR, now);
+		CountDownLatch bothInside = new CountDownLatch(2);
+		Callable<Boolean> entry = () -> {
+			bothInside.countDown();
+			return bothInside.await(5, TimeUnit.SECONDS);
+		};
+		ExecutorService gates = Executors.newFixedThreadPool(2);
+
+		// WHEN
+		Future<Boolean> first = gates.submit(() -> reservationBook.admitWalkIn(ParkingType.CAR, now, entry));
+		Future<Boolean> second = gates.submit(() -> reservationBook.admitWalkIn(ParkingType.CAR, now, entry));
+
+		// THEN
+		assertThat(first.get(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(second.get(10, TimeUnit.SECONDS)).isTrue();
+		gates.shutdown();
+	}
+
+	@Test
+	void bookingStartingNowWaitsForAWalkInAlreadyAdmitted() throws Exception {
+		// GIVEN
+		// One CAR spot left and none held, so the walk-in is let in without queueing
+		storage.getParkingSpotStore().claimNextAvailableSlot(ParkingType.CAR);
+		CountDownLatch admitted = new CountDownLatch(1);
+		CountDownLatch claim = new CountDownLatch(1);
+		ExecutorService gates = Executors.newFixedThreadPool(2);
+		Future<Integer> walkIn = gates.submit(() -> reservationBook.admitWalkIn(ParkingType.CAR, now, () -> {
+			admitted.countDown();
+			claim.await(5, TimeUnit.SECONDS);
+			return storage.getParkingSpotStore().claimNextAvailableSlot(ParkingType.CAR);
+		}));
+		assertThat(admitted.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// WHEN
+		Future<Reservation> booking = gates.submit(() -> reservationBook.reserve("BOOKED", ParkingType.CAR, now, now + HOUR, now));
+		Thread.sleep(100);
+		assertThat(booking.isDone()).isFalse();
+		claim.countDown();
+
+		// THEN
+		assertThat(walkIn.get(5, TimeUnit.SECONDS)).isPositive();
+		assertThatThrownBy(() -> booking.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(LotFullException.class);
+		assertThat(reservationBook.getHeldCount(ParkingType.CAR, now)).isZero();
+		gates.shutdown();
+	}
+}
@@ -0,0 +1,119 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.service.RollupBackfillJob;
+
+@ExtendWith(MockitoExtension.class)
+class RollupBackfillJobTest {
+
+	private static final LocalDateTime TEN_AM = LocalDateTime.of(2020, 3, 14, 10, 0);
+
+	@Mock
+	private DataBaseConfig dataBaseConfig;
+	@Mock
+	private Connection readConnection;
+	@Mock
+	private Connection writeConnection;
+	@Mock
+	private PreparedStatement state;
+	@Mock
+	private ResultSet stateRow;
+	@Mock
+	private PreparedStatement query;
+	@Mock
+	private ResultSet tickets;
+	@Mock
+	private PreparedStatement hour;
+	@Mock
+	private PreparedStatement day;
+	@Mock
+	private PreparedStatement checkpoint;
+
+	@BeforeEach
+	private void setUpPerTest() throws Exception {
+		when(dataBaseConfig.getConnection()).thenReturn(readConnection, writeConnection);
+		doReturn(state).when(writeConnection).prepareStatement(DBConstants.GET_ROLLUP_BACKFILL);
+		when(state.executeQuery()).thenReturn(stateRow);
+		when(stateRow.next()).thenReturn(true);
+		when(stateRow.getTimestamp(1)).thenReturn(Timestamp.valueOf(TEN_AM.plusDays(30)));
+		when(stateRow.getInt(2)).thenReturn(0);
+		when(readConnection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(query);
+		when(query.executeQuery()).thenReturn(tickets);
+		doReturn(checkpoint).when(writeConnection).prepareStatement(DBConstants.UPDATE_ROLLUP_BACKFILL);
+		doReturn(hour).when(writeConnection).prepareStatement(DBConstants.ROLL_UP_HOUR);
+		doReturn(day).when(writeConnection).prepareStatement(DBConstants.ROLL_UP_DAY);
+		// ticket 1: CAR out at 10:15 for 1.5, ticket 2: CAR out at 10:45 for 3.0, ticket 3: BIKE out at 11:05 for 1.0
+		lenient().when(tickets.next()).thenReturn(true, true, true, false);
+		lenient().when(tickets.getInt(1)).thenReturn(1, 2, 3);
+		lenient().when(tickets.getTimestamp(2)).thenReturn(Timestamp.valueOf(TEN_AM.plusMinutes(15)),
+				Timestamp.valueOf(TEN_AM.plusMinutes(45)), Timestamp.valueOf(TEN_AM.plusMinutes(65)));
+		lenient().when(tickets.getDouble(3)).thenReturn(1.5, 3.0, 1.0);
+		lenient().when(tickets.getString(4)).thenReturn("CAR", "CAR", "BIKE");
+	}
+
+	@Test
+	void ticketsAreSummedPerHourAndDayWithTheCheckpointInTheSameCommit() throws Exception {
+		// GIVEN
+		RollupBackfillJob job = new RollupBackfillJob(dataBaseConfig, 2);
+		when(checkpoint.executeUpdate()).thenReturn(1);
+
+		// WHEN
+		long rolledUp = job.run();
+
+		// THEN
+		assertThat(rolledUp).isEqualTo(3);
+		verify(query).setTimestamp(1, Timestamp.valueOf(TEN_AM.plusDays(30)));
+		verify(query).setInt(2, 0);
+		// first chunk: one CAR row for 10:00, second chunk: one BIKE row for 11:00
+		verify(hour).setTimestamp(1, Timestamp.valueOf(TEN_AM));
+		verify(hour).setTimestamp(1, Timestamp.valueOf(TEN_AM.plusHours(1)));
+		verify(hour).setInt(3, 2);
+		verify(hour).setLong(4, 450L);
+		verify(hour).setLong(4, 100L);
+		verify(hour, times(2)).addBatch();
+		verify(day, times(2)).setDate(1, java.sql.Date.valueOf(TEN_AM.toLocalDate()));
+		verify(checkpoint).setInt(1, 2);
+		verify(checkpoint).setInt(2, 0);
+		verify(checkpoint).setInt(1, 3);
+		verify(checkpoint).setInt(2, 2);
+		verify(writeConnection, times(2)).commit();
+	}
+
+	@Test
+	void concurrentBackfillIsRolledBack() throws Exception {
+		// GIVEN
+		RollupBackfillJob job = new RollupBackfillJob(dataBaseConfig, 2);
+		when(checkpoint.executeUpdate()).thenReturn(0);
+
+		// WHEN
+		assertThatThrownBy(job::run).isInstanceOf(IllegalStateException.class);
+
+		// THEN
+		verify(writeConnection).rollback();
+		verify(writeConnection, never()).commit();
+	}
+}
@@ -0,0 +1,106 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.parkit.parkingsystem.archive.TicketArchive;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+class TicketArchiveTest {
+
+	private static final LocalDateTime MIDNIGHT = LocalDateTime.of(2020, 3, 14, 0, 0);
+
+	@TempDir
+	Path tempDir;
+
+	private static Ticket closedTicket(int id, String vehicleRegNumber, ParkingType parkingType, LocalDateTime outTime, double price) {
+		Ticket ticket = new Ticket();
+		ticket.setId(id);
+		ticket.setParkingSpot(new ParkingSpot(id % 5 + 1, parkingType, true));
+		ticket.setVehicleRegNumber(vehicleRegNumber);
+		ticket.setInTime(date(outTime.minusMinutes(90)));
+		ticket.setOutTime(date(outTime));
+		ticket.setPrice(price);
+		return ticket;
+	}
+
+	private static Date date(LocalDateTime time) {
+		return java.sql.Timestamp.valueOf(time);
+	}
+
+	@Test
+	void ticketsAreReadBackByVehicleAndByExitTime() throws Exception {
+		// GIVEN
+		TicketArchive archive = new TicketArchive(tempDir);
+		List<Ticket> tickets = Arrays.asList(
+				closedTicket(7, "ABCDEF", ParkingType.CAR, MIDNIGHT.plusHours(10), 2.25),
+				closedTicket(8, "GHIJKL", ParkingType.BIKE, MIDNIGHT.plusHours(11), 1.5),
+				closedTicket(9, "ABCDEF", ParkingType.CAR, MIDNIGHT.plusDays(1).plusHours(9), 2.14));
+
+		// WHEN
+		archive.publish(archive.writePending(tickets));
+
+		// THEN
+		assertThat(archive.getSegments()).hasSize(2);
+		List<Ticket> found = archive.findByVehicle("ABCDEF");
+		assertThat(found).extracting(Ticket::getId).containsExactly(7, 9);
+		Ticket first = found.get(0);
+		assertThat(first.getParkingSpot().getId()).isEqualTo(3);
+		assertThat(first.getParkingSpot().getParkingType()).isEqualTo(ParkingType.CAR);
+		assertThat(first.getInTime()).isEqualTo(date(MIDNIGHT.plusHours(10).minusMinutes(90)));
+		assertThat(first.getOutTime()).isEqualTo(date(MIDNIGHT.plusHours(10)));
+		assertThat(first.getPrice()).isEqualTo(2.25);
+		assertThat(archive.countByVehicle("GHIJKL")).isEqualTo(1);
+		assertThat(archive.countByVehicle("MNOPQR")).isZero();
+		assertThat(archive.findClosedBetween(date(MIDNIGHT), date(MIDNIGHT.plusDays(1))))
+				.extracting(Ticket::getId).containsExactly(7, 8);
+	}
+
+	@Test
+	void pendingSegmentsAreNotReadUntilPublished() throws Exception {
+		// GIVEN
+		TicketArchive archive = new TicketArchive(tempDir);
+		List<Path> pending = archive.writePending(Arrays.asList(
+				closedTicket(42, "ABCDEF", ParkingType.CAR, MIDNIGHT.plusHours(10), 1.5)));
+
+		// WHEN
+		int beforePublishing = archive.countByVehicle("ABCDEF");
+		archive.publish(pending);
+
+		// THEN
+		assertThat(beforePublishing).isZero();
+		assertThat(TicketArchive.lowestTicketId(pending.get(0))).isEqualTo(42);
+		assertThat(archive.getPendingSegments()).isEmpty();
+		assertThat(archive.countByVehicle("ABCDEF")).isEqualTo(1);
+	}
+
+	@Test
+	void aDayOfTicketsTakesAFewBytesEach() throws Exception {
+		// GIVEN
+		TicketArchive archive = new TicketArchive(tempDir);
+		List<Ticket> tickets = new ArrayList<>();
+		for (int i = 1; i <= 10000; i++) {
+			tickets.add(closedTicket(i, "AB" + (1000 + i % 500), i % 3 == 0 ? ParkingType.BIKE : ParkingType.CAR,
+					MIDNIGHT.plusSeconds(i * 8L), i % 3 == 0 ? 1.0 : 1.5));
+		}
+
+		// WHEN
+		List<Path> segments = archive.writePending(tickets);
+
+		// THEN
+		assertThat(segments).hasSize(1);
+		assertThat(Files.size(segments.get(0))).isLessThan(10L * tickets.size());
+	}
+}
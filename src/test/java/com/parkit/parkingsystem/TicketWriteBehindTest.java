@@ -0,0 +1,246 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketWriteBehind;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+@ExtendWith(MockitoExtension.class)
+class TicketWriteBehindTest {
+
+	@Mock
+	private DataBaseConfig dataBaseConfig;
+	@Mock
+	private Connection connection;
+	@Mock
+	private PreparedStatement ps;
+	@Mock
+	private PreparedStatement visitsStatement;
+	@Mock
+	private PreparedStatement sessionsStatement;
+	@Mock
+	private ResultSet generatedKeys;
+
+	@BeforeEach
+	private void setUpPerTest() throws Exception {
+		when(dataBaseConfig.getConnection()).thenReturn(connection);
+		when(connection.prepareStatement(anyString(), anyInt())).thenReturn(ps);
+		lenient().doReturn(visitsStatement).when(connection).prepareStatement(DBConstants.INCREMENT_VISITS);
+		lenient().doReturn(sessionsStatement).when(connection).prepareStatement(DBConstants.SAVE_SESSION);
+	}
+
+	private static Ticket newTicket(String vehicleRegNumber) {
+		Ticket ticket = new Ticket();
+		ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+		ticket.setVehicleRegNumber(vehicleRegNumber);
+		ticket.setInTime(new Date());
+		return ticket;
+	}
+
+	@Test
+	void ticketsAreWrittenInOneBatchAndCommit() throws Exception {
+		// GIVEN
+		when(ps.getGeneratedKeys()).thenReturn(generatedKeys);
+		when(generatedKeys.next()).thenReturn(true, true, true, false);
+		when(generatedKeys.getInt(1)).thenReturn(11, 12, 13);
+		TicketWriteBehind writeBehind = new TicketWriteBehind(dataBaseConfig, 3, 5000, 10);
+		List<Ticket> tickets = new ArrayList<>();
+		List<CompletableFuture<Boolean>> durable = new ArrayList<>();
+
+		// WHEN
+		for (int i = 0; i < 3; i++) {
+			Ticket ticket = newTicket("PLATE" + i);
+			tickets.add(ticket);
+			durable.add(writeBehind.submit(ticket));
+		}
+		for (CompletableFuture<Boolean> future : durable) {
+			assertThat(future.get(5, TimeUnit.SECONDS)).isTrue();
+		}
+		writeBehind.close();
+
+		// THEN
+		verify(ps, times(3)).addBatch();
+		verify(ps, times(1)).executeBatch();
+		verify(sessionsStatement, times(3)).addBatch();
+		verify(sessionsStatement).setInt(2, 13);
+		verify(visitsStatement, times(3)).addBatch();
+		verify(visitsStatement, times(1)).executeBatch();
+		verify(connection, times(1)).commit();
+		assertThat(tickets).extracting(Ticket::getId).containsExactly(11, 12, 13);
+		assertThat(writeBehind.getFlushCount()).isEqualTo(1);
+		assertThat(writeBehind.getLastBatchSize()).isEqualTo(3);
+		assertThat(writeBehind.getAverageBatchSize()).isEqualTo(3.0);
+	}
+
+	@Test
+	void partialBatchIsFlushedAfterInterval() throws Exception {
+		// GIVEN
+		when(ps.getGeneratedKeys()).thenReturn(generatedKeys);
+		TicketWriteBehind writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 10, 10);
+
+		// WHEN
+		CompletableFuture<Boolean> durable = writeBehind.submit(newTicket("ABCDEF"));
+
+		// THEN
+		assertThat(durable.get(5, TimeUnit.SECONDS)).isTrue();
+		writeBehind.awaitPending("ABCDEF", 10);
+		writeBehind.close();
+		assertThat(writeBehind.getFlushedTicketCount()).isEqualTo(1);
+	}
+
+	@Test
+	void failedBatchFailsEveryFuture() throws Exception {
+		// GIVEN
+		when(ps.executeBatch()).thenThrow(new SQLException("deadlock"));
+		TicketWriteBehind writeBehind = new TicketWriteBehind(dataBaseConfig, 1, 0, 10);
+
+		// WHEN
+		CompletableFuture<Boolean> durable = writeBehind.submit(newTicket("ABCDEF"));
+
+		// THEN
+		assertThatThrownBy(() -> durable.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+		writeBehind.close();
+		assertThat(writeBehind.getFailedTicketCount()).isEqualTo(1);
+		verify(connection, times(0)).commit();
+	}
+
+	@Test
+	void failedBatchIsRetriedRowByRowSoOnlyTheBadTicketFails() throws Exception {
+		// GIVEN
+		when(ps.executeBatch()).thenThrow(new SQLException("duplicate key")).thenReturn(new int[] {1})
+				.thenThrow(new SQLException("duplicate key")).thenReturn(new int[] {1});
+		when(ps.getGeneratedKeys()).thenReturn(generatedKeys);
+		when(generatedKeys.next()).thenReturn(true);
+		when(generatedKeys.getInt(1)).thenReturn(21, 23);
+		TicketWriteBehind writeBehind = new TicketWriteBehind(dataBaseConfig, 3, 5000, 10);
+		List<Ticket> tickets = new ArrayList<>();
+		List<CompletableFuture<Boolean>> durable = new ArrayList<>();
+
+		// WHEN
+		for (int i = 0; i < 3; i++) {
+			Ticket ticket = newTicket("PLATE" + i);
+			tickets.add(ticket);
+			durable.add(writeBehind.submit(ticket));
+		}
+
+		// THEN
+		assertThat(durable.get(0).get(5, TimeUnit.SECONDS)).isTrue();
+		assertThatThrownBy(() -> durable.get(1).get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+		assertThat(durable.get(2).get(5, TimeUnit.SECONDS)).isTrue();
+		writeBehind.close();
+		assertThat(tickets).extracting(Ticket::getId).containsExactly(21, 0, 23);
+		assertThat(writeBehind.getFlushedTicketCount()).isEqualTo(2);
+		assertThat(writeBehind.getFailedTicketCount()).isEqualTo(1);
+		verify(connection, times(2)).rollback();
+		verify(connection, times(2)).commit();
+	}
+
+	@Test
+	void everyTicketAcceptedBeforeCloseIsWrittenAndLaterOnesAreRefused() throws Exception {
+		// GIVEN
+		when(ps.getGeneratedKeys()).thenReturn(generatedKeys);
+		TicketWriteBehind writeBehind = new TicketWriteBehind(dataBaseConfig, 10, 1, 5);
+		List<CompletableFuture<Boolean>> durable = Collections.synchronizedList(new ArrayList<>());
+		List<Thread> gates = new ArrayList<>();
+		for (int gate = 0; gate < 4; gate++) {
+			int gateNumber = gate;
+			Thread thread = new Thread(() -> {
+				try {
+					for (int i = 0; ; i++) {
+						durable.add(writeBehind.submit(newTicket("G" + gateNumber + "-" + i)));
+					}
+				} catch (IllegalStateException | InterruptedException e) {
+					// closed
+				}
+			});
+			thread.start();
+			gates.add(thread);
+		}
+
+		// WHEN
+		Thread.sleep(50);
+		writeBehind.close();
+		for (Thread gate : gates) {
+			gate.join(5000);
+		}
+
+		// THEN
+		assertThat(durable).isNotEmpty().allMatch(future -> future.isDone() && !future.isCompletedExceptionally());
+		assertThat(writeBehind.getFlushedTicketCount()).isEqualTo(durable.size());
+		assertThatThrownBy(() -> writeBehind.submit(newTicket("LATE"))).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void closeTurnsAwaySubmittersWaitingOnAFullQueue() throws Exception {
+		// GIVEN
+		// The flusher is stuck on the database with the one ticket it took, and the queue holds one more
+		CountDownLatch databaseBack = new CountDownLatch(1);
+		when(dataBaseConfig.getConnection()).thenAnswer(invocation -> {
+			databaseBack.await(10, TimeUnit.SECONDS);
+			return connection;
+		});
+		when(ps.getGeneratedKeys()).thenReturn(generatedKeys);
+		TicketWriteBehind writeBehind = new TicketWriteBehind(dataBaseConfig, 1, 0, 1);
+		writeBehind.submit(newTicket("FIRST"));
+		while (writeBehind.getQueueSize() > 0) {
+			Thread.sleep(1);
+		}
+		writeBehind.submit(newTicket("SECOND"));
+		CompletableFuture<Throwable> waiting = CompletableFuture.supplyAsync(() -> {
+			try {
+				writeBehind.submit(newTicket("WAITING"));
+				return null;
+			} catch (Exception e) {
+				return e;
+			}
+		});
+		Thread.sleep(100);
+
+		// WHEN
+		Thread closing = new Thread(() -> {
+			try {
+				writeBehind.close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		closing.start();
+
+		// THEN
+		assertThat(waiting.get(5, TimeUnit.SECONDS)).isInstanceOf(IllegalStateException.class);
+		databaseBack.countDown();
+		closing.join(5000);
+		assertThat(closing.isAlive()).isFalse();
+		assertThat(writeBehind.getFlushedTicketCount()).isEqualTo(2);
+	}
+}
@@ -0,0 +1,72 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.Storage;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.simulation.Distribution;
+import com.parkit.parkingsystem.simulation.SimulationReport;
+import com.parkit.parkingsystem.simulation.SimulationSettings;
+import com.parkit.parkingsystem.simulation.TrafficProfile;
+import com.parkit.parkingsystem.simulation.TrafficSimulation;
+
+class TrafficSimulationTest {
+
+	@Test
+	void busyLotTurnsVehiclesAwayWithoutGivingASpotTwice() throws Exception {
+		// GIVEN
+		Storage storage = Storage.inMemory(10, 5);
+		ParkingService parkingService = new ParkingService(storage.getParkingSpotStore(), storage.getTicketStore());
+		SimulationSettings settings = new SimulationSettings();
+		settings.setGates(4);
+		settings.setPlates(1000);
+		settings.setCarSpots(10);
+		settings.setBikeSpots(5);
+		// 60 arrivals and stays of half a second per real second: about twice the lot
+		settings.setArrivalsPerHour(3600);
+		settings.setTimeScale(60);
+		settings.setMeanStayMinutes(0.5);
+		settings.setStayDistribution(Distribution.CONSTANT);
+		settings.setDurationSeconds(2);
+
+		// WHEN
+		SimulationReport report = new TrafficSimulation(parkingService, settings).run();
+
+		// THEN
+		assertThat(report.getArrivals()).isGreaterThan(50);
+		assertThat(report.getCompletedEntries()).isGreaterThan(0);
+		assertThat(report.getCompletedExits()).isGreaterThan(0);
+		assertThat(report.getAllocationFailures()).isGreaterThan(0);
+		assertThat(report.getEntryErrors()).isZero();
+		assertThat(report.getExitErrors()).isZero();
+		assertThat(report.getSpotConflicts()).isZero();
+		assertThat(report.getPeakOccupancy()).isLessThanOrEqualTo(15);
+		assertThat(report.getEntryLatency().getCount()).isEqualTo(report.getCompletedEntries() + report.getAllocationFailures());
+		assertThat(storage.getParkingSpotStore().getFreeCount(ParkingType.CAR)).isEqualTo(10);
+		assertThat(storage.getParkingSpotStore().getFreeCount(ParkingType.BIKE)).isEqualTo(5);
+	}
+
+	@Test
+	void peakHoursScaleTheArrivalRate() {
+		// GIVEN
+		TrafficProfile profile = TrafficProfile.parse("0-7:0, 7-9:2.5");
+
+		// WHEN
+		double night = profile.multiplierAt(3 * 3600);
+		double peak = profile.multiplierAt(8 * 3600 + 1800);
+		double day = profile.multiplierAt(12 * 3600);
+
+		// THEN
+		assertThat(night).isZero();
+		assertThat(peak).isEqualTo(2.5);
+		assertThat(day).isEqualTo(1);
+		assertThat(profile.nextChangeAfter(3 * 3600)).isEqualTo(7 * 3600);
+		assertThat(profile.nextChangeAfter(23 * 3600)).isEqualTo(24 * 3600);
+		assertThatThrownBy(() -> TrafficProfile.parse("9-7:1")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> TrafficProfile.parse("7:1")).isInstanceOf(IllegalArgumentException.class);
+	}
+}
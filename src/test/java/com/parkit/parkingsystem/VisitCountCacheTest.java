@@ -0,0 +1,65 @@
+package com.parkit.parkingsystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.dao.VisitCountCache;
+
+class VisitCountCacheTest {
+
+	private VisitCountCache visitCountCache;
+
+	@BeforeEach
+	private void setUpPerTest() {
+		visitCountCache = new VisitCountCache(1000);
+	}
+
+	@Test
+	void savedTicketIncrementsCachedCount() {
+		// GIVEN
+		visitCountCache.putLoaded("ABCDEF", 1, visitCountCache.loadGeneration("ABCDEF"));
+
+		// WHEN
+		visitCountCache.increment("ABCDEF");
+
+		// THEN
+		assertThat(visitCountCache.get("ABCDEF")).isEqualTo(2);
+		assertThat(visitCountCache.getHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	void countLoadedDuringASaveIsNotCached() {
+		// GIVEN
+		long generation = visitCountCache.loadGeneration("ABCDEF");
+
+		// WHEN
+		visitCountCache.increment("ABCDEF");
+		visitCountCache.putLoaded("ABCDEF", 1, generation);
+
+		// THEN
+		assertThat(visitCountCache.get("ABCDEF")).isNull();
+		assertThat(visitCountCache.getMissCount()).isEqualTo(1);
+	}
+
+	@Test
+	void leastRecentlyUsedVehiclesAreEvicted() {
+		// GIVEN
+		VisitCountCache small = new VisitCountCache(16);
+
+		// WHEN
+		for (int i = 0; i < 1000; i++) {
+			small.putLoaded("P" + i, i, small.loadGeneration("P" + i));
+		}
+
+		// THEN
+		int cached = 0;
+		for (int i = 0; i < 1000; i++) {
+			if (small.get("P" + i) != null) {
+				cached++;
+			}
+		}
+		assertThat(cached).isLessThanOrEqualTo(16);
+	}
+}
@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.service.ParkingService;
+
+// Wall-clock time per vehicle (one entry plus one exit) through the statement-per-step path
+// and through the single-transaction path, against the test database.
+class EntryExitBenchmarkIT {
+
+    private static final int WARMUP_VEHICLES = 50;
+    private static final int VEHICLES = 500;
+
+    private static DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
+    private static DataBasePrepareService dataBasePrepareService = new DataBasePrepareService();
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+
+    @BeforeAll
+    private static void setUp() {
+        dataBasePrepareService.clearDataBaseEntries();
+    }
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBasePrepareService.clearDataBaseEntries();
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
+        parkingSpotDAO.loadFreeSpotIndex();
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseTestConfig;
+    }
+
+    @AfterAll
+    private static void tearDown() {
+        dataBasePrepareService.clearDataBaseEntries();
+    }
+
+    @Test
+    void compareEntryExitPaths() throws Exception {
+        ParkingService perStep = new ParkingService(parkingSpotDAO, ticketDAO);
+        ParkingService transactional = new ParkingService(null, parkingSpotDAO, ticketDAO,
+                new ParkingTransactionDAO(parkingSpotDAO, ticketDAO));
+
+        run(perStep, "WARM-A", WARMUP_VEHICLES);
+        run(transactional, "WARM-B", WARMUP_VEHICLES);
+        double perStepMillis = run(perStep, "STEP", VEHICLES);
+        double transactionalMillis = run(transactional, "TX", VEHICLES);
+
+        System.out.println(String.format("Entry+exit per vehicle: per-step %.3f ms, single transaction %.3f ms (%.2fx)",
+                perStepMillis, transactionalMillis, perStepMillis / transactionalMillis));
+    }
+
+    // Returns the mean milliseconds per vehicle; each vehicle comes twice so half of them are recurring
+    private static double run(ParkingService parkingService, String prefix, int vehicles) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < vehicles; i++) {
+            String vehicleRegNumber = prefix + (i % (vehicles / 2));
+            parkingService.enter(vehicleRegNumber, ParkingType.CAR);
+            ExitResult exit = parkingService.exit(vehicleRegNumber);
+            assertThat(exit.isUpdated()).isTrue();
+        }
+        return (System.nanoTime() - start) / 1e6 / vehicles;
+    }
+}
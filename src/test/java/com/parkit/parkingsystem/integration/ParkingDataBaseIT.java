@@ -50,6 +50,8 @@ class ParkingDataBaseIT {
     private void setUpPerTest() throws Exception {
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         dataBasePrepareService.clearDataBaseEntries();
+        parkingSpotDAO.loadFreeSpotIndex();
+        ticketDAO.invalidateCaches();
     }
 
     @AfterAll
@@ -106,11 +108,15 @@ class ParkingDataBaseIT {
     void testParkingLotExitRecurringUser() throws Exception {
     	// GIVEN
     	ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
-    	when(inputReaderUtil.readSelection()).thenReturn(1);
     	
     	// WHEN
     	testParkingLotExit();
-    	parkingService.processIncomingVehicle();
+    	// Second stay of the same vehicle, also started an hour ago
+    	Ticket secondStay = new Ticket();
+    	secondStay.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+    	secondStay.setVehicleRegNumber("ABCDEF");
+    	secondStay.setInTime(new Date(System.currentTimeMillis() - ( 60 * 60 * 1000 )));
+    	ticketDAO.saveTicket(secondStay);
     	Ticket ticketOUT = parkingService.processExitingVehicle();
     	
     	// THEN
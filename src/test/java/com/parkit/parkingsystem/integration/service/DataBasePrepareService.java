@@ -19,6 +19,16 @@ public class DataBasePrepareService {
             //clear ticket entries;
             connection.prepareStatement("truncate table ticket").execute();
 
+            //clear open sessions
+            connection.prepareStatement("truncate table active_session").execute();
+
+            //clear recurring visitor counts
+            connection.prepareStatement("truncate table vehicle_visit").execute();
+
+            //clear revenue rollups
+            connection.prepareStatement("truncate table ticket_rollup_hour").execute();
+            connection.prepareStatement("truncate table ticket_rollup_day").execute();
+
         }catch(Exception e){
             e.printStackTrace();
         }finally {